@@ -0,0 +1,125 @@
+package com.paulmender.udacity.popularmovies;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of MovieParcelable write/read round trips, which need the native Parcel and so
+ * cannot run in the JMH benchmark module. The results are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieParcelableBenchmarkTest {
+
+    private static final String LOG_TAG = MovieParcelableBenchmarkTest.class.getSimpleName();
+
+    private static final int[] sMovieCounts = {20, 1000, 10000};
+
+    /** The number of movies parcelled per measurement, across iterations. */
+    private static final int sMoviesPerMeasurement = 100000;
+
+    @Test
+    public void parcelRoundTrip() throws Exception {
+        for (int movieCount : sMovieCounts) {
+            List<MovieParcelable> movies = buildMovies(movieCount);
+            int iterations = Math.max(1, sMoviesPerMeasurement / movieCount);
+
+            // Warm up.
+            for (int i = 0; i < iterations; i++) {
+                roundTrip(movies);
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(movieCount, roundTrip(movies).size());
+            }
+            long elapsedNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            Log.i(LOG_TAG, String.format("%1$d movies: %2$.1f us per round trip, %3$d ns per movie",
+                    movieCount, elapsedNanos / 1e3 / iterations,
+                    elapsedNanos / ((long) iterations * movieCount)));
+        }
+    }
+
+    /**
+     * Compare the detail Intent extras holding the whole movie with the extras holding only its
+     * movieId, through the write/read round trip of starting the detail activity.
+     */
+    @Test
+    public void detailExtrasRoundTrip() throws Exception {
+        MovieParcelable movie = buildMovies(1).get(0);
+        int iterations = sMoviesPerMeasurement;
+
+        Bundle movieExtras = new Bundle();
+        movieExtras.putParcelable("movieDetailKey", movie);
+        Bundle movieIdExtras = new Bundle();
+        movieIdExtras.putInt(MainActivity.KEY_MOVIE_ID, movie.movieId);
+
+        for (Bundle extras : new Bundle[] {movieExtras, movieIdExtras}) {
+            // Warm up.
+            for (int i = 0; i < iterations; i++) {
+                roundTrip(extras);
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(1, roundTrip(extras).size());
+            }
+            long elapsedNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+            Log.i(LOG_TAG, String.format("%1$s extras: %2$d ns per round trip",
+                    extras == movieExtras ? "Movie" : "MovieId", elapsedNanos / iterations));
+        }
+    }
+
+    private static Bundle roundTrip(Bundle extras) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(extras);
+            parcel.setDataPosition(0);
+            Bundle read = parcel.readBundle(MovieParcelable.class.getClassLoader());
+            // Unparcel the values, as the detail activity does on its first get.
+            read.get(read.keySet().iterator().next());
+            return read;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static List<MovieParcelable> roundTrip(List<MovieParcelable> movies) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(movies);
+            parcel.setDataPosition(0);
+            return parcel.createTypedArrayList(MovieParcelable.CREATOR);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static List<MovieParcelable> buildMovies(int movieCount) {
+        List<MovieParcelable> movies = new ArrayList<>(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            MovieParcelable movie = new MovieParcelable();
+            movie.movieId = 100000 + i;
+            movie.title = "Movie " + movie.movieId;
+            movie.releaseDate = 20170100 + 1 + i % 28;
+            movie.posterPath = "/poster" + movie.movieId + ".jpg";
+            movie.voteAverage = 7.5f;
+            movie.voteCount = 1000 + i;
+            movie.popularity = 500.25 - i;
+            movies.add(movie);
+        }
+        return movies;
+    }
+}
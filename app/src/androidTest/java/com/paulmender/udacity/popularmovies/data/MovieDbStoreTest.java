@@ -0,0 +1,152 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieListEntry;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of the MovieDbStore against an in-memory SQLite database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDbStoreTest {
+
+    private static final MovieSortOrder sPopular = MovieSortOrder.MOVIE_SORT_POPULAR;
+    private static final MovieSortOrder sTopRated = MovieSortOrder.MOVIE_SORT_TOP_RATED;
+
+    private MovieDbStore mStore;
+
+    @Before
+    public void setUp() {
+        mStore = new MovieDbStore(InstrumentationRegistry.getTargetContext(), null);
+    }
+
+    @Test
+    public void schema_hasTheContractTables() {
+        SQLiteDatabase db = new MovieDbHelper(InstrumentationRegistry.getTargetContext(), null)
+                .getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT * FROM " + MovieListEntry.TABLE_NAME, null);
+        try {
+            assertTrue(cursor.getColumnIndex(MovieListEntry.COLUMN_POSITION) >= 0);
+        } finally {
+            cursor.close();
+        }
+        Cursor indexes = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'"
+                + " AND name IN (?, ?)", new String[]{
+                MovieDbContract.MovieEntry.INDEX_POPULARITY,
+                MovieDbContract.MovieEntry.INDEX_VOTE_AVERAGE});
+        try {
+            assertEquals(2, indexes.getCount());
+        } finally {
+            indexes.close();
+        }
+        db.close();
+    }
+
+    @Test
+    public void loadMoviePages_readsThePagesInServerOrder() {
+        // The server order differs from the popularity order.
+        mStore.saveMoviePage(sPopular, createPage(2, 3, 20, 21), 2000);
+        mStore.saveMoviePage(sPopular, createPage(1, 3, 12, 10, 11), 1000);
+
+        List<MovieDbPage> pages = mStore.loadMoviePages(sPopular);
+
+        assertEquals(2, pages.size());
+        assertMovieIds(pages.get(0), 12, 10, 11);
+        assertEquals(1, pages.get(0).page);
+        assertEquals(3, pages.get(0).totalPages);
+        assertEquals(1000, pages.get(0).fetchedAtMillis);
+        assertMovieIds(pages.get(1), 20, 21);
+        assertTrue(mStore.loadMoviePages(sTopRated).isEmpty());
+    }
+
+    @Test
+    public void saveMoviePage_otherListDoesNotReorderTheList() {
+        mStore.saveMoviePage(sPopular, createPage(1, 1, 1, 2, 3), 1000);
+
+        // The top rated list saves movie 3 again, with a higher popularity.
+        MovieDbPage topRated = createPage(1, 1, 3);
+        topRated.movies.get(0).popularity = 1000;
+        mStore.saveMoviePage(sTopRated, topRated, 2000);
+
+        assertMovieIds(mStore.loadMoviePages(sPopular).get(0), 1, 2, 3);
+        assertMovieIds(mStore.loadMoviePages(sTopRated).get(0), 3);
+        assertEquals(1000, mStore.loadMovie(3).popularity, 0);
+    }
+
+    @Test
+    public void saveMoviePage_replacesThePage() {
+        MovieDbPage first = createPage(1, 1, 1, 2, 3);
+        first.overviews.put(2, "Two");
+        mStore.saveMoviePage(sPopular, first, 1000);
+        mStore.saveMoviePage(sPopular, createPage(1, 1, 3, 4), 2000);
+
+        List<MovieDbPage> pages = mStore.loadMoviePages(sPopular);
+        assertEquals(1, pages.size());
+        assertMovieIds(pages.get(0), 3, 4);
+        assertEquals(2000, pages.get(0).fetchedAtMillis);
+
+        // The movies stay stored for the detail screen.
+        assertEquals("Movie 1", mStore.loadMovie(1).title);
+        assertEquals("Two", mStore.loadOverview(2));
+        assertNull(mStore.loadOverview(4));
+        assertNull(mStore.loadMovie(5));
+        assertEquals(4, mStore.loadAllMovies().size());
+    }
+
+    @Test
+    public void saveMoviePage_storesAFullPage() {
+        int[] movieIds = new int[20];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = 100 + movieIds.length - i;
+        }
+        mStore.saveMoviePage(sPopular, createPage(1, 1, movieIds), 1000);
+
+        MovieDbPage page = mStore.loadMoviePages(sPopular).get(0);
+        assertMovieIds(page, movieIds);
+        MovieParcelable movie = page.movies.get(0);
+        assertEquals("Movie 120", movie.title);
+        assertEquals(20170826, movie.releaseDate);
+        assertEquals("/poster120.jpg", movie.posterPath);
+        assertEquals(7.5f, movie.voteAverage, 0);
+        assertEquals(1120, movie.voteCount);
+    }
+
+    private static MovieDbPage createPage(int page, int totalPages, int... movieIds) {
+        MovieDbPage moviePage = new MovieDbPage();
+        moviePage.page = page;
+        moviePage.totalPages = totalPages;
+        for (int movieId : movieIds) {
+            MovieParcelable movie = new MovieParcelable();
+            movie.movieId = movieId;
+            movie.title = "Movie " + movieId;
+            movie.releaseDate = 20170826;
+            movie.posterPath = "/poster" + movieId + ".jpg";
+            movie.voteAverage = 7.5f;
+            movie.voteCount = 1000 + movieId;
+            // Ascending, i.e. the reverse of a popularity order.
+            movie.popularity = movieId;
+            moviePage.movies.add(movie);
+        }
+        return moviePage;
+    }
+
+    private static void assertMovieIds(MovieDbPage page, int... movieIds) {
+        assertEquals(movieIds.length, page.movies.size());
+        for (int i = 0; i < movieIds.length; i++) {
+            assertEquals(movieIds[i], page.movies.get(i).movieId);
+        }
+    }
+}
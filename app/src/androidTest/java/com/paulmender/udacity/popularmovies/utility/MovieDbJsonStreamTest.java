@@ -0,0 +1,243 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests of the MovieDbJsonUtility stream parsing, which needs the
+ * android.util.JsonReader of the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDbJsonStreamTest {
+
+    private static InputStream toStream(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+
+    /**
+     * @return A list response of the MovieDB with 20 movies, as of /movie/popular.
+     */
+    private static String getPageJson(int page, int totalPages) {
+        StringBuilder json = new StringBuilder("{\"page\":").append(page).append(",\"results\":[");
+        for (int index = 0; index < 20; index++) {
+            int movieId = 1000 * page + index;
+            if (index > 0) {
+                json.append(',');
+            }
+            json.append("{\"poster_path\":\"/").append(movieId).append(".jpg\",")
+                    .append("\"adult\":false,\"overview\":\"Overview ").append(movieId)
+                    .append("\",\"release_date\":\"2017-08-").append(10 + index).append("\",")
+                    .append("\"genre_ids\":[18,53],\"id\":").append(movieId).append(',')
+                    .append("\"original_title\":\"Movie ").append(movieId).append("\",")
+                    .append("\"title\":\"Movie ").append(movieId).append("\",")
+                    .append("\"backdrop_path\":null,\"popularity\":").append(90.5 - index)
+                    .append(",\"vote_count\":").append(100 + index)
+                    .append(",\"video\":false,\"vote_average\":").append(7.5).append('}');
+        }
+        return json.append("],\"total_results\":").append(20 * totalPages)
+                .append(",\"total_pages\":").append(totalPages).append('}').toString();
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_parsesPageOfMultiplePages() throws Exception {
+        String json = getPageJson(2, 5);
+
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(json));
+
+        assertEquals(2, page.page);
+        assertEquals(5, page.totalPages);
+        assertEquals(100, page.totalResults);
+        assertEquals(20, page.movies.size());
+        assertEquals(20, page.overviews.size());
+        MovieParcelable first = page.movies.get(0);
+        assertEquals(2000, first.movieId);
+        assertEquals("Movie 2000", first.title);
+        assertEquals("/2000.jpg", first.posterPath);
+        assertEquals(20170810, first.releaseDate);
+        assertEquals(7.5f, first.voteAverage, 0);
+        assertEquals(100, first.voteCount);
+        assertEquals(90.5, first.popularity, 0);
+        assertEquals("Overview 2000", page.overviews.get(2000));
+        assertEquals(2019, page.movies.get(19).movieId);
+
+        // The same movies, in the same order, as the JSONObject parser.
+        List<MovieParcelable> expected = MovieDbJsonUtility.getMovieDbStringsFromJson(json);
+        assertEquals(expected.size(), page.movies.size());
+        for (int index = 0; index < expected.size(); index++) {
+            MovieParcelable movie = page.movies.get(index);
+            assertEquals(expected.get(index).movieId, movie.movieId);
+            assertEquals(expected.get(index).title, movie.title);
+            assertEquals(expected.get(index).posterPath, movie.posterPath);
+            assertEquals(expected.get(index).releaseDate, movie.releaseDate);
+            assertEquals(expected.get(index).voteAverage, movie.voteAverage, 0);
+            assertEquals(expected.get(index).voteCount, movie.voteCount);
+            assertEquals(expected.get(index).popularity, movie.popularity, 0);
+        }
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_readsPagingAttributesAfterResults() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                "{\"results\":[{\"id\":1,\"title\":\"A\"}],"
+                + "\"total_pages\":7,\"page\":3,\"total_results\":130}"));
+
+        assertEquals(3, page.page);
+        assertEquals(7, page.totalPages);
+        assertEquals(130, page.totalResults);
+        assertEquals(1, page.movies.size());
+    }
+
+    @Test
+    public void parseMovieDbJsonStream_passesMoviesInOrder() throws Exception {
+        final List<Integer> movieIds = new ArrayList<>();
+        MovieDbJsonUtility.parseMovieDbJsonStream(toStream(getPageJson(1, 2)),
+                new MovieDbJsonUtility.MovieDbJsonOnParsedHandler() {
+                    @Override
+                    public void onMovieParsed(MovieParcelable movie) {
+                        movieIds.add(movie.movieId);
+                    }
+                });
+
+        assertEquals(20, movieIds.size());
+        for (int index = 0; index < movieIds.size(); index++) {
+            assertEquals(1000 + index, (int) movieIds.get(index));
+        }
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_nullFieldsKeepDefaults() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                "{\"page\":1,\"results\":[{\"id\":7,\"poster_path\":null,"
+                + "\"title\":null,\"release_date\":null,\"vote_average\":null,"
+                + "\"vote_count\":null,\"popularity\":null,\"overview\":null}],"
+                + "\"total_pages\":null,\"total_results\":null}"));
+
+        assertEquals(1, page.page);
+        assertEquals(0, page.totalPages);
+        assertEquals(0, page.totalResults);
+        assertEquals(1, page.movies.size());
+        MovieParcelable movie = page.movies.get(0);
+        assertEquals(7, movie.movieId);
+        // A movie without a poster has no poster path, rather than the path "null".
+        assertNull(movie.posterPath);
+        assertNull(movie.title);
+        assertEquals(0, movie.releaseDate);
+        assertEquals(0, movie.voteAverage, 0);
+        assertEquals(0, movie.voteCount);
+        assertEquals(0, movie.popularity, 0);
+        assertTrue(page.overviews.isEmpty());
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_skipsNestedObjectsAndArrays() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                // The dates of /movie/now_playing, before the results.
+                "{\"dates\":{\"maximum\":\"2017-09-20\",\"minimum\":\"2017-08-03\"},"
+                + "\"page\":1,\"results\":["
+                + "{\"genre_ids\":[18,[53,80],{\"id\":1}],\"id\":1,"
+                + "\"belongs_to_collection\":{\"id\":9,\"parts\":[{\"id\":2,"
+                + "\"title\":\"Nested\"}],\"poster_path\":\"/nested.jpg\"},"
+                + "\"title\":\"A\",\"poster_path\":\"/a.jpg\"},"
+                + "{\"id\":2,\"production_companies\":[],\"title\":\"B\"}],"
+                + "\"total_pages\":1}"));
+
+        assertEquals(1, page.page);
+        assertEquals(1, page.totalPages);
+        assertEquals(2, page.movies.size());
+        // The fields of the nested objects do not replace the fields of the movie.
+        assertEquals(1, page.movies.get(0).movieId);
+        assertEquals("A", page.movies.get(0).title);
+        assertEquals("/a.jpg", page.movies.get(0).posterPath);
+        assertEquals(2, page.movies.get(1).movieId);
+        assertEquals("B", page.movies.get(1).title);
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_skipsUnknownFields() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                "{\"unknown\":\"x\",\"page\":1,\"flag\":true,\"ratio\":1.5e3,"
+                + "\"results\":[{\"adult\":false,\"id\":3,\"original_language\":\"en\","
+                + "\"video\":true,\"vote_average\":6.5,\"media_type\":\"movie\"}],"
+                + "\"nothing\":null,\"total_pages\":1}"));
+
+        assertEquals(1, page.page);
+        assertEquals(1, page.totalPages);
+        assertEquals(1, page.movies.size());
+        assertEquals(3, page.movies.get(0).movieId);
+        assertEquals(6.5f, page.movies.get(0).voteAverage, 0);
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_errorCodeHasNoMovies() throws Exception {
+        String errorJson = "{\"cod\":404,\"message\":\"Not found\","
+                + "\"results\":[{\"id\":1,\"title\":\"A\",\"poster_path\":\"/a.jpg\"}]}";
+
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(errorJson));
+
+        assertTrue(page.movies.isEmpty());
+        // As the JSONObject parser, which checks the code with isValidJsonObject.
+        assertTrue(MovieDbJsonUtility.getMovieDbStringsFromJson(errorJson).isEmpty());
+
+        // The code of a successful response does not stop the parsing.
+        page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                "{\"cod\":200,\"results\":[{\"id\":1,\"title\":\"A\"}]}"));
+        assertEquals(1, page.movies.size());
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_invalidJsonFails() throws Exception {
+        try {
+            MovieDbJsonUtility.getMovieDbPageFromJsonStream(toStream(
+                    "{\"page\":1,\"results\":[{\"id\":\"one\"}]}"));
+            fail("The movieId is not a number");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void getMovieDbPageFromJsonStream_keepsOverviewsOutOfMovies() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieDbPageFromJsonStream(
+                new ByteArrayInputStream(("{\"page\":1,\"results\":["
+                + "{\"overview\":\"First\",\"id\":1,\"title\":\"A\"},"
+                + "{\"id\":2,\"title\":\"B\",\"overview\":null}],\"total_pages\":1}")
+                .getBytes("UTF-8")));
+
+        assertEquals(2, page.movies.size());
+        assertEquals("A", page.movies.get(0).title);
+        assertEquals("First", page.overviews.get(1));
+        assertFalse(page.overviews.containsKey(2));
+    }
+
+    @Test
+    public void getMovieFromJsonStream_parsesMovieDetails() throws Exception {
+        MovieDbPage page = MovieDbJsonUtility.getMovieFromJsonStream(new ByteArrayInputStream((
+                "{\"genres\":[{\"id\":18,\"name\":\"Drama\"}],\"id\":550,"
+                + "\"overview\":\"A synopsis.\",\"title\":\"Fight Club\"}").getBytes("UTF-8")));
+
+        assertEquals(1, page.movies.size());
+        assertEquals(550, page.movies.get(0).movieId);
+        assertEquals("A synopsis.", page.overviews.get(550));
+
+        try {
+            MovieDbJsonUtility.getMovieFromJsonStream(new ByteArrayInputStream(
+                    "{\"status_code\":34}".getBytes("UTF-8")));
+            fail("Not a movie");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
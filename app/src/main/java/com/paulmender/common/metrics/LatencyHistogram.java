@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies with fixed, logarithmic buckets from 1 microsecond to
+ * about 18 minutes. Each bucket is 2^(1/4) (about 19%) wider than the previous one, which is
+ * the precision of the reported percentiles.
+ * Thread safe; recording does not allocate.
+ */
+public final class LatencyHistogram {
+
+    //region Static Private fields
+    private static final int sBucketsPerDoubling = 4;
+
+    private static final int sBucketCount = 30 * sBucketsPerDoubling + 1;
+
+    /** The inclusive upper bound of each bucket, in nanoseconds. */
+    private static final long[] sBucketBoundsNanos = new long[sBucketCount];
+
+    static {
+        for (int i = 0; i < sBucketCount; i++) {
+            sBucketBoundsNanos[i] = Math.round(1000 * Math.pow(2, (double) i / sBucketsPerDoubling));
+        }
+    }
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final AtomicLongArray mBucketCounts = new AtomicLongArray(sBucketCount + 1);
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private final AtomicLong mTotalNanos = new AtomicLong();
+
+    private final AtomicLong mMaxNanos = new AtomicLong();
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Record a latency.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = Arrays.binarySearch(sBucketBoundsNanos, nanos);
+        if (bucket < 0) {
+            // The insertion point: the first bucket with a larger bound, or the overflow bucket.
+            bucket = -bucket - 1;
+        }
+        mBucketCounts.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = mMaxNanos.get()) && !mMaxNanos.compareAndSet(max, nanos)) {
+            // Retry, another thread recorded a new maximum.
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    /**
+     * @return The mean latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getMeanNanos() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count;
+    }
+
+    /**
+     * @param percentile The percentile, e.g. 95.
+     * @return The upper bound of the bucket holding the percentile, at most the maximum, in
+     *  nanoseconds; 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < sBucketCount; i++) {
+            seen += mBucketCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(sBucketBoundsNanos[i], mMaxNanos.get());
+            }
+        }
+        return mMaxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < mBucketCounts.length(); i++) {
+            mBucketCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * @return e.g. "count=12 p50=1.20ms p95=4.76ms p99=5.66ms max=5.70ms".
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%1$d p50=%2$s p95=%3$s p99=%4$s max=%5$s",
+                getCount(),
+                formatMillis(getPercentileNanos(50)),
+                formatMillis(getPercentileNanos(95)),
+                formatMillis(getPercentileNanos(99)),
+                formatMillis(getMaxNanos()));
+    }
+    //endregion
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -31,6 +31,7 @@ import android.util.TypedValue;
 public class GridLayoutManagerAutofit extends GridLayoutManager {
     private int mColumnWidth;
     private boolean mColumnWidthChanged = true;
+    private int mCellWidth;
 
     private final String LOG_TAG = "pkmi debug: "+ GridLayoutManager.class.getSimpleName();
 
@@ -67,6 +68,13 @@ public class GridLayoutManagerAutofit extends GridLayoutManager {
         }
     }
 
+    /**
+     * @return The width of a grid cell in pixels, once laid out; otherwise 0.
+     */
+    public int getCellWidth() {
+        return mCellWidth;
+    }
+
     /**
      * Set the span value according to the calculated column width and screen orientation.
      * @param recycler The RecycleView Recycler
@@ -84,6 +92,7 @@ public class GridLayoutManagerAutofit extends GridLayoutManager {
             }
             int spanCount = Math.max(1, totalSpace / mColumnWidth);
             setSpanCount(spanCount);
+            mCellWidth = totalSpace / spanCount;
 
             mColumnWidthChanged = false;
 
@@ -43,11 +43,12 @@ package com.paulmender.udacity.popularmovies;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
-//import android.util.Log;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 import android.view.Menu;
@@ -60,25 +61,54 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.paulmender.common.ui.GridLayoutManagerAutofit;
+import com.paulmender.udacity.popularmovies.adapter.MovieDbPagingScrollListener;
+import com.paulmender.udacity.popularmovies.adapter.MovieDbPosterPrefetcher;
 import com.paulmender.udacity.popularmovies.adapter.MovieDbRecyclerAdapter;
-import com.paulmender.udacity.popularmovies.utility.MovieDbJsonUtility;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+import com.paulmender.udacity.popularmovies.data.MovieDbQueryEngine;
+import com.paulmender.udacity.popularmovies.data.MovieDbStore;
+import com.paulmender.udacity.popularmovies.data.MovieDbSyncJobService;
+import com.paulmender.udacity.popularmovies.data.MovieDbTitleIndex;
+import com.paulmender.udacity.popularmovies.data.MovieListCache;
+import com.paulmender.udacity.popularmovies.data.MovieListSnapshot;
+import com.paulmender.udacity.popularmovies.data.MovieRepository;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFanOutFetcher;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFetchScheduler;
+import com.paulmender.udacity.popularmovies.utility.MovieDbImageLoader;
+import com.paulmender.udacity.popularmovies.utility.MovieDbJankMonitor;
+import com.paulmender.udacity.popularmovies.utility.MovieDbMetrics;
+import com.paulmender.udacity.popularmovies.utility.MovieDbResponseCache;
 import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
 import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
 
-import org.json.JSONException;
-
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * The Popular Movies application's main activity.
  */
 public class MainActivity extends AppCompatActivity
-    implements MovieDbRecyclerAdapter.MovieDbAdapterOnClickHandler{
+    implements MovieDbRecyclerAdapter.MovieDbAdapterOnClickHandler,
+        MovieDbPagingScrollListener.MovieDbNextPageHandler {
 
     //region Static Public fields
-    public static final String KEY_MOVIE_DETAIL = "movieDetailKey";
+    /** The MovieDB id of the movie; the movie itself is resolved through the MovieRepository. */
+    public static final String KEY_MOVIE_ID = "movieIdKey";
+    /** The System.nanoTime() of the poster click, or 0 when the metrics are disabled. */
+    public static final String KEY_DETAIL_OPEN_START_NANOS = "detailOpenStartNanosKey";
+    /** The width of the grid poster, whose cached image is shown while the detail poster loads. */
+    public static final String KEY_POSTER_THUMBNAIL_WIDTH = "posterThumbnailWidthKey";
     //endregion
 
     //region Static Private fields
@@ -88,6 +118,44 @@ public class MainActivity extends AppCompatActivity
 
     private static final int sSortOrderToastTopPosition = 100;
 
+    private static final int sFirstPage = 1;
+
+    /** The sort orders in the order the sort menu item advances through them. */
+    private static final MovieSortOrder[] sSortOrderCycle = {
+            MovieSortOrder.MOVIE_SORT_POPULAR,
+            MovieSortOrder.MOVIE_SORT_TOP_RATED,
+            MovieSortOrder.MOVIE_SORT_NEWEST,
+            MovieSortOrder.MOVIE_SORT_TITLE,
+            MovieSortOrder.MOVIE_SORT_MOST_VOTED };
+
+    private static final String sResponseCacheDirectory = "movie_db_responses";
+
+    private static final long sResponseCacheMaxSize = 2 * 1024 * 1024;
+
+    /** The pages of each sort order fetched ahead at launch. */
+    private static final int sWarmUpPages = 3;
+
+    private static final String sWarmUpGroup = "warmUp";
+
+    private static final String sSnapshotFileName = "movie_list.snapshot";
+
+    /** The pages of the list shown kept in its snapshot, a few tens of KB. */
+    private static final int sSnapshotMaxPages = 3;
+
+    private static final String sSearchGroup = "search";
+    private static final String sSearchIndexKey = "index";
+    private static final String sSearchQueryKey = "query";
+
+    private static final int sSearchResultLimit = 60;
+
+    /** The remote search is made when fewer titles match locally. */
+    private static final int sRemoteSearchMinResults = 20;
+
+    private static final int sRemoteSearchMinLength = 2;
+
+    /** The remote search waits for typing to pause this long. */
+    private static final long sRemoteSearchDelayMillis = 300;
+
     //endregion
 
     //region Declare non-public, non-static fields
@@ -96,6 +164,12 @@ public class MainActivity extends AppCompatActivity
 
     private String mMenuTitleTopRated;
 
+    private String mMenuTitleNewest;
+
+    private String mMenuTitleTitle;
+
+    private String mMenuTitleMostVoted;
+
     private MovieSortOrder mMovieSortOrder;
 
     private TextView mErrorMessageTextView;
@@ -106,7 +180,49 @@ public class MainActivity extends AppCompatActivity
 
     private MovieDbRecyclerAdapter mMovieDbRecyclerAdapter;
 
+    private MovieDbPosterPrefetcher mPosterPrefetcher;
+
+    /** Measures the frame times while the grid scrolls, in debug builds; otherwise null. */
+    private MovieDbJankMonitor mJankMonitor;
+
     private Toast mSortOrderToast;
+
+    /** The last page of the current sort order shown in the grid, 0 if none. */
+    private int mLoadedPage;
+
+    private int mTotalPages;
+
+    /** The fetches of this activity in flight, by sort order and page key. */
+    private final Map<String, MovieDbFetchScheduler.FetchToken> mFetchesInFlight =
+            new HashMap<>();
+
+    /** The launch warm-up fetch in flight, or null. */
+    private MovieDbFetchScheduler.FetchToken mWarmUpToken;
+
+    /** The search query shown in the grid, or null when not searching. */
+    private String mSearchQuery;
+
+    /** The title index, once loaded from the store; until then only the remote search runs. */
+    private MovieDbTitleIndex mTitleIndex;
+
+    private MovieDbFetchScheduler.FetchToken mTitleIndexToken;
+
+    /** The remote search in flight, or null. */
+    private MovieDbFetchScheduler.FetchToken mRemoteSearchToken;
+
+    private final Handler mSearchHandler = new Handler();
+
+    /** The list in the snapshot file, as last restored or written. */
+    private MovieSortOrder mSnapshotSortOrder;
+    private int mSnapshotLoadedPage;
+    private long mSnapshotFetchedAtMillis;
+
+    private final Runnable mRemoteSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            searchRemoteTitles(mSearchQuery);
+        }
+    };
     //endregion Declare reference members
 
     //region Implements Methods
@@ -120,11 +236,29 @@ public class MainActivity extends AppCompatActivity
         Class destinationClass = MovieDetailActivity.class;
         Intent movieDetailIntent = new Intent(context, destinationClass);
 
-        movieDetailIntent.putExtra(KEY_MOVIE_DETAIL, movieDetail);
+        // Only the id is parcelled; the detail activity finds the movie in the repository.
+        MovieRepository.getInstance(context).putMovies(Collections.singletonList(movieDetail));
+        movieDetailIntent.putExtra(KEY_MOVIE_ID, movieDetail.movieId);
+        movieDetailIntent.putExtra(KEY_DETAIL_OPEN_START_NANOS,
+                MovieDbMetrics.isEnabled() ? System.nanoTime() : 0L);
+        movieDetailIntent.putExtra(KEY_POSTER_THUMBNAIL_WIDTH,
+                mMovieDbRecyclerAdapter.getPosterWidth());
 
         startActivity(movieDetailIntent);
     }
 
+    /**
+     * onLoadNextPage implements the MovieDbNextPageHandler.
+     * Fetch the page after the last one shown, unless it is already being fetched.
+     */
+    @Override
+    public void onLoadNextPage() {
+        if (mSearchQuery != null || mLoadedPage == 0 || mLoadedPage >= mTotalPages) {
+            return;
+        }
+        fetchMoviePage(mMovieSortOrder, mLoadedPage + 1, false);
+    }
+
     //endregion
 
     //region Private Methods
@@ -137,6 +271,34 @@ public class MainActivity extends AppCompatActivity
 
         mMovieDbRecyclerAdapter = new MovieDbRecyclerAdapter(this);
         mMoviesRecyclerView.setAdapter(mMovieDbRecyclerAdapter);
+
+        // Load the next page before the end of the grid is reached.
+        int prefetchDistance = getResources().
+                getInteger(R.integer.movie_poster_grid_prefetch_distance);
+        mMoviesRecyclerView.addOnScrollListener(
+                new MovieDbPagingScrollListener(this, prefetchDistance));
+
+        // Warm the image cache with the posters of the next rows in the scroll direction.
+        mPosterPrefetcher = new MovieDbPosterPrefetcher(this, mMovieDbRecyclerAdapter,
+                getResources().getInteger(R.integer.movie_poster_prefetch_rows),
+                getResources().getInteger(R.integer.movie_poster_prefetch_max));
+        mMoviesRecyclerView.addOnScrollListener(mPosterPrefetcher);
+
+        if (BuildConfig.DEBUG) {
+            mJankMonitor = new MovieDbJankMonitor(
+                    MovieDbJankMonitor.getChoreographerFrameScheduler(),
+                    getWindowManager().getDefaultDisplay().getRefreshRate());
+            mMoviesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        mJankMonitor.stop();
+                    } else {
+                        mJankMonitor.start();
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -149,26 +311,487 @@ public class MainActivity extends AppCompatActivity
         int gridColumnWidth = getResources().
                 getInteger(R.integer.movie_poster_grid_column_width_vertical_mode);
         GridLayoutManagerAutofit layoutManager
-                = new GridLayoutManagerAutofit(this,gridColumnWidth);
+                = new GridLayoutManagerAutofit(this,gridColumnWidth) {
+            @Override
+            public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+                long layoutStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.LAYOUT);
+                try {
+                    super.onLayoutChildren(recycler, state);
+                } finally {
+                    MovieDbMetrics.end(MovieDbMetrics.Stage.LAYOUT, layoutStart);
+                }
+            }
+        };
         mMoviesRecyclerView.setLayoutManager(layoutManager);
 
     }
 
     /**
      * Populate the movie list.
+     * The pages already in the movie list cache are shown immediately; if the first page is
+     * stale it is refreshed in the background and swapped in when loaded. On a cache miss the
+     * pages are first read from the local movie store, so the last fetched list is shown
+     * without waiting for (or without) the network.
      * @param sortOrder The sort order of the movies.
      */
     private void setMovieList(MovieSortOrder sortOrder){
 
+        // Fetches for another sort order would not be displayed anymore.
+        cancelMovieFetches(sortOrder);
+        mFetchDataProgressBar.setVisibility(View.INVISIBLE);
+        mPosterPrefetcher.cancel();
+
+        mLoadedPage = 0;
+        mTotalPages = 0;
+
+        if (MovieDbUtility.MovieSortOrderWrapper.isLocal(sortOrder)) {
+            queryLocalMovieList(sortOrder);
+            return;
+        }
+
+        MovieListCache movieListCache = MovieListCache.getInstance();
+        MovieListCache.Entry cachedList = movieListCache.get(sortOrder, sFirstPage);
+        if (cachedList == null) {
+            loadStoredMovieList(sortOrder, movieListCache);
+            cachedList = movieListCache.get(sortOrder, sFirstPage);
+        }
+        if (cachedList != null) {
+            showMainActivityView();
+            mMovieDbRecyclerAdapter.setMovieData(cachedList.movies);
+            mLoadedPage = sFirstPage;
+            mTotalPages = cachedList.totalPages;
+
+            // Restore the following pages that are cached too.
+            MovieListCache.Entry cachedPage;
+            while ((cachedPage = movieListCache.get(sortOrder, mLoadedPage + 1)) != null) {
+                mMovieDbRecyclerAdapter.appendMovieData(cachedPage.movies);
+                mLoadedPage++;
+            }
+
+            if (!cachedList.isStale(System.currentTimeMillis())) {
+                return;
+            }
+        }
+
+        fetchMoviePage(sortOrder, sFirstPage, cachedList != null);
+    }
+
+    /**
+     * Show the movie list last shown from its snapshot, unless the list is cached, e.g. at
+     * launch. The snapshot is read in one small read and its movies are decoded as the grid
+     * binds them, so nothing is fetched or parsed first. A stale list is refreshed.
+     * @return True if the list was restored.
+     */
+    private boolean restoreMovieListSnapshot(){
+        if (MovieDbUtility.MovieSortOrderWrapper.isLocal(mMovieSortOrder)
+                || MovieListCache.getInstance().get(mMovieSortOrder, sFirstPage) != null) {
+            return false;
+        }
+        MovieListSnapshot snapshot = MovieListSnapshot.read(getSnapshotFile());
+        if (snapshot == null || snapshot.getMovies().isEmpty() || !snapshot.getSortOrder()
+                .equals(MovieDbUtility.MovieSortOrderWrapper.getString(mMovieSortOrder))) {
+            return false;
+        }
+        mSnapshotSortOrder = mMovieSortOrder;
+        mSnapshotLoadedPage = snapshot.getLoadedPage();
+        mSnapshotFetchedAtMillis = snapshot.getFetchedAtMillis();
+
+        showMainActivityView();
+        mMovieDbRecyclerAdapter.setMovieData(snapshot.getMovies());
+        mLoadedPage = snapshot.getLoadedPage();
+        mTotalPages = snapshot.getTotalPages();
+
+        long ageMillis = System.currentTimeMillis() - snapshot.getFetchedAtMillis();
+        if (ageMillis >= MovieListCache.getInstance().getTimeToLiveMillis()) {
+            fetchMoviePage(mMovieSortOrder, sFirstPage, true);
+        }
+        return true;
+    }
+
+    /**
+     * Write the first pages of the movie list shown to its snapshot in the background, unless
+     * the snapshot already holds them.
+     */
+    private void saveMovieListSnapshot(){
+        if (mSearchQuery != null || mLoadedPage == 0
+                || MovieDbUtility.MovieSortOrderWrapper.isLocal(mMovieSortOrder)) {
+            return;
+        }
+        MovieListCache movieListCache = MovieListCache.getInstance();
+        MovieListCache.Entry firstPage = movieListCache.get(mMovieSortOrder, sFirstPage);
+        if (firstPage == null) {
+            // Shown from the snapshot, and not refreshed since.
+            return;
+        }
+        int loadedPage = sFirstPage;
+        List<MovieParcelable> movies = new ArrayList<>(firstPage.movies);
+        MovieListCache.Entry cachedPage;
+        while (loadedPage < Math.min(mLoadedPage, sSnapshotMaxPages)
+                && (cachedPage = movieListCache.get(mMovieSortOrder, loadedPage + 1)) != null) {
+            movies.addAll(cachedPage.movies);
+            loadedPage++;
+        }
+        if (mMovieSortOrder == mSnapshotSortOrder && loadedPage == mSnapshotLoadedPage
+                && firstPage.loadedAtMillis == mSnapshotFetchedAtMillis) {
+            return;
+        }
+        mSnapshotSortOrder = mMovieSortOrder;
+        mSnapshotLoadedPage = loadedPage;
+        mSnapshotFetchedAtMillis = firstPage.loadedAtMillis;
+
+        MovieListSnapshot.writeAsync(getSnapshotFile(),
+                MovieDbUtility.MovieSortOrderWrapper.getString(mMovieSortOrder),
+                loadedPage, firstPage.totalPages, firstPage.loadedAtMillis, movies);
+    }
+
+    private File getSnapshotFile(){
+        return new File(getCacheDir(), sSnapshotFileName);
+    }
+
+    /**
+     * Put the pages of the sort order in the local movie store into the movie list cache.
+     * The pages keep the time they were fetched, so old pages are refreshed as stale ones.
+     * Reads the store on the UI thread: it is a single indexed query of a few pages.
+     * @param sortOrder The sort order of the movies.
+     * @param movieListCache The cache to populate.
+     */
+    private void loadStoredMovieList(MovieSortOrder sortOrder, MovieListCache movieListCache){
+        for (MovieDbPage storedPage : MovieDbStore.getInstance(this).loadMoviePages(sortOrder)) {
+            if (!storedPage.movies.isEmpty()) {
+                movieListCache.put(sortOrder, storedPage.page, storedPage.movies,
+                        storedPage.totalPages, storedPage.fetchedAtMillis);
+            }
+        }
+    }
+
+    /**
+     * Fetch a page of movies, unless the same page is already being fetched.
+     * @param sortOrder The sort order of the movies.
+     * @param page The page, starting at 1.
+     * @param refresh True if the page replaces a cached page that is already displayed.
+     */
+    private void fetchMoviePage(MovieSortOrder sortOrder, int page, boolean refresh){
+
         String sortParameter = MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder);
+        String pageKey = getPageKey(sortParameter, page);
+
+        if (mFetchesInFlight.containsKey(pageKey)) {
+            return;
+        }
 
         FetchMoviesParams fetchMoviesParams = new FetchMoviesParams();
         fetchMoviesParams.setSortOrder(sortParameter);
+        fetchMoviesParams.setPage(page);
+        fetchMoviesParams.setRefresh(refresh);
 
-        FetchMoviesTask fetchMoviesTask = new FetchMoviesTask(this,fetchMoviesParams);
+        // A refresh replaces a cached list that is already displayed, and following pages
+        // are appended to it.
+        if (page == sFirstPage && !refresh) {
+            mFetchDataProgressBar.setVisibility(View.VISIBLE);
+        }
 
-        // Fetch the movies using an asynchronous task.
-        fetchMoviesTask.execute(fetchMoviesParams);
+        final URL queryUrl = MovieDbUtility.getURL(sortOrder, page);
+
+        // Fetch the movies in the background; the callback is called on the UI thread.
+        MovieDbFetchScheduler.FetchToken fetchToken = MovieDbFetchScheduler.getInstance().submit(
+                sortParameter, String.valueOf(page),
+                new Callable<MovieDbPage>() {
+                    @Override
+                    public MovieDbPage call() throws IOException {
+                        // Parse the movies as the response streams in rather than buffering it.
+                        return MovieDbUtility.getMoviePageFromHttpUrl(queryUrl);
+                    }
+                },
+                new FetchMoviesCallback(fetchMoviesParams));
+        mFetchesInFlight.put(pageKey, fetchToken);
+    }
+
+    /**
+     * Sort the stored movies locally in the background; no network call is made.
+     * The result is shown as a single page.
+     * @param sortOrder A local sort order.
+     */
+    private void queryLocalMovieList(MovieSortOrder sortOrder){
+
+        String sortParameter = MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder);
+        String pageKey = getPageKey(sortParameter, sFirstPage);
+
+        if (mFetchesInFlight.containsKey(pageKey)) {
+            return;
+        }
+
+        FetchMoviesParams fetchMoviesParams = new FetchMoviesParams();
+        fetchMoviesParams.setSortOrder(sortParameter);
+        fetchMoviesParams.setPage(sFirstPage);
+        fetchMoviesParams.setRefresh(false);
+
+        mFetchDataProgressBar.setVisibility(View.VISIBLE);
+
+        final MovieDbStore movieDbStore = MovieDbStore.getInstance(this);
+        final MovieDbQueryEngine.Query query =
+                MovieDbUtility.MovieSortOrderWrapper.getLocalQuery(sortOrder);
+
+        MovieDbFetchScheduler.FetchToken fetchToken = MovieDbFetchScheduler.getInstance().submit(
+                sortParameter, String.valueOf(sFirstPage),
+                new Callable<MovieDbPage>() {
+                    @Override
+                    public MovieDbPage call() {
+                        // The engine is only built again after the store changed.
+                        MovieDbPage moviePage = new MovieDbPage();
+                        moviePage.page = sFirstPage;
+                        moviePage.totalPages = sFirstPage;
+                        moviePage.movies.addAll(movieDbStore.getQueryEngine().query(query));
+                        return moviePage;
+                    }
+                },
+                new FetchMoviesCallback(fetchMoviesParams));
+        mFetchesInFlight.put(pageKey, fetchToken);
+    }
+
+    /**
+     * Cancel the fetches of this activity, except those of the sort order.
+     * @param keepSortOrder The sort order of the fetches to keep, or null to cancel all.
+     */
+    private void cancelMovieFetches(MovieSortOrder keepSortOrder){
+        String keepGroup = keepSortOrder == null ? null
+                : MovieDbUtility.MovieSortOrderWrapper.getString(keepSortOrder);
+
+        Iterator<MovieDbFetchScheduler.FetchToken> iterator =
+                mFetchesInFlight.values().iterator();
+        while (iterator.hasNext()) {
+            MovieDbFetchScheduler.FetchToken fetchToken = iterator.next();
+            if (!fetchToken.getGroup().equals(keepGroup)) {
+                fetchToken.cancel();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Fetch the first pages of the popular and top rated movies concurrently into the list
+     * cache and the store, unless they are cached and fresh, so that switching the sort order
+     * or scrolling does not wait for the network.
+     */
+    private void warmMovieLists(){
+        final MovieSortOrder[] sortOrders =
+                { MovieSortOrder.MOVIE_SORT_POPULAR, MovieSortOrder.MOVIE_SORT_TOP_RATED };
+
+        final MovieListCache movieListCache = MovieListCache.getInstance();
+        final List<MovieSortOrder> urlSortOrders = new ArrayList<>();
+        final List<Integer> urlPages = new ArrayList<>();
+        final List<URL> urls = new ArrayList<>();
+        long nowMillis = System.currentTimeMillis();
+        for (MovieSortOrder sortOrder : sortOrders) {
+            for (int page = sFirstPage; page < sFirstPage + sWarmUpPages; page++) {
+                MovieListCache.Entry cachedPage = movieListCache.get(sortOrder, page);
+                if (cachedPage == null || cachedPage.isStale(nowMillis)) {
+                    urlSortOrders.add(sortOrder);
+                    urlPages.add(page);
+                    urls.add(MovieDbUtility.getURL(sortOrder, page));
+                }
+            }
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        // The pages are cached on the fetch thread, so the warm-up does not need this activity.
+        final MovieDbStore movieDbStore = MovieDbStore.getInstance(getApplicationContext());
+        mWarmUpToken = MovieDbFetchScheduler.getInstance().submit(sWarmUpGroup, sWarmUpGroup,
+                new Callable<MovieDbFanOutFetcher.Result>() {
+                    @Override
+                    public MovieDbFanOutFetcher.Result call() throws IOException {
+                        MovieDbFanOutFetcher.Result result =
+                                MovieDbFanOutFetcher.getInstance().fetch(urls);
+                        long fetchedAtMillis = System.currentTimeMillis();
+                        for (int index = 0; index < result.getRequestCount(); index++) {
+                            MovieDbPage moviePage = result.getPage(index);
+                            if (moviePage == null || moviePage.movies.isEmpty()) {
+                                continue;
+                            }
+                            MovieSortOrder sortOrder = urlSortOrders.get(index);
+                            int page = urlPages.get(index);
+                            movieListCache.put(sortOrder, page, moviePage.movies,
+                                    moviePage.totalPages, fetchedAtMillis);
+                            movieDbStore.saveMoviePageAsync(sortOrder, moviePage,
+                                    fetchedAtMillis);
+                        }
+                        return result;
+                    }
+                },
+                new MovieDbFetchScheduler.MovieDbFetchCallback<MovieDbFanOutFetcher.Result>() {
+                    @Override
+                    public void onFetchComplete(MovieDbFanOutFetcher.Result result) {
+                        mWarmUpToken = null;
+                        if (!result.isComplete()) {
+                            Log.w(LOG_TAG, String.format("Warm-up: %1$d of %2$d pages failed",
+                                    result.getFailureCount(), result.getRequestCount()));
+                        }
+                    }
+
+                    @Override
+                    public void onFetchFailed(Exception e) {
+                        mWarmUpToken = null;
+                        Log.w(LOG_TAG, "Warm-up failed", e);
+                    }
+                });
+    }
+
+    /**
+     * Show the search results instead of the movie list, and load the title index from the
+     * store in the background, once per activity.
+     */
+    private void startSearch(){
+        cancelMovieFetches(null);
+        mFetchDataProgressBar.setVisibility(View.INVISIBLE);
+        mPosterPrefetcher.cancel();
+        mLoadedPage = 0;
+        mTotalPages = 0;
+        mSearchQuery = "";
+        showSearchResults(new ArrayList<MovieParcelable>());
+
+        if (mTitleIndex != null || mTitleIndexToken != null) {
+            return;
+        }
+        final MovieDbStore movieDbStore = MovieDbStore.getInstance(this);
+        mTitleIndexToken = MovieDbFetchScheduler.getInstance().submit(
+                sSearchGroup, sSearchIndexKey,
+                new Callable<MovieDbTitleIndex>() {
+                    @Override
+                    public MovieDbTitleIndex call() {
+                        return movieDbStore.getTitleIndex();
+                    }
+                },
+                new MovieDbFetchScheduler.MovieDbFetchCallback<MovieDbTitleIndex>() {
+                    @Override
+                    public void onFetchComplete(MovieDbTitleIndex titleIndex) {
+                        mTitleIndexToken = null;
+                        mTitleIndex = titleIndex;
+                        // Show the local matches of what was typed meanwhile.
+                        if (mSearchQuery != null && !mSearchQuery.isEmpty()) {
+                            searchTitles(mSearchQuery);
+                        }
+                    }
+
+                    @Override
+                    public void onFetchFailed(Exception e) {
+                        mTitleIndexToken = null;
+                        Log.w(LOG_TAG, "Title index load failed", e);
+                    }
+                });
+    }
+
+    /**
+     * Stop searching and show the movie list of the sort order again.
+     */
+    private void stopSearch(){
+        cancelSearch();
+        mSearchQuery = null;
+        setMovieList(mMovieSortOrder);
+    }
+
+    /**
+     * Show the titles matching the query in the local index at once, as the user types.
+     * When few titles match, the MovieDB is searched too, once typing pauses.
+     * @param query The query, as typed.
+     */
+    private void searchTitles(String query){
+        cancelSearch();
+        mSearchQuery = query;
+
+        List<MovieParcelable> localMovies = mTitleIndex == null
+                ? new ArrayList<MovieParcelable>()
+                : mTitleIndex.search(query, sSearchResultLimit);
+        showSearchResults(localMovies);
+
+        if (MovieDbTitleIndex.normalize(query).length() >= sRemoteSearchMinLength
+                && localMovies.size() < sRemoteSearchMinResults) {
+            mSearchHandler.postDelayed(mRemoteSearchRunnable, sRemoteSearchDelayMillis);
+        }
+    }
+
+    /**
+     * Search the MovieDB for the titles matching the query. The movies found are added to the
+     * title index, and shown after the local matches.
+     * A newer search supersedes this one.
+     * @param query The query, as typed.
+     */
+    private void searchRemoteTitles(final String query){
+        mSearchHandler.removeCallbacks(mRemoteSearchRunnable);
+
+        final URL searchUrl = MovieDbUtility.getSearchURL(query);
+        final MovieDbStore movieDbStore = MovieDbStore.getInstance(this);
+        final MovieRepository movieRepository = MovieRepository.getInstance(this);
+        mRemoteSearchToken = MovieDbFetchScheduler.getInstance().submit(
+                sSearchGroup, sSearchQueryKey,
+                new Callable<MovieDbPage>() {
+                    @Override
+                    public MovieDbPage call() throws IOException {
+                        MovieDbPage moviePage = MovieDbUtility.getMoviePageFromHttpUrl(searchUrl);
+                        movieDbStore.getTitleIndex().addAll(moviePage.movies);
+                        // Search results are not stored.
+                        movieRepository.putOverviews(moviePage.overviews);
+                        return moviePage;
+                    }
+                },
+                new MovieDbFetchScheduler.MovieDbFetchCallback<MovieDbPage>() {
+                    @Override
+                    public void onFetchComplete(MovieDbPage moviePage) {
+                        mRemoteSearchToken = null;
+                        if (!query.equals(mSearchQuery)) {
+                            return;
+                        }
+                        Map<Integer, MovieParcelable> movies = new LinkedHashMap<>();
+                        if (mTitleIndex != null) {
+                            for (MovieParcelable movie
+                                    : mTitleIndex.search(query, sSearchResultLimit)) {
+                                movies.put(movie.movieId, movie);
+                            }
+                        }
+                        for (MovieParcelable movie : moviePage.movies) {
+                            if (movies.size() == sSearchResultLimit) {
+                                break;
+                            }
+                            if (!movies.containsKey(movie.movieId)) {
+                                movies.put(movie.movieId, movie);
+                            }
+                        }
+                        showSearchResults(new ArrayList<>(movies.values()));
+                    }
+
+                    @Override
+                    public void onFetchFailed(Exception e) {
+                        mRemoteSearchToken = null;
+                        // The local matches stay shown.
+                        Log.w(LOG_TAG, "Remote search failed", e);
+                    }
+                });
+    }
+
+    /**
+     * Cancel the pending and in flight remote search.
+     */
+    private void cancelSearch(){
+        mSearchHandler.removeCallbacks(mRemoteSearchRunnable);
+        if (mRemoteSearchToken != null) {
+            mRemoteSearchToken.cancel();
+            mRemoteSearchToken = null;
+        }
+    }
+
+    private void showSearchResults(List<MovieParcelable> movies){
+        mMovieDbRecyclerAdapter.setMovieData(movies);
+        if (movies.isEmpty() && mSearchQuery != null && !mSearchQuery.isEmpty()) {
+            mErrorMessageTextView.
+                    setText(getResources().getText(R.string.error_message_no_search_results));
+            showErrorMessage();
+        } else {
+            showMainActivityView();
+        }
+    }
+
+    private static String getPageKey(String sortParameter, int page){
+        return sortParameter + '/' + page;
     }
 
     /**
@@ -188,21 +811,19 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Toggle the movie sort order between popular and top rated.
+     * Advance the movie sort order to the next one of the sort order cycle.
      * @param item The sort menu item.
      */
     private void setMovieSortOrder(MenuItem item){
 
-        MovieSortOrder newSortOrder;
-        String newMenuTitle;
-
-        if (item.getTitle() == mMenuTitlePopular) {
-            newMenuTitle = mMenuTitleTopRated;
-            newSortOrder = MovieSortOrder.MOVIE_SORT_TOP_RATED;
-        } else {
-            newMenuTitle = mMenuTitlePopular;
-            newSortOrder = MovieSortOrder.MOVIE_SORT_POPULAR;
+        MovieSortOrder newSortOrder = sSortOrderCycle[0];
+        for (int i = 0; i < sSortOrderCycle.length; i++) {
+            if (sSortOrderCycle[i] == mMovieSortOrder) {
+                newSortOrder = sSortOrderCycle[(i + 1) % sSortOrderCycle.length];
+                break;
+            }
         }
+        String newMenuTitle = getSortOrderTitle(newSortOrder);
 
         // If the sort order changed...
         if (newSortOrder != mMovieSortOrder){
@@ -226,6 +847,24 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    private String getSortOrderTitle(MovieSortOrder sortOrder){
+        String menuTitle;
+        switch (sortOrder){
+            case MOVIE_SORT_POPULAR: menuTitle = mMenuTitlePopular;
+                break;
+            case MOVIE_SORT_TOP_RATED: menuTitle = mMenuTitleTopRated;
+                break;
+            case MOVIE_SORT_NEWEST: menuTitle = mMenuTitleNewest;
+                break;
+            case MOVIE_SORT_TITLE: menuTitle = mMenuTitleTitle;
+                break;
+            case MOVIE_SORT_MOST_VOTED: menuTitle = mMenuTitleMostVoted;
+                break;
+            default: menuTitle = mMenuTitlePopular;
+        }
+        return menuTitle;
+    }
+
     /*
     @Deprecated
     private void setSortSpinner(MenuItem sortMenuItem) {
@@ -253,10 +892,16 @@ public class MainActivity extends AppCompatActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Measure the fetch, parse, bind and image load latencies in debug builds.
+        MovieDbMetrics.setEnabled(BuildConfig.DEBUG, BuildConfig.DEBUG);
+
         //region Set members
 
         mMenuTitlePopular = this.getResources().getString(R.string.sort_array_item_popular);
         mMenuTitleTopRated = this.getResources().getString(R.string.sort_array_item_top_rated);
+        mMenuTitleNewest = this.getResources().getString(R.string.sort_array_item_newest);
+        mMenuTitleTitle = this.getResources().getString(R.string.sort_array_item_title);
+        mMenuTitleMostVoted = this.getResources().getString(R.string.sort_array_item_most_voted);
 
         String movieSortOrder = getSharedPreference(sKeySortOrder);
         if (movieSortOrder != null && !movieSortOrder.isEmpty()){
@@ -283,21 +928,116 @@ public class MainActivity extends AppCompatActivity
 
         mFetchDataProgressBar = (ProgressBar) findViewById(R.id.pb_fetch_data);
 
-        // Populate the movie list.
-        setMovieList(mMovieSortOrder);
+        // Serve repeated queries from the disk cache, revalidating them when they are stale.
+        MovieDbResponseCache.install(
+                new File(getCacheDir(), sResponseCacheDirectory), sResponseCacheMaxSize);
 
         setMovieDbRecycler();
 
         setMoviePosterGridLayout();
 
+        // Populate the movie list (after the adapter is set, it may be populated from the cache),
+        // from the snapshot of the last launch if it is not cached.
+        if (!restoreMovieListSnapshot()) {
+            setMovieList(mMovieSortOrder);
+        }
+
+        // The first page of the sort order shown is shared with the fetch above.
+        warmMovieLists();
+
+        // Refresh the stored lists in the background, so the next launch shows them at once.
+        MovieDbSyncJobService.schedule(this);
+
         //endregion Set members
     }
 
+    @Override
+    protected void onStop() {
+        MovieDbSyncJobService.setPosterWidth(this, mMovieDbRecyclerAdapter.getPosterWidth());
+        saveMovieListSnapshot();
+        if (mJankMonitor != null) {
+            mJankMonitor.stop();
+            Log.i(LOG_TAG, "Jank: " + mJankMonitor.getSummary());
+        }
+        if (MovieDbMetrics.isEnabled()) {
+            MovieDbMetrics.logSummary();
+            Log.i(LOG_TAG, "Images: " + MovieDbImageLoader.getSummary());
+        }
+        super.onStop();
+    }
+
+    /**
+     * Include the latency percentiles in "adb shell dumpsys activity", e.g. for bug reports.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        MovieDbMetrics.dump(prefix, writer);
+        MovieDbImageLoader.dump(prefix, writer);
+        if (mJankMonitor != null) {
+            mJankMonitor.dump(prefix, writer);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Release the callbacks referencing this activity.
+        cancelMovieFetches(null);
+        cancelSearch();
+        if (mTitleIndexToken != null) {
+            mTitleIndexToken.cancel();
+            mTitleIndexToken = null;
+        }
+        if (mWarmUpToken != null) {
+            mWarmUpToken.cancel();
+            mWarmUpToken = null;
+        }
+        mPosterPrefetcher.cancel();
+
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
 
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // Search the MovieDB at once, without waiting for the delay.
+                searchTitles(query);
+                if (MovieDbTitleIndex.normalize(query).length() > 0) {
+                    searchRemoteTitles(query);
+                }
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (mSearchQuery != null) {
+                    searchTitles(newText);
+                }
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearch();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                stopSearch();
+                return true;
+            }
+        });
+
         //MenuItem sortMenu = menu.findItem(R.string.action_sort);
 
         // Set the sort spinner options.
@@ -335,15 +1075,7 @@ public class MainActivity extends AppCompatActivity
     public boolean onPrepareOptionsMenu(Menu menu) {
         MenuItem sortItem = menu.findItem(R.id.action_sort);
 
-        String menuTitle;
-        switch (mMovieSortOrder){
-            case MOVIE_SORT_POPULAR: menuTitle = mMenuTitlePopular;
-                break;
-            case MOVIE_SORT_TOP_RATED: menuTitle = mMenuTitleTopRated;
-                break;
-            default: menuTitle = mMenuTitlePopular;
-        }
-        sortItem.setTitle(menuTitle);
+        sortItem.setTitle(getSortOrderTitle(mMovieSortOrder));
 
         return super.onPrepareOptionsMenu(menu);
     }
@@ -374,109 +1106,133 @@ public class MainActivity extends AppCompatActivity
 
     // endregion
 
-    //region Asynchronous Task
+    //region Fetch Callback
     /**
-     * <p>The three types used by an asynchronous task are the following:</p>
-     * <ol>
-     *     <li><code>Params</code>, the type of the parameters sent to the task upon
-     *     execution.</li>
-     *     <li><code>Progress</code>, the type of the progress units published during
-     *     the background computation.</li>
-     *     <li><code>Result</code>, the type of the result of the background
-     *     computation.</li>
-     * References:
-     *  AsyncTask documentation
+     * Receives a fetched page of movies on the UI thread.
      */
-    private class FetchMoviesTask extends AsyncTask<FetchMoviesParams, Void, List<MovieParcelable>> {
+    private class FetchMoviesCallback
+            implements MovieDbFetchScheduler.MovieDbFetchCallback<MovieDbPage> {
 
-        final Context mContext;
         final FetchMoviesParams mParams;
 
-        // Constructor Overload
-        private FetchMoviesTask(Context context,FetchMoviesParams fetchMoviesParams){
-            mContext = context;
+        // Constructor
+        private FetchMoviesCallback(FetchMoviesParams fetchMoviesParams){
             mParams = fetchMoviesParams;
         }
 
         //region Override methods
         @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-            mFetchDataProgressBar.setVisibility(View.VISIBLE);
-        }
+        public void onFetchComplete(MovieDbPage moviePage) {
 
-        @Override
-        protected List<MovieParcelable> doInBackground(FetchMoviesParams... params) {
-
-            // Set the query URL according to the requested sort order.
-            URL queryUrl;
-
-            queryUrl = MovieDbUtility.getURL(
-                    MovieDbUtility.MovieSortOrderWrapper.getEnumerator(mParams.getSortOrder()));
-
-            String queryResult = null;
-            try {
-                queryResult = MovieDbUtility.getResponseFromHttpUrl(queryUrl);
-            } catch (IOException e) {
-                // Show error message below.
-            } finally{
-                if (queryResult == null){
-                    showErrorMessage();
-                }
+            mFetchesInFlight.remove(getPageKey(mParams.getSortOrder(), mParams.getPage()));
+
+            MovieSortOrder sortOrder =
+                    MovieDbUtility.MovieSortOrderWrapper.getEnumerator(mParams.getSortOrder());
+            int page = mParams.getPage();
+
+            if (page == sFirstPage) {
+                mFetchDataProgressBar.setVisibility(View.INVISIBLE);
             }
 
-            List<MovieParcelable> movieList = null;
-            try {
-                movieList = MovieDbJsonUtility.getMovieDbStringsFromJson(queryResult);
-            } catch (JSONException|java.lang.NullPointerException e) {
-                // Show error message below..
-            } finally{
-                if (movieList == null){
-                    showErrorMessage();
+            if (moviePage != null && ! moviePage.movies.isEmpty()) {
+                // Locally sorted lists are computed from the store, not stored.
+                if (!MovieDbUtility.MovieSortOrderWrapper.isLocal(sortOrder)) {
+                    long nowMillis = System.currentTimeMillis();
+                    MovieListCache.getInstance().put(sortOrder, page, moviePage.movies,
+                            moviePage.totalPages, nowMillis);
+                    MovieDbStore.getInstance(MainActivity.this)
+                            .saveMoviePageAsync(sortOrder, moviePage, nowMillis);
+                }
+
+                // Do not display the result if the sort order changed in the meantime, or
+                // search results are shown.
+                if (sortOrder != mMovieSortOrder || mSearchQuery != null) {
+                    return;
                 }
+
+                if (page == sFirstPage && mLoadedPage <= sFirstPage) {
+                    showMainActivityView();
+                    mMovieDbRecyclerAdapter.setMovieData(moviePage.movies);
+                    mLoadedPage = sFirstPage;
+                    mTotalPages = moviePage.totalPages;
+                } else if (page == mLoadedPage + 1) {
+                    mMovieDbRecyclerAdapter.appendMovieData(moviePage.movies);
+                    mLoadedPage = page;
+                    mTotalPages = moviePage.totalPages;
+                }
+                // else a refreshed first page behind later pages, it is used from the cache
+                // the next time the list is shown.
+            }
+            else {
+                showFetchError();
             }
-            return movieList;
         }
 
         @Override
-        protected void onPostExecute(List<MovieParcelable> movieParcelableList) {
+        public void onFetchFailed(Exception e) {
 
-            mFetchDataProgressBar.setVisibility(View.INVISIBLE);
+            mFetchesInFlight.remove(getPageKey(mParams.getSortOrder(), mParams.getPage()));
 
-            if (movieParcelableList != null && ! movieParcelableList.isEmpty()) {
-                showMainActivityView();
-                mMovieDbRecyclerAdapter.setMovieData(movieParcelableList);
+            if (mParams.getPage() == sFirstPage) {
+                mFetchDataProgressBar.setVisibility(View.INVISIBLE);
             }
-            else {
+            showFetchError();
+        }
+        //endregion Override methods
+
+        /**
+         * Show the error message if the first page could not be loaded. Otherwise keep showing
+         * the list; a failed next page is fetched again on scrolling.
+         */
+        private void showFetchError() {
+            if (mParams.getPage() == sFirstPage && !mParams.isRefresh()) {
                 mErrorMessageTextView.
                         setText(getResources().getText(R.string.error_message_no_query_results));
                 showErrorMessage();
             }
         }
-        //endregion Override methods
-
-     }
+    }
 
     /**
-     * Parses the params type passed to the asynctask.
+     * Parses the params of a movie page fetch.
      * Each parameter is accessed through a public get method.
-     * Note:; Only the sort order parameter is currently supported.
+     * Note:; Only the sort order, page and refresh parameters are currently supported.
      */
     private class FetchMoviesParams {
 
         private String sortOrder;
 
+        private int page;
+
+        private boolean refresh;
+
         private String getSortOrder() {
             return sortOrder;
         }
 
+        private int getPage() {
+            return page;
+        }
+
+        private void setPage(int pageValue) {
+            page = pageValue;
+        }
+
         private void setSortOrder(String sortOrderValue) {
             sortOrder = sortOrderValue;
         }
 
+        private boolean isRefresh() {
+            return refresh;
+        }
+
+        private void setRefresh(boolean refreshValue) {
+            refresh = refreshValue;
+        }
+
         // Constructor
         private FetchMoviesParams(){
         }
     }
-     //endregion Asynchronous Task
+     //endregion Fetch Callback
 }
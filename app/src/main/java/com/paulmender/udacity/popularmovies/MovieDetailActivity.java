@@ -15,14 +15,24 @@
 package com.paulmender.udacity.popularmovies;
 
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.paulmender.udacity.popularmovies.data.MovieRepository;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFetchScheduler;
+import com.paulmender.udacity.popularmovies.utility.MovieDbImageLoader;
+import com.paulmender.udacity.popularmovies.utility.MovieDbMetrics;
 import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
-import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.NetworkPolicy;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * Display the details of the movie selected from the main activity:
@@ -35,51 +45,208 @@ public class MovieDetailActivity extends AppCompatActivity {
     private final String LOG_TAG = "pkmi debug: "+
             MovieDetailActivity.class.getSimpleName();
 
+    private static final String sDetailGroup = "detail";
+
+    /** The movie load in flight, or null. */
+    private MovieDbFetchScheduler.FetchToken mMovieToken;
+
+    /** The overview load in flight, or null. */
+    private MovieDbFetchScheduler.FetchToken mOverviewToken;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         setContentView(R.layout.activity_movie_detail);
 
-        setMovieDetailContent();
+        setMovieDetailContent(savedInstanceState != null);
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Release the callbacks referencing this activity.
+        if (mMovieToken != null) {
+            mMovieToken.cancel();
+            mMovieToken = null;
+        }
+        if (mOverviewToken != null) {
+            mOverviewToken.cancel();
+            mOverviewToken = null;
+        }
+        super.onDestroy();
     }
 
     //region Private Methods
 
     /**
-     * Populate the movie detail view.
+     * Populate the movie detail view with the movie of the caller's movieId: at once if the
+     * repository holds it, as it does when opened from the main activity, otherwise once it is
+     * loaded in the background, e.g. after the process was restarted.
+     * @param recreated True if the activity is recreated, e.g. after a rotation, rather than
+     *                  opened by the poster click whose time the intent holds.
      */
-    private void setMovieDetailContent() {
+    private void setMovieDetailContent(boolean recreated) {
+
+        Intent callerIntent = getIntent();
+
+        if (callerIntent == null || !callerIntent.hasExtra(MainActivity.KEY_MOVIE_ID)) {
+            return;
+        }
+
+        final int movieId = callerIntent.getIntExtra(MainActivity.KEY_MOVIE_ID, 0);
+        final int thumbnailWidth =
+                callerIntent.getIntExtra(MainActivity.KEY_POSTER_THUMBNAIL_WIDTH, 0);
+        final long openStartNanos = recreated ? 0 :
+                callerIntent.getLongExtra(MainActivity.KEY_DETAIL_OPEN_START_NANOS, 0);
+
+        setOverview((TextView) findViewById(R.id.tv_movie_detail_overview), movieId);
+
+        final MovieRepository movieRepository = MovieRepository.getInstance(this);
+        MovieParcelable cachedMovie = movieRepository.getCachedMovie(movieId);
+        if (cachedMovie != null) {
+            showMovie(cachedMovie, thumbnailWidth, openStartNanos);
+            return;
+        }
+
+        mMovieToken = MovieDbFetchScheduler.getInstance().submit(
+                sDetailGroup, "movie/" + movieId,
+                new Callable<MovieParcelable>() {
+                    @Override
+                    public MovieParcelable call() throws IOException {
+                        MovieParcelable movie = movieRepository.loadMovie(movieId);
+                        if (movie == null) {
+                            throw new IOException("Movie " + movieId + " not found");
+                        }
+                        return movie;
+                    }
+                },
+                new MovieDbFetchScheduler.MovieDbFetchCallback<MovieParcelable>() {
+                    @Override
+                    public void onFetchComplete(MovieParcelable result) {
+                        mMovieToken = null;
+                        showMovie(result, thumbnailWidth, openStartNanos);
+                    }
+
+                    @Override
+                    public void onFetchFailed(Exception e) {
+                        mMovieToken = null;
+                        Log.w(LOG_TAG, "Movie load failed", e);
+                        TextView Title = (TextView) findViewById(R.id.tv_movie_detail_title);
+                        Title.setText(R.string.error_message_movie);
+                    }
+                });
+    }
+
+    /**
+     * Show the title, poster, release year and user rating of the movie.
+     * @param movie The movie.
+     * @param thumbnailWidth The width of the grid poster, or 0 if unknown.
+     * @param openStartNanos The System.nanoTime() of the poster click, or 0 if not measured.
+     */
+    private void showMovie(MovieParcelable movie, int thumbnailWidth, long openStartNanos) {
 
         TextView Title = (TextView) findViewById(R.id.tv_movie_detail_title);
         ImageView Poster = (ImageView) findViewById(R.id.iv_movie_detail_poster);
         TextView Year = (TextView) findViewById(R.id.tv_movie_detail_year);
         TextView VoteAverage = (TextView) findViewById(R.id.tv_movie_detail_vote_average);
-        TextView Overview = (TextView) findViewById(R.id.tv_movie_detail_overview);
 
-        Intent callerIntent = getIntent();
+        Title.setText(movie.title);
 
-        if (callerIntent != null) {
+        setPoster(Poster, movie.posterPath, thumbnailWidth);
 
-            if (callerIntent.hasExtra(MainActivity.KEY_MOVIE_DETAIL)) {
-                MovieParcelable mMovie = getIntent().getParcelableExtra(MainActivity.KEY_MOVIE_DETAIL);
-                Title.setText(mMovie.title);
+        int year = movie.getReleaseYear();
+        Year.setText(year == 0 ? "" : String.valueOf(year));
 
-                String loadImage = MovieDbUtility.getImageUrlString(mMovie.posterPath);
-                Picasso.with(this).
-                        load(loadImage).
-                        into(Poster);
+        String voteAverageText= movie.voteAverage +
+                getResources().getString(R.string.vote_scale_suffix);
+        VoteAverage.setText(voteAverageText);
 
-                String year = mMovie.releaseDate.substring(0,4);
-                Year.setText(year);
+        MovieDbMetrics.record(MovieDbMetrics.Stage.DETAIL_OPEN, openStartNanos);
+    }
 
-                String voteAverageText= mMovie.voteAverage +
-                        getResources().getString(R.string.vote_scale_suffix);
-                VoteAverage.setText(voteAverageText);
+    /**
+     * Show the overview, which the movie lists do not hold: from memory if it was loaded
+     * recently, otherwise once it is loaded from the store or the MovieDB in the background.
+     * @param overview The overview view.
+     * @param movieId The MovieDB id of the movie.
+     */
+    private void setOverview(final TextView overview, final int movieId) {
+        final MovieRepository movieRepository = MovieRepository.getInstance(this);
+        String cachedOverview = movieRepository.getCachedOverview(movieId);
+        if (cachedOverview != null) {
+            overview.setText(cachedOverview);
+            return;
+        }
+
+        mOverviewToken = MovieDbFetchScheduler.getInstance().submit(
+                sDetailGroup, "overview/" + movieId,
+                new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return movieRepository.loadOverview(movieId);
+                    }
+                },
+                new MovieDbFetchScheduler.MovieDbFetchCallback<String>() {
+                    @Override
+                    public void onFetchComplete(String result) {
+                        mOverviewToken = null;
+                        overview.setText(result);
+                    }
+
+                    @Override
+                    public void onFetchFailed(Exception e) {
+                        mOverviewToken = null;
+                        Log.w(LOG_TAG, "Overview load failed", e);
+                        overview.setText(R.string.error_message_overview);
+                    }
+                });
+    }
+
+    /**
+     * Load the poster in the smallest size covering the poster view.
+     * The grid poster, if it is in the image cache, is shown until the poster is loaded.
+     * @param poster The poster view.
+     * @param posterPath The Movie's image path.
+     * @param thumbnailWidth The width of the grid poster, or 0 if unknown.
+     */
+    private void setPoster(final ImageView poster, String posterPath, int thumbnailWidth) {
+
+        // Posters have a 2:3 aspect ratio; the view height is fixed.
+        int posterWidth = getResources().getDimensionPixelSize(
+                R.dimen.movie_poster_image_height) * 2 / 3;
+        final String posterUrl = MovieDbUtility.getImageUrlString(posterPath, posterWidth);
+
+        String thumbnailUrl = MovieDbUtility.getImageUrlString(posterPath, thumbnailWidth);
+        if (thumbnailWidth <= 0 || thumbnailUrl.equals(posterUrl)) {
+            MovieDbImageLoader.with(this).
+                    load(posterUrl).
+                    into(poster);
+            return;
+        }
+
+        MovieDbImageLoader.loadThumbnail(this, thumbnailUrl, thumbnailWidth).
+                networkPolicy(NetworkPolicy.OFFLINE).
+                noFade().
+                into(poster, new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        loadPoster(poster, posterUrl, poster.getDrawable());
+                    }
+
+                    @Override
+                    public void onError() {
+                        // The grid poster is not cached.
+                        loadPoster(poster, posterUrl, null);
+                    }
+                });
+    }
 
-                Overview.setText(mMovie.overview);
-            }
+    private void loadPoster(ImageView poster, String posterUrl, Drawable placeholder) {
+        RequestCreator request = MovieDbImageLoader.with(this).load(posterUrl);
+        if (placeholder != null) {
+            request.placeholder(placeholder);
         }
-        //endregion Private Methods
+        request.into(poster);
     }
+    //endregion Private Methods
 }
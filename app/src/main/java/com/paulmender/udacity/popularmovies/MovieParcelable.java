@@ -19,7 +19,9 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 /**
- * The movie class includes all of the attributes used by the Popular Movies application.
+ * The movie class includes the attributes of the movie lists of the Popular Movies application.
+ * The plot synopsis, shown only by the detail screen, is loaded by movieId instead (see
+ * MovieRepository), which keeps it out of the lists and of the detail Intent.
  * The Parcelable implementation is based on the references:
  *    - android-custom-arrayadapter-parcelable project
  *    - https://guides.codepath.com/android/using-parcelable
@@ -32,12 +34,21 @@ public class MovieParcelable implements Parcelable {
     // Properties
     public int movieId;
     public String title;
-    public String releaseDate;
+    /** The release date packed as yyyymmdd, e.g. 20170826, or 0 if unknown. */
+    public int releaseDate;
     public String posterPath;
-    public String voteAverage;
-    public String overview; // plot synopsis
+    public float voteAverage;
+    public int voteCount;
+    public double popularity;
     private int totalResults;
 
+    /**
+     * @return The release year, or 0 if unknown.
+     */
+    public int getReleaseYear() {
+        return releaseDate / 10000;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -50,10 +61,11 @@ public class MovieParcelable implements Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeInt(this.movieId);
         dest.writeString(this.title);
-        dest.writeString(this.releaseDate);
+        dest.writeInt(this.releaseDate);
         dest.writeString(this.posterPath);
-        dest.writeString(this.voteAverage);
-        dest.writeString(this.overview);
+        dest.writeFloat(this.voteAverage);
+        dest.writeInt(this.voteCount);
+        dest.writeDouble(this.popularity);
         dest.writeInt(this.totalResults);
     }
 
@@ -66,10 +78,11 @@ public class MovieParcelable implements Parcelable {
     private MovieParcelable(Parcel in) {
         this.movieId = in.readInt();
         this.title = in.readString();
-        this.releaseDate = in.readString();
+        this.releaseDate = in.readInt();
         this.posterPath = in.readString();
-        this.voteAverage = in.readString();
-        this.overview = in.readString();
+        this.voteAverage = in.readFloat();
+        this.voteCount = in.readInt();
+        this.popularity = in.readDouble();
         this.totalResults = in.readInt();
     }
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.adapter;
+
+import android.support.v7.util.DiffUtil;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.util.List;
+
+/**
+ * Compares two movie lists for DiffUtil. Movies are identified by their movieId; a movie's
+ * content, as far as the poster grid is concerned, is its poster.
+ */
+class MovieDbDiffCallback extends DiffUtil.Callback {
+
+    private final List<MovieParcelable> mOldMovieList;
+
+    private final List<MovieParcelable> mNewMovieList;
+
+    // Constructor
+    MovieDbDiffCallback(List<MovieParcelable> oldMovieList, List<MovieParcelable> newMovieList) {
+        mOldMovieList = oldMovieList;
+        mNewMovieList = newMovieList;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldMovieList.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewMovieList.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldMovieList.get(oldItemPosition).movieId
+                == mNewMovieList.get(newItemPosition).movieId;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        String oldPosterPath = mOldMovieList.get(oldItemPosition).posterPath;
+        String newPosterPath = mNewMovieList.get(newItemPosition).posterPath;
+        return oldPosterPath == null ? newPosterPath == null : oldPosterPath.equals(newPosterPath);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.adapter;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the movie list of MovieDbRecyclerAdapter. A new list is diffed with the displayed one
+ * on the diff executor, and the differences are dispatched as granular updates on the main
+ * executor, so only the changed movies are rebound. Pages appended while a difference is being
+ * computed are appended to the new list once it is dispatched.
+ * All methods are called on the main thread.
+ */
+final class MovieDbListDiffer {
+
+    //region Declare non-public, non-static fields
+    private final Callback mCallback;
+
+    private final Executor mDiffExecutor;
+
+    private final Executor mMainExecutor;
+
+    private List<MovieParcelable> mMovieList;
+
+    /**
+     * Incremented by every setMovieList call; a difference computed for an older call is
+     * discarded.
+     */
+    private int mMovieListGeneration;
+
+    /**
+     * The movies appended while a difference is being computed, appended again once the new
+     * list is dispatched.
+     */
+    private final List<MovieParcelable> mPendingAppendList = new ArrayList<>();
+
+    private boolean mDiffPending;
+
+    /**
+     * True while mMovieList is the list passed to setMovieList, copied before a page is appended
+     * to it. Keeping it means a lazily decoded list (see MovieListSnapshot) is only decoded as
+     * its movies are bound.
+     */
+    private boolean mMovieListShared;
+    //endregion
+
+    /**
+     * Receives the updates of the movie list, e.g. the adapter notifications.
+     */
+    interface Callback extends ListUpdateCallback {
+        /** The list was replaced without computing the differences. */
+        void onListReplaced();
+    }
+
+    // Constructor
+    /**
+     * @param callback Receives the updates on the main thread.
+     * @param diffExecutor Computes the differences off the main thread.
+     * @param mainExecutor Runs on the main thread.
+     */
+    MovieDbListDiffer(Callback callback, Executor diffExecutor, Executor mainExecutor) {
+        mCallback = callback;
+        mDiffExecutor = diffExecutor;
+        mMainExecutor = mainExecutor;
+    }
+
+    /**
+     * @return The movies displayed, or null if none were set.
+     */
+    List<MovieParcelable> getMovieList() {
+        return mMovieList;
+    }
+
+    /**
+     * Replace the movies. When nothing is displayed the list is kept as is, so it must not be
+     * modified afterwards.
+     * @param movieList The new movies to be displayed.
+     */
+    void setMovieList(List<MovieParcelable> movieList) {
+        final int generation = ++mMovieListGeneration;
+        mPendingAppendList.clear();
+
+        if (mMovieList == null || mMovieList.isEmpty() || movieList == null
+                || movieList.isEmpty()) {
+            // Nothing to compare.
+            mDiffPending = false;
+            mMovieList = movieList;
+            mMovieListShared = true;
+            mCallback.onListReplaced();
+            return;
+        }
+
+        mDiffPending = true;
+        // Copy the lists, pages are appended to the displayed list.
+        final List<MovieParcelable> oldMovieList = new ArrayList<>(mMovieList);
+        final List<MovieParcelable> newMovieList = new ArrayList<>(movieList);
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                        new MovieDbDiffCallback(oldMovieList, newMovieList), true);
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mMovieListGeneration) {
+                            // Superseded by a later setMovieList call.
+                            return;
+                        }
+                        mDiffPending = false;
+                        mMovieList = newMovieList;
+                        mMovieListShared = false;
+                        diffResult.dispatchUpdatesTo(mCallback);
+
+                        if (!mPendingAppendList.isEmpty()) {
+                            List<MovieParcelable> appendList = new ArrayList<>(mPendingAppendList);
+                            mPendingAppendList.clear();
+                            appendMovieList(appendList);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Append the next page of movies. Only the inserted range is notified.
+     * @param movieList The movies to be appended.
+     */
+    void appendMovieList(List<MovieParcelable> movieList) {
+        if (mDiffPending) {
+            // Appended to the new list once it is dispatched.
+            mPendingAppendList.addAll(movieList);
+            return;
+        }
+        if (mMovieList == null) {
+            setMovieList(movieList);
+            return;
+        }
+        if (mMovieListShared) {
+            mMovieList = new ArrayList<>(mMovieList);
+            mMovieListShared = false;
+        }
+        int positionStart = mMovieList.size();
+        mMovieList.addAll(movieList);
+        mCallback.onInserted(positionStart, movieList.size());
+    }
+}
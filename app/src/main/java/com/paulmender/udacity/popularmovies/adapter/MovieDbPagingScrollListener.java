@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.adapter;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Requests the next page of movies when the RecyclerView is scrolled to within the prefetch
+ * distance of the end of the list, so that the next page is loaded before it is reached.
+ */
+public class MovieDbPagingScrollListener extends RecyclerView.OnScrollListener {
+
+    /**
+     * The interface for receiving next page requests.
+     * It may be called repeatedly while the page is loading; the handler must ignore
+     * requests for a page that is already in flight.
+     */
+    public interface MovieDbNextPageHandler {
+        void onLoadNextPage();
+    }
+
+    private final MovieDbNextPageHandler mNextPageHandler;
+
+    /** The number of items from the end of the list at which the next page is requested. */
+    private final int mPrefetchDistance;
+
+    // Constructor
+    public MovieDbPagingScrollListener(MovieDbNextPageHandler nextPageHandler,
+                                       int prefetchDistance) {
+        mNextPageHandler = nextPageHandler;
+        mPrefetchDistance = prefetchDistance;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        // Only scrolling towards the end of the list loads more.
+        if (dy <= 0) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) {
+            return;
+        }
+        int lastVisiblePosition =
+                ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        int itemCount = layoutManager.getItemCount();
+        if (lastVisiblePosition != RecyclerView.NO_POSITION
+                && lastVisiblePosition + mPrefetchDistance >= itemCount - 1) {
+            mNextPageHandler.onLoadNextPage();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.adapter;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.paulmender.udacity.popularmovies.utility.MovieDbImageLoader;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+/**
+ * Warms the image cache with the posters of the next rows in the scroll direction, so that
+ * the cells are bound from memory instead of showing blank tiles during a fling.
+ * The number of rows follows the span count set by GridLayoutManagerAutofit. Prefetches run at
+ * low priority, below the loads of the cells on screen, and are cancelled when the scroll
+ * direction reverses or the movie list is replaced.
+ */
+public class MovieDbPosterPrefetcher extends RecyclerView.OnScrollListener {
+
+    /** Tags the prefetch requests of all prefetchers, so that they can be cancelled together. */
+    private static final Object sPrefetchTag = new Object();
+
+    private static final int sDirectionNone = 0;
+
+    private final Context mContext;
+
+    private final MovieDbRecyclerAdapter mAdapter;
+
+    /** The number of rows ahead of the visible rows to prefetch. */
+    private final int mPrefetchRows;
+
+    /** The maximum number of posters ahead of the visible rows to prefetch. */
+    private final int mMaxPrefetches;
+
+    private int mDirection = sDirectionNone;
+
+    /** The furthest position prefetched in the current direction, or NO_POSITION. */
+    private int mPrefetchedPosition = RecyclerView.NO_POSITION;
+
+    private int mPrefetchCount;
+
+    // Constructor
+    public MovieDbPosterPrefetcher(Context context, MovieDbRecyclerAdapter adapter,
+                                   int prefetchRows, int maxPrefetches) {
+        mContext = context.getApplicationContext();
+        mAdapter = adapter;
+        mPrefetchRows = prefetchRows;
+        mMaxPrefetches = maxPrefetches;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return;
+        }
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof GridLayoutManager)) {
+            return;
+        }
+        GridLayoutManager gridLayoutManager = (GridLayoutManager) layoutManager;
+        int firstVisiblePosition = gridLayoutManager.findFirstVisibleItemPosition();
+        int lastVisiblePosition = gridLayoutManager.findLastVisibleItemPosition();
+        if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        int direction = dy > 0 ? 1 : -1;
+        if (direction != mDirection) {
+            // The posters ahead in the old direction are not needed soon anymore.
+            cancel();
+            mDirection = direction;
+        }
+
+        int[] window = getPrefetchWindow(direction, firstVisiblePosition, lastVisiblePosition,
+                gridLayoutManager.getSpanCount() * mPrefetchRows, mMaxPrefetches,
+                mAdapter.getItemCount());
+        if (window == null) {
+            return;
+        }
+        int start = window[0];
+        if (mPrefetchedPosition != RecyclerView.NO_POSITION
+                && (mPrefetchedPosition - start) * direction >= 0) {
+            // Skip the posters already prefetched.
+            start = mPrefetchedPosition + direction;
+        }
+        for (int position = start; (window[1] - position) * direction >= 0;
+             position += direction) {
+            prefetch(position);
+            mPrefetchedPosition = position;
+        }
+    }
+
+    /**
+     * Cancel the prefetches in flight, e.g. when the movie list is replaced.
+     */
+    public void cancel() {
+        MovieDbImageLoader.with(mContext).cancelTag(sPrefetchTag);
+        mDirection = sDirectionNone;
+        mPrefetchedPosition = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @return The number of posters prefetched.
+     */
+    public int getPrefetchCount() {
+        return mPrefetchCount;
+    }
+
+    /**
+     * Compute the positions to prefetch ahead of the visible positions.
+     * @param direction 1 when scrolling towards the end of the list, -1 towards the start.
+     * @param firstVisiblePosition The first visible position.
+     * @param lastVisiblePosition The last visible position.
+     * @param prefetchDistance The number of positions ahead to prefetch, e.g. rows * span count.
+     * @param maxPrefetches The maximum number of positions to prefetch.
+     * @param itemCount The number of items in the list.
+     * @return The first and last position to prefetch, in the order of the direction, or null
+     *  if there is nothing ahead.
+     */
+    static int[] getPrefetchWindow(int direction, int firstVisiblePosition,
+                                   int lastVisiblePosition, int prefetchDistance,
+                                   int maxPrefetches, int itemCount) {
+        int distance = Math.min(prefetchDistance, maxPrefetches);
+        if (distance <= 0) {
+            return null;
+        }
+        if (direction > 0) {
+            int start = lastVisiblePosition + 1;
+            int end = Math.min(itemCount - 1, lastVisiblePosition + distance);
+            return start <= end ? new int[]{start, end} : null;
+        } else {
+            int start = firstVisiblePosition - 1;
+            int end = Math.max(0, firstVisiblePosition - distance);
+            return start >= end ? new int[]{start, end} : null;
+        }
+    }
+
+    private void prefetch(int position) {
+        RequestCreator request = mAdapter.getPosterRequest(mContext, position);
+        if (request == null) {
+            return;
+        }
+        request.priority(Picasso.Priority.LOW)
+                .tag(sPrefetchTag)
+                .fetch();
+        mPrefetchCount++;
+    }
+}
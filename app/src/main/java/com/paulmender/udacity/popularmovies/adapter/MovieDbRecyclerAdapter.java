@@ -16,6 +16,8 @@
 package com.paulmender.udacity.popularmovies.adapter;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.widget.RecyclerView;
 //import android.util.Log;
 import android.view.LayoutInflater;
@@ -23,12 +25,17 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.paulmender.common.ui.GridLayoutManagerAutofit;
 import com.paulmender.udacity.popularmovies.MovieParcelable;
 import com.paulmender.udacity.popularmovies.R;
+import com.paulmender.udacity.popularmovies.utility.MovieDbImageLoader;
+import com.paulmender.udacity.popularmovies.utility.MovieDbMetrics;
 import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
-import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Recycler Adapter for the MovieDb.
@@ -41,8 +48,15 @@ public class MovieDbRecyclerAdapter extends
 
     //private static final String LOG_TAG = MovieDbRecyclerAdapter.class.getSimpleName();
 
+    /**
+     * Computes the differences between movie lists off the UI thread.
+     */
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+
     // Stores a list of parcelable movies from the MovieDB API.
-    private List<MovieParcelable> mMovieList;
+    private final MovieDbListDiffer mMovieListDiffer;
+
+    private RecyclerView mRecyclerView;
 
     /**
      * Define an on-click handler to allow an Activity to interface with the RecyclerView.
@@ -61,6 +75,40 @@ public class MovieDbRecyclerAdapter extends
      */
     public MovieDbRecyclerAdapter(MovieDbAdapterOnClickHandler clickHandler) {
         mClickHandler = clickHandler;
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        };
+        mMovieListDiffer = new MovieDbListDiffer(new MovieDbListDiffer.Callback() {
+            @Override
+            public void onListReplaced() {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        }, sDiffExecutor, mainExecutor);
     }
 
     /**
@@ -83,7 +131,11 @@ public class MovieDbRecyclerAdapter extends
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            MovieParcelable movie = mMovieList.get(adapterPosition);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                // The item is being removed.
+                return;
+            }
+            MovieParcelable movie = mMovieListDiffer.getMovieList().get(adapterPosition);
             mClickHandler.onClick(movie);
         }
 
@@ -136,10 +188,23 @@ public class MovieDbRecyclerAdapter extends
     public void onBindViewHolder(MovieDbViewHolder holder, int position) {
 
         try {
-        String loadImage =  MovieDbUtility.getImageUrlString(mMovieList.get(position).posterPath);
-            Picasso.with(holder.context).
-                    load(loadImage).
-                    into(holder.moviePosterImageView);
+            RequestCreator request;
+            long bindStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.BIND);
+            try {
+                request = getPosterRequest(holder.context, position);
+            } finally {
+                MovieDbMetrics.end(MovieDbMetrics.Stage.BIND, bindStart);
+            }
+
+            // Setting the poster from the memory cache (or its placeholder) is measured apart.
+            long displayStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.IMAGE_DISPLAY);
+            try {
+                if (request != null) {
+                    request.into(holder.moviePosterImageView);
+                }
+            } finally {
+                MovieDbMetrics.end(MovieDbMetrics.Stage.IMAGE_DISPLAY, displayStart);
+            }
             //Log.d(LOG_TAG,getResources().getString(R.string.pkmi_debug)+"Picasso: "+loadImage);
         }
         catch (Exception e)
@@ -148,25 +213,100 @@ public class MovieDbRecyclerAdapter extends
         }
     }
 
+    /**
+     * Release the poster of a recycled cell: a load still in flight is cancelled, and the
+     * bitmap is released to the memory cache, which bounds the bitmap memory.
+     * The bitmap is not recycled, it may be shown by other cells from the memory cache.
+     * @param holder The recycled ViewHolder.
+     */
+    @Override
+    public void onViewRecycled(MovieDbViewHolder holder) {
+        MovieDbImageLoader.with(holder.context).cancelRequest(holder.moviePosterImageView);
+        holder.moviePosterImageView.setImageDrawable(null);
+    }
+
     @Override
     public int getItemCount() {
-        if (mMovieList == null){
+        List<MovieParcelable> movieList = mMovieListDiffer.getMovieList();
+        if (movieList == null){
             return 0;
         }
         else {
-            return mMovieList.size();
+            return movieList.size();
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mRecyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        mRecyclerView = null;
+    }
+
+    /**
+     * @param position The position of the movie.
+     * @return The URL of the poster displayed for the movie, or null if there is no such movie.
+     *  The poster size is the smallest covering the grid cell width.
+     */
+    public String getPosterUrl(int position) {
+        List<MovieParcelable> movieList = mMovieListDiffer.getMovieList();
+        if (movieList == null || position < 0 || position >= movieList.size()) {
+            return null;
+        }
+        return MovieDbUtility.getImageUrlString(movieList.get(position).posterPath,
+                getPosterWidth());
+    }
+
+    /**
+     * @param context Any context.
+     * @param position The position of the movie.
+     * @return The request of the poster displayed for the movie, decoded at the cell size,
+     *  or null if there is no such movie.
+     */
+    public RequestCreator getPosterRequest(Context context, int position) {
+        String posterUrl = getPosterUrl(position);
+        if (posterUrl == null) {
+            return null;
+        }
+        return MovieDbImageLoader.loadThumbnail(context, posterUrl, getPosterWidth());
+    }
+
+    /**
+     * @return The width of the poster cells in pixels, or 0 if not yet laid out.
+     */
+    public int getPosterWidth() {
+        if (mRecyclerView != null
+                && mRecyclerView.getLayoutManager() instanceof GridLayoutManagerAutofit) {
+            return ((GridLayoutManagerAutofit) mRecyclerView.getLayoutManager()).getCellWidth();
         }
+        return 0;
     }
 
     /**
      * This method is used to set the movie data if the RecyclerAdapter already exists.
      * This allows new data query without the need to create a new RecyclerAdapter to display it.
+     * The differences with the displayed movies are computed in the background and dispatched
+     * as granular notifications, so only the changed movies are rebound.
+     * When nothing is displayed the list is kept as is, so it must not be modified afterwards.
      * References:
      *  Udacity S03.01-Solution-RecyclerView.
      * @param movieList The new movies to be displayed.
      */
     public void setMovieData(List<MovieParcelable> movieList) {
-        mMovieList = movieList;
-        notifyDataSetChanged();
+        mMovieListDiffer.setMovieList(movieList);
+    }
+
+    /**
+     * Append the next page of movies to the movie data.
+     * Only the inserted range is notified, the displayed movies are not rebound.
+     * @param movieList The movies to be appended.
+     */
+    public void appendMovieData(List<MovieParcelable> movieList) {
+        mMovieListDiffer.appendMovieList(movieList);
     }
 }
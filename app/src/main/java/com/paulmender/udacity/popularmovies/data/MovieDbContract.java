@@ -15,8 +15,11 @@
 
 package com.paulmender.udacity.popularmovies.data;
 
+import android.provider.BaseColumns;
+
 /**
- * Defines the column names used from theS MovieDB.
+ * Defines the column names used from theS MovieDB, and the tables and columns of the local
+ * movie store.
  * References:
  * This approach is based on the Udacity Sunshine application.
  */
@@ -33,6 +36,64 @@ public final class MovieDbContract {
     public static final String MOVIE_DB_TOTAL_RESULTS = "total_results";
     //endregion
 
+    //region Stage 2 project
+    public static final String MOVIE_DB_POPULARITY = "popularity";
+    public static final String MOVIE_DB_VOTE_COUNT = "vote_count";
+    //endregion
+
+    //region Paging
+    public static final String MOVIE_DB_PAGE = "page";
+    public static final String MOVIE_DB_TOTAL_PAGES = "total_pages";
+    //endregion
+
+    //region Local store
+    /**
+     * The movies, one row per movie.
+     */
+    public static final class MovieEntry implements BaseColumns {
+        public static final String TABLE_NAME = "movie";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        public static final String COLUMN_TITLE = "title";
+        /** Packed as yyyymmdd. */
+        public static final String COLUMN_RELEASE_DATE = "release_date";
+        public static final String COLUMN_POSTER_PATH = "poster_path";
+        public static final String COLUMN_VOTE_AVERAGE = "vote_average";
+        public static final String COLUMN_VOTE_COUNT = "vote_count";
+        public static final String COLUMN_POPULARITY = "popularity";
+        public static final String COLUMN_OVERVIEW = "overview";
+
+        public static final String INDEX_POPULARITY = "movie_popularity_index";
+        public static final String INDEX_VOTE_AVERAGE = "movie_vote_average_index";
+    }
+
+    /**
+     * The movies of each page of each sort order.
+     */
+    public static final class MovieListEntry implements BaseColumns {
+        public static final String TABLE_NAME = "movie_list";
+
+        public static final String COLUMN_SORT_ORDER = "sort_order";
+        public static final String COLUMN_PAGE = "page";
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+        /** The rank of the movie within its page, as returned by the MovieDB. */
+        public static final String COLUMN_POSITION = "position";
+    }
+
+    /**
+     * The pages stored for each sort order.
+     */
+    public static final class MovieListPageEntry implements BaseColumns {
+        public static final String TABLE_NAME = "movie_list_page";
+
+        public static final String COLUMN_SORT_ORDER = "sort_order";
+        public static final String COLUMN_PAGE = "page";
+        public static final String COLUMN_TOTAL_PAGES = "total_pages";
+        /** The time the page was fetched, in milliseconds since the epoch. */
+        public static final String COLUMN_UPDATED_AT = "updated_at";
+    }
+    //endregion
+
     // The constructor.
     public MovieDbContract(){
 
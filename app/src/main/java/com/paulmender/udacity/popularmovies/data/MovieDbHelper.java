@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieEntry;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieListEntry;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieListPageEntry;
+
+/**
+ * Manages the local movie store database, derived from the MovieDbContract.
+ * References:
+ *  This approach is based on the Udacity Sunshine application's WeatherDbHelper.
+ */
+public class MovieDbHelper extends SQLiteOpenHelper {
+
+    public static final String DATABASE_NAME = "movies.db";
+
+    /*
+     * The store only holds copies of MovieDB data, so an upgrade drops and recreates the tables.
+     */
+    private static final int DATABASE_VERSION = 3;
+
+    // Constructor
+    public MovieDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param context The context.
+     * @param name The database file name, or null for an in-memory database, e.g. in tests.
+     */
+    MovieDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+
+        db.execSQL("CREATE TABLE " + MovieEntry.TABLE_NAME + " (" +
+                MovieEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL UNIQUE ON CONFLICT REPLACE, " +
+                MovieEntry.COLUMN_TITLE + " TEXT, " +
+                MovieEntry.COLUMN_RELEASE_DATE + " INTEGER NOT NULL DEFAULT 0, " +
+                MovieEntry.COLUMN_POSTER_PATH + " TEXT, " +
+                MovieEntry.COLUMN_VOTE_AVERAGE + " REAL NOT NULL DEFAULT 0, " +
+                MovieEntry.COLUMN_VOTE_COUNT + " INTEGER NOT NULL DEFAULT 0, " +
+                MovieEntry.COLUMN_POPULARITY + " REAL NOT NULL DEFAULT 0, " +
+                MovieEntry.COLUMN_OVERVIEW + " TEXT);");
+
+        // The movies may be read by these columns, e.g. ranked across the sort orders.
+        db.execSQL("CREATE INDEX " + MovieEntry.INDEX_POPULARITY + " ON " +
+                MovieEntry.TABLE_NAME + " (" + MovieEntry.COLUMN_POPULARITY + " DESC);");
+        db.execSQL("CREATE INDEX " + MovieEntry.INDEX_VOTE_AVERAGE + " ON " +
+                MovieEntry.TABLE_NAME + " (" + MovieEntry.COLUMN_VOTE_AVERAGE + " DESC);");
+
+        db.execSQL("CREATE TABLE " + MovieListEntry.TABLE_NAME + " (" +
+                MovieListEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieListEntry.COLUMN_SORT_ORDER + " TEXT NOT NULL, " +
+                MovieListEntry.COLUMN_PAGE + " INTEGER NOT NULL, " +
+                MovieListEntry.COLUMN_MOVIE_ID + " INTEGER NOT NULL, " +
+                MovieListEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                "UNIQUE (" + MovieListEntry.COLUMN_SORT_ORDER + ", " +
+                MovieListEntry.COLUMN_MOVIE_ID + ") ON CONFLICT REPLACE);");
+
+        db.execSQL("CREATE TABLE " + MovieListPageEntry.TABLE_NAME + " (" +
+                MovieListPageEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieListPageEntry.COLUMN_SORT_ORDER + " TEXT NOT NULL, " +
+                MovieListPageEntry.COLUMN_PAGE + " INTEGER NOT NULL, " +
+                MovieListPageEntry.COLUMN_TOTAL_PAGES + " INTEGER NOT NULL, " +
+                MovieListPageEntry.COLUMN_UPDATED_AT + " INTEGER NOT NULL, " +
+                "UNIQUE (" + MovieListPageEntry.COLUMN_SORT_ORDER + ", " +
+                MovieListPageEntry.COLUMN_PAGE + ") ON CONFLICT REPLACE);");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + MovieListPageEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + MovieListEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + MovieEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a MovieDB movie list query, with the paging attributes of the response.
+ */
+public class MovieDbPage {
+
+    // Properties
+    public int page;
+    public int totalPages;
+    public int totalResults;
+    /** The time the page was fetched, in milliseconds since the epoch. */
+    public long fetchedAtMillis;
+    public final List<MovieParcelable> movies = new ArrayList<>();
+    /** The plot synopses of the movies by movieId, kept out of the movies of the lists. */
+    public final Map<Integer, String> overviews = new HashMap<>();
+
+    public MovieDbPage() {
+    }
+
+    /**
+     * @return True if the query has pages after this one.
+     */
+    public boolean hasNextPage() {
+        return page < totalPages;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sorts, filters and ranks the movies already fetched, without network access.
+ * The sort and filter fields are stored in primitive arrays (columns), and the order of the
+ * movies by each sort key is computed once when the engine is built. A query walks the order
+ * of its first sort key, filters on the way, and sorts only the runs of movies tied on that
+ * key by the further keys; a query limited to the top K movies stops after K movies (and their
+ * ties), so it never sorts the whole set.
+ * The engine is immutable once built and may be queried from any thread.
+ */
+public final class MovieDbQueryEngine {
+
+    /**
+     * The keys the movies can be sorted by.
+     */
+    public enum SortKey {
+        RATING,
+        RELEASE_YEAR,
+        TITLE,
+        VOTE_COUNT,
+        POPULARITY
+    }
+
+    /**
+     * A query: sort keys in priority order, range filters and an optional limit.
+     * The ranges are inclusive.
+     */
+    public static final class Query {
+        private final List<SortKey> mSortKeys = new ArrayList<>();
+        private final List<Boolean> mDescending = new ArrayList<>();
+
+        private float mMinRating = Float.NEGATIVE_INFINITY;
+        private float mMaxRating = Float.POSITIVE_INFINITY;
+        private int mMinReleaseYear = Integer.MIN_VALUE;
+        private int mMaxReleaseYear = Integer.MAX_VALUE;
+        private int mMinVoteCount = Integer.MIN_VALUE;
+        private int mMaxVoteCount = Integer.MAX_VALUE;
+
+        private int mLimit = Integer.MAX_VALUE;
+
+        public Query sortBy(SortKey sortKey, boolean descending) {
+            mSortKeys.add(sortKey);
+            mDescending.add(descending);
+            return this;
+        }
+
+        public Query filterRating(float minRating, float maxRating) {
+            mMinRating = minRating;
+            mMaxRating = maxRating;
+            return this;
+        }
+
+        public Query filterReleaseYear(int minReleaseYear, int maxReleaseYear) {
+            mMinReleaseYear = minReleaseYear;
+            mMaxReleaseYear = maxReleaseYear;
+            return this;
+        }
+
+        public Query filterVoteCount(int minVoteCount, int maxVoteCount) {
+            mMinVoteCount = minVoteCount;
+            mMaxVoteCount = maxVoteCount;
+            return this;
+        }
+
+        /**
+         * @param limit The number of top movies to return.
+         */
+        public Query limit(int limit) {
+            mLimit = limit;
+            return this;
+        }
+    }
+
+    /**
+     * Compares two movies by their indexes.
+     */
+    private interface IndexComparator {
+        int compare(int left, int right);
+    }
+
+    //region Declare non-public, non-static fields
+    private final MovieParcelable[] mMovies;
+
+    //region Columns
+    private final float[] mRatings;
+    private final int[] mReleaseYears;
+    private final int[] mVoteCounts;
+    private final double[] mPopularities;
+    //endregion
+
+    /** The movie indexes in ascending order of each sort key. */
+    private final int[][] mAscendingOrders = new int[SortKey.values().length][];
+
+    /** The rank of each movie in ascending order of each sort key; ties share a rank. */
+    private final int[][] mRanks = new int[SortKey.values().length][];
+    //endregion
+
+    // Constructor
+    /**
+     * Build the columns and the sort orders. Takes O(n log n) per sort key; call it off the
+     * UI thread for large movie sets.
+     * @param movies The movies, e.g. all the movies fetched. Only the first of several movies
+     *               with the same movieId is kept.
+     */
+    public MovieDbQueryEngine(List<MovieParcelable> movies) {
+        mMovies = dedupe(movies);
+        int count = mMovies.length;
+
+        mRatings = new float[count];
+        mReleaseYears = new int[count];
+        mVoteCounts = new int[count];
+        mPopularities = new double[count];
+        // Collation keys compare much faster than the collator compares the titles.
+        Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        final CollationKey[] titleKeys = new CollationKey[count];
+        for (int index = 0; index < count; index++) {
+            MovieParcelable movie = mMovies[index];
+            mRatings[index] = movie.voteAverage;
+            mReleaseYears[index] = movie.getReleaseYear();
+            mVoteCounts[index] = movie.voteCount;
+            mPopularities[index] = movie.popularity;
+            titleKeys[index] = collator.getCollationKey(movie.title == null ? "" : movie.title);
+        }
+
+        for (SortKey sortKey : SortKey.values()) {
+            IndexComparator comparator;
+            switch (sortKey) {
+                case RATING:
+                    comparator = new IndexComparator() {
+                        @Override
+                        public int compare(int left, int right) {
+                            return Float.compare(mRatings[left], mRatings[right]);
+                        }
+                    };
+                    break;
+                case RELEASE_YEAR:
+                    comparator = new IndexComparator() {
+                        @Override
+                        public int compare(int left, int right) {
+                            return compareInts(mReleaseYears[left], mReleaseYears[right]);
+                        }
+                    };
+                    break;
+                case TITLE:
+                    comparator = new IndexComparator() {
+                        @Override
+                        public int compare(int left, int right) {
+                            return titleKeys[left].compareTo(titleKeys[right]);
+                        }
+                    };
+                    break;
+                case VOTE_COUNT:
+                    comparator = new IndexComparator() {
+                        @Override
+                        public int compare(int left, int right) {
+                            return compareInts(mVoteCounts[left], mVoteCounts[right]);
+                        }
+                    };
+                    break;
+                default:
+                    comparator = new IndexComparator() {
+                        @Override
+                        public int compare(int left, int right) {
+                            return Double.compare(mPopularities[left], mPopularities[right]);
+                        }
+                    };
+                    break;
+            }
+            buildOrder(sortKey, comparator);
+        }
+    }
+
+    //region Public methods
+
+    public int size() {
+        return mMovies.length;
+    }
+
+    /**
+     * Run a query.
+     * @param query The query.
+     * @return The movies matching the filters, in the query order, at most the query limit.
+     */
+    public List<MovieParcelable> query(Query query) {
+        int[] indexes = queryIndexes(query);
+        List<MovieParcelable> movies = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            movies.add(mMovies[index]);
+        }
+        return movies;
+    }
+
+    /**
+     * Run a query.
+     * @param query The query.
+     * @return The indexes of the movies matching the filters, in the query order, at most the
+     *  query limit.
+     */
+    public int[] queryIndexes(Query query) {
+        int count = mMovies.length;
+        if (query.mLimit <= 0) {
+            return new int[0];
+        }
+        if (query.mSortKeys.isEmpty()) {
+            // Keep the order the movies were given in.
+            int[] matches = new int[Math.min(count, query.mLimit)];
+            int matchCount = 0;
+            for (int index = 0; index < count && matchCount < matches.length; index++) {
+                if (matches(query, index)) {
+                    matches[matchCount++] = index;
+                }
+            }
+            return Arrays.copyOf(matches, matchCount);
+        }
+
+        SortKey primaryKey = query.mSortKeys.get(0);
+        boolean primaryDescending = query.mDescending.get(0);
+        int[] order = mAscendingOrders[primaryKey.ordinal()];
+        int[] primaryRanks = mRanks[primaryKey.ordinal()];
+
+        // Collect the matches in primary key order, up to the limit and the ties of the last.
+        int[] matches = new int[count];
+        int matchCount = 0;
+        for (int position = 0; position < count; position++) {
+            int index = order[primaryDescending ? count - 1 - position : position];
+            if (matchCount >= query.mLimit
+                    && primaryRanks[index] != primaryRanks[matches[matchCount - 1]]) {
+                break;
+            }
+            if (matches(query, index)) {
+                matches[matchCount++] = index;
+            }
+        }
+
+        if (query.mSortKeys.size() > 1) {
+            // Break the ties of the primary key by the further keys.
+            IndexComparator tieBreaker = getComparator(query, 1);
+            int runStart = 0;
+            for (int position = 1; position <= matchCount; position++) {
+                if (position == matchCount || primaryRanks[matches[position]]
+                        != primaryRanks[matches[runStart]]) {
+                    if (position - runStart > 1) {
+                        sort(matches, runStart, position, tieBreaker);
+                    }
+                    runStart = position;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, Math.min(matchCount, query.mLimit));
+    }
+    //endregion
+
+    //region Private methods
+
+    private boolean matches(Query query, int index) {
+        float rating = mRatings[index];
+        int releaseYear = mReleaseYears[index];
+        int voteCount = mVoteCounts[index];
+        return rating >= query.mMinRating && rating <= query.mMaxRating
+                && releaseYear >= query.mMinReleaseYear && releaseYear <= query.mMaxReleaseYear
+                && voteCount >= query.mMinVoteCount && voteCount <= query.mMaxVoteCount;
+    }
+
+    /**
+     * @return Compares movies by the sort keys of the query from the first key on.
+     */
+    private IndexComparator getComparator(Query query, int firstKey) {
+        final int keyCount = query.mSortKeys.size() - firstKey;
+        final int[][] ranks = new int[keyCount][];
+        final boolean[] descending = new boolean[keyCount];
+        for (int key = 0; key < keyCount; key++) {
+            ranks[key] = mRanks[query.mSortKeys.get(firstKey + key).ordinal()];
+            descending[key] = query.mDescending.get(firstKey + key);
+        }
+        return new IndexComparator() {
+            @Override
+            public int compare(int left, int right) {
+                for (int key = 0; key < keyCount; key++) {
+                    int comparison = compareInts(ranks[key][left], ranks[key][right]);
+                    if (comparison != 0) {
+                        return descending[key] ? -comparison : comparison;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    private void buildOrder(SortKey sortKey, IndexComparator comparator) {
+        int count = mMovies.length;
+        int[] order = new int[count];
+        for (int index = 0; index < count; index++) {
+            order[index] = index;
+        }
+        sort(order, 0, count, comparator);
+
+        int[] ranks = new int[count];
+        int rank = 0;
+        for (int position = 0; position < count; position++) {
+            if (position > 0 && comparator.compare(order[position - 1], order[position]) != 0) {
+                rank = position;
+            }
+            ranks[order[position]] = rank;
+        }
+        mAscendingOrders[sortKey.ordinal()] = order;
+        mRanks[sortKey.ordinal()] = ranks;
+    }
+
+    private static MovieParcelable[] dedupe(List<MovieParcelable> movies) {
+        List<MovieParcelable> unique = new ArrayList<>(movies.size());
+        Set<Integer> movieIds = new HashSet<>();
+        for (MovieParcelable movie : movies) {
+            if (movieIds.add(movie.movieId)) {
+                unique.add(movie);
+            }
+        }
+        return unique.toArray(new MovieParcelable[unique.size()]);
+    }
+
+    private static int compareInts(int left, int right) {
+        return left < right ? -1 : (left == right ? 0 : 1);
+    }
+
+    /**
+     * Stable merge sort of a range of indexes, without boxing them.
+     */
+    private static void sort(int[] indexes, int from, int to, IndexComparator comparator) {
+        int[] buffer = new int[to - from];
+        mergeSort(indexes, buffer, from, to, comparator);
+    }
+
+    private static void mergeSort(int[] indexes, int[] buffer, int from, int to,
+                                  IndexComparator comparator) {
+        int length = to - from;
+        if (length < 8) {
+            // Insertion sort for short ranges.
+            for (int i = from + 1; i < to; i++) {
+                int value = indexes[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(indexes[j], value) > 0) {
+                    indexes[j + 1] = indexes[j];
+                    j--;
+                }
+                indexes[j + 1] = value;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(indexes, buffer, from, middle, comparator);
+        mergeSort(indexes, buffer, middle, to, comparator);
+        if (comparator.compare(indexes[middle - 1], indexes[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(indexes, from, buffer, 0, length);
+        int left = 0;
+        int leftEnd = middle - from;
+        int right = leftEnd;
+        for (int position = from; position < to; position++) {
+            if (right >= length
+                    || (left < leftEnd && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                indexes[position] = buffer[left++];
+            } else {
+                indexes[position] = buffer[right++];
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieEntry;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieListEntry;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract.MovieListPageEntry;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The local movie store: the fetched pages of each sort order, kept in SQLite so that the
+ * movie lists can be shown at startup and without a network connection.
+ */
+public final class MovieDbStore {
+
+    //region Static Private fields
+    private static final String sInsertMovieSql = "INSERT OR REPLACE INTO " +
+            MovieEntry.TABLE_NAME + " (" +
+            MovieEntry.COLUMN_MOVIE_ID + ", " +
+            MovieEntry.COLUMN_TITLE + ", " +
+            MovieEntry.COLUMN_RELEASE_DATE + ", " +
+            MovieEntry.COLUMN_POSTER_PATH + ", " +
+            MovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+            MovieEntry.COLUMN_VOTE_COUNT + ", " +
+            MovieEntry.COLUMN_POPULARITY + ", " +
+            MovieEntry.COLUMN_OVERVIEW + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String sInsertListMovieSql = "INSERT OR REPLACE INTO " +
+            MovieListEntry.TABLE_NAME + " (" +
+            MovieListEntry.COLUMN_SORT_ORDER + ", " +
+            MovieListEntry.COLUMN_PAGE + ", " +
+            MovieListEntry.COLUMN_MOVIE_ID + ", " +
+            MovieListEntry.COLUMN_POSITION + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * The movies of a sort order in the order the MovieDB returned them: by page, then by
+     * position within the page. The movie columns are shared by the sort orders and are
+     * overwritten by each save, so they do not preserve the order.
+     */
+    private static final String sQueryListMoviesSql = "SELECT " +
+            "m." + MovieEntry.COLUMN_MOVIE_ID + ", " +
+            "m." + MovieEntry.COLUMN_TITLE + ", " +
+            "m." + MovieEntry.COLUMN_RELEASE_DATE + ", " +
+            "m." + MovieEntry.COLUMN_POSTER_PATH + ", " +
+            "m." + MovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+            "m." + MovieEntry.COLUMN_VOTE_COUNT + ", " +
+            "m." + MovieEntry.COLUMN_POPULARITY + ", " +
+            "l." + MovieListEntry.COLUMN_PAGE +
+            " FROM " + MovieListEntry.TABLE_NAME + " l" +
+            " JOIN " + MovieEntry.TABLE_NAME + " m" +
+            " ON m." + MovieEntry.COLUMN_MOVIE_ID + " = l." + MovieListEntry.COLUMN_MOVIE_ID +
+            " WHERE l." + MovieListEntry.COLUMN_SORT_ORDER + " = ?" +
+            " ORDER BY l." + MovieListEntry.COLUMN_PAGE + " ASC, l." +
+            MovieListEntry.COLUMN_POSITION + " ASC";
+
+    /** A stored movie, without its overview. */
+    private static final String sQueryMovieSql = "SELECT " +
+            MovieEntry.COLUMN_MOVIE_ID + ", " +
+            MovieEntry.COLUMN_TITLE + ", " +
+            MovieEntry.COLUMN_RELEASE_DATE + ", " +
+            MovieEntry.COLUMN_POSTER_PATH + ", " +
+            MovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+            MovieEntry.COLUMN_VOTE_COUNT + ", " +
+            MovieEntry.COLUMN_POPULARITY +
+            " FROM " + MovieEntry.TABLE_NAME +
+            " WHERE " + MovieEntry.COLUMN_MOVIE_ID + " = ?";
+
+    /** All the stored movies, of any sort order, without their overviews. */
+    private static final String sQueryAllMoviesSql = "SELECT " +
+            MovieEntry.COLUMN_MOVIE_ID + ", " +
+            MovieEntry.COLUMN_TITLE + ", " +
+            MovieEntry.COLUMN_RELEASE_DATE + ", " +
+            MovieEntry.COLUMN_POSTER_PATH + ", " +
+            MovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+            MovieEntry.COLUMN_VOTE_COUNT + ", " +
+            MovieEntry.COLUMN_POPULARITY +
+            " FROM " + MovieEntry.TABLE_NAME;
+
+    private static final int INDEX_MOVIE_ID = 0;
+    private static final int INDEX_TITLE = 1;
+    private static final int INDEX_RELEASE_DATE = 2;
+    private static final int INDEX_POSTER_PATH = 3;
+    private static final int INDEX_VOTE_AVERAGE = 4;
+    private static final int INDEX_VOTE_COUNT = 5;
+    private static final int INDEX_POPULARITY = 6;
+    private static final int INDEX_PAGE = 7;
+
+    /** Writes are made off the UI thread, one at a time. */
+    private static final Executor sWriteExecutor = Executors.newSingleThreadExecutor();
+
+    private static MovieDbStore sInstance;
+    //endregion
+
+    private final MovieDbHelper mHelper;
+
+    /** Incremented by each write. */
+    private final AtomicInteger mVersion = new AtomicInteger();
+
+    /** The query engine over the stored movies, and the version it was built from. */
+    private MovieDbQueryEngine mQueryEngine;
+    private int mQueryEngineVersion;
+
+    /** The title index over the movies stored and saved; loaded from the store once. */
+    private final MovieDbTitleIndex mTitleIndex = new MovieDbTitleIndex();
+    private boolean mTitleIndexLoaded;
+
+    // Constructor
+    private MovieDbStore(Context context) {
+        this(context, MovieDbHelper.DATABASE_NAME);
+    }
+
+    /**
+     * @param context Any context; the application context is kept.
+     * @param databaseName The database file name, or null for an in-memory database.
+     */
+    MovieDbStore(Context context, String databaseName) {
+        mHelper = new MovieDbHelper(context.getApplicationContext(), databaseName);
+    }
+
+    /**
+     * @param context Any context; the application context is kept.
+     * @return The process-wide store.
+     */
+    public static synchronized MovieDbStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MovieDbStore(context);
+        }
+        return sInstance;
+    }
+
+    //region Public methods
+
+    /**
+     * Read the stored pages of a sort order, in page order.
+     * Reads from the database on the calling thread.
+     * @param sortOrder The sort order.
+     * @return The stored pages; their fetchedAtMillis is the time they were stored.
+     */
+    public List<MovieDbPage> loadMoviePages(MovieSortOrder sortOrder) {
+
+        String sortOrderKey = MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder);
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+
+        List<MovieDbPage> pages = new ArrayList<>();
+        Cursor pageCursor = db.query(MovieListPageEntry.TABLE_NAME,
+                new String[]{MovieListPageEntry.COLUMN_PAGE,
+                        MovieListPageEntry.COLUMN_TOTAL_PAGES,
+                        MovieListPageEntry.COLUMN_UPDATED_AT},
+                MovieListPageEntry.COLUMN_SORT_ORDER + " = ?", new String[]{sortOrderKey},
+                null, null, MovieListPageEntry.COLUMN_PAGE + " ASC");
+        try {
+            while (pageCursor.moveToNext()) {
+                MovieDbPage page = new MovieDbPage();
+                page.page = pageCursor.getInt(0);
+                page.totalPages = pageCursor.getInt(1);
+                page.fetchedAtMillis = pageCursor.getLong(2);
+                pages.add(page);
+            }
+        } finally {
+            pageCursor.close();
+        }
+        if (pages.isEmpty()) {
+            return pages;
+        }
+
+        Cursor movieCursor = db.rawQuery(sQueryListMoviesSql, new String[]{sortOrderKey});
+        try {
+            int pageIndex = 0;
+            while (movieCursor.moveToNext()) {
+                int pageNumber = movieCursor.getInt(INDEX_PAGE);
+                while (pageIndex < pages.size() && pages.get(pageIndex).page < pageNumber) {
+                    pageIndex++;
+                }
+                if (pageIndex == pages.size()) {
+                    break;
+                }
+                if (pages.get(pageIndex).page == pageNumber) {
+                    pages.get(pageIndex).movies.add(readMovie(movieCursor));
+                }
+            }
+        } finally {
+            movieCursor.close();
+        }
+        return pages;
+    }
+
+    /**
+     * Store a fetched page, replacing the stored page of the sort order.
+     * All rows are written in a single transaction. Writes to the database on the calling thread.
+     * @param sortOrder The sort order of the page.
+     * @param moviePage The page.
+     * @param nowMillis The time the page was fetched.
+     */
+    public void saveMoviePage(MovieSortOrder sortOrder, MovieDbPage moviePage, long nowMillis) {
+
+        String sortOrderKey = MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder);
+        String pageNumber = String.valueOf(moviePage.page);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            db.delete(MovieListEntry.TABLE_NAME,
+                    MovieListEntry.COLUMN_SORT_ORDER + " = ? AND " +
+                            MovieListEntry.COLUMN_PAGE + " = ?",
+                    new String[]{sortOrderKey, pageNumber});
+
+            SQLiteStatement insertMovie = db.compileStatement(sInsertMovieSql);
+            SQLiteStatement insertListMovie = db.compileStatement(sInsertListMovieSql);
+            try {
+                for (int position = 0; position < moviePage.movies.size(); position++) {
+                    MovieParcelable movie = moviePage.movies.get(position);
+                    insertMovie.clearBindings();
+                    insertMovie.bindLong(1, movie.movieId);
+                    bindString(insertMovie, 2, movie.title);
+                    insertMovie.bindLong(3, movie.releaseDate);
+                    bindString(insertMovie, 4, movie.posterPath);
+                    insertMovie.bindDouble(5, movie.voteAverage);
+                    insertMovie.bindLong(6, movie.voteCount);
+                    insertMovie.bindDouble(7, movie.popularity);
+                    bindString(insertMovie, 8, moviePage.overviews.get(movie.movieId));
+                    insertMovie.executeInsert();
+
+                    insertListMovie.bindString(1, sortOrderKey);
+                    insertListMovie.bindLong(2, moviePage.page);
+                    insertListMovie.bindLong(3, movie.movieId);
+                    insertListMovie.bindLong(4, position);
+                    insertListMovie.executeInsert();
+                }
+            } finally {
+                insertMovie.close();
+                insertListMovie.close();
+            }
+
+            ContentValues pageValues = new ContentValues();
+            pageValues.put(MovieListPageEntry.COLUMN_SORT_ORDER, sortOrderKey);
+            pageValues.put(MovieListPageEntry.COLUMN_PAGE, moviePage.page);
+            pageValues.put(MovieListPageEntry.COLUMN_TOTAL_PAGES, moviePage.totalPages);
+            pageValues.put(MovieListPageEntry.COLUMN_UPDATED_AT, nowMillis);
+            db.insert(MovieListPageEntry.TABLE_NAME, null, pageValues);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mVersion.incrementAndGet();
+        mTitleIndex.addAll(moviePage.movies);
+    }
+
+    /**
+     * Read all the stored movies, e.g. to sort them locally.
+     * Reads from the database on the calling thread.
+     * @return The movies, each once.
+     */
+    public List<MovieParcelable> loadAllMovies() {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        Cursor movieCursor = db.rawQuery(sQueryAllMoviesSql, null);
+        try {
+            List<MovieParcelable> movies = new ArrayList<>(movieCursor.getCount());
+            while (movieCursor.moveToNext()) {
+                movies.add(readMovie(movieCursor));
+            }
+            return movies;
+        } finally {
+            movieCursor.close();
+        }
+    }
+
+    /**
+     * Read a stored movie, without its overview.
+     * Reads from the database on the calling thread.
+     * @param movieId The MovieDB id of the movie.
+     * @return The movie, or null if the movie is not stored.
+     */
+    public MovieParcelable loadMovie(int movieId) {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sQueryMovieSql, new String[]{String.valueOf(movieId)});
+        try {
+            return cursor.moveToFirst() ? readMovie(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the overview of a stored movie; the movie lists are read without them.
+     * Reads from the database on the calling thread.
+     * @param movieId The MovieDB id of the movie.
+     * @return The overview, or null if the movie is not stored or has no overview.
+     */
+    public String loadOverview(int movieId) {
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+        Cursor cursor = db.query(MovieEntry.TABLE_NAME,
+                new String[]{MovieEntry.COLUMN_OVERVIEW},
+                MovieEntry.COLUMN_MOVIE_ID + " = ?", new String[]{String.valueOf(movieId)},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get the query engine over all the stored movies, built again if the store was written
+     * since it was last built. Reads from the database on the calling thread when it is built.
+     * @return The query engine.
+     */
+    public synchronized MovieDbQueryEngine getQueryEngine() {
+        int version = mVersion.get();
+        if (mQueryEngine == null || mQueryEngineVersion != version) {
+            mQueryEngine = new MovieDbQueryEngine(loadAllMovies());
+            mQueryEngineVersion = version;
+        }
+        return mQueryEngine;
+    }
+
+    /**
+     * Get the title index over all the stored movies. The index is loaded from the database the
+     * first time, on the calling thread, and is then updated by each write.
+     * @return The title index.
+     */
+    public synchronized MovieDbTitleIndex getTitleIndex() {
+        if (!mTitleIndexLoaded) {
+            mTitleIndex.addAll(loadAllMovies());
+            mTitleIndexLoaded = true;
+        }
+        return mTitleIndex;
+    }
+
+    /**
+     * Store a fetched page in the background.
+     * @see #saveMoviePage(MovieSortOrder, MovieDbPage, long)
+     */
+    public void saveMoviePageAsync(final MovieSortOrder sortOrder, final MovieDbPage moviePage,
+                                   final long nowMillis) {
+        sWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                saveMoviePage(sortOrder, moviePage, nowMillis);
+            }
+        });
+    }
+    //endregion
+
+    //region Private methods
+
+    private static MovieParcelable readMovie(Cursor cursor) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = cursor.getInt(INDEX_MOVIE_ID);
+        movie.title = cursor.getString(INDEX_TITLE);
+        movie.releaseDate = cursor.getInt(INDEX_RELEASE_DATE);
+        movie.posterPath = cursor.getString(INDEX_POSTER_PATH);
+        movie.voteAverage = cursor.getFloat(INDEX_VOTE_AVERAGE);
+        movie.voteCount = cursor.getInt(INDEX_VOTE_COUNT);
+        movie.popularity = cursor.getDouble(INDEX_POPULARITY);
+        return movie;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+    //endregion
+}
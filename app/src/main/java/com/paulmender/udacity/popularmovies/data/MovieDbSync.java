@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFanOutFetcher;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Refreshes the stored movie lists in the background, so that the next launch shows them from
+ * the store without waiting for the network. One sync fetches the first pages of all sort
+ * orders together (one wake-up) and prefetches the first posters.
+ * After a failed sync the next attempt is delayed exponentially (backoff); a sync shortly
+ * after a successful one is skipped.
+ * The sync state is kept by the host, e.g. in SharedPreferences, between syncs.
+ */
+public final class MovieDbSync {
+
+    //region Static Private fields
+    private static final MovieSortOrder[] sSortOrders =
+            { MovieSortOrder.MOVIE_SORT_POPULAR, MovieSortOrder.MOVIE_SORT_TOP_RATED };
+
+    private static final int sFirstPage = 1;
+
+    private static final int sPageCount = 3;
+
+    /** The posters prefetched of each sort order: the first screens of the grid. */
+    private static final int sPosterCount = 12;
+
+    private static final long sMinSyncIntervalMillis = 60 * 60 * 1000;
+
+    private static final long sInitialBackoffMillis = 30 * 60 * 1000;
+
+    private static final long sMaxBackoffMillis = 24 * 60 * 60 * 1000;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final MovieDbFanOutFetcher mFetcher;
+
+    private final Host mHost;
+
+    private final Clock mClock;
+
+    private long mLastSuccessMillis;
+
+    private int mFailureCount;
+
+    private long mNextAttemptMillis;
+    //endregion
+
+    public enum Outcome {
+        /** Not due: synced recently, or backing off after a failure. */
+        SKIPPED,
+        SYNCED,
+        /** Some or all pages failed; the pages fetched are stored nevertheless. */
+        FAILED
+    }
+
+    /**
+     * The time source, replaced by a fake clock in tests.
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /**
+     * Provides the URLs and stores the results of a sync.
+     */
+    public interface Host {
+        URL getPageUrl(MovieSortOrder sortOrder, int page);
+
+        void saveMoviePage(MovieSortOrder sortOrder, MovieDbPage moviePage, long nowMillis);
+
+        /**
+         * Fetch the posters into the image disk cache; returns once they are fetched, or early
+         * with the thread interrupted status set if interrupted.
+         */
+        void prefetchPosters(List<String> posterPaths);
+
+        void saveState(long lastSuccessMillis, int failureCount, long nextAttemptMillis);
+    }
+
+    // Constructor
+    /**
+     * @param lastSuccessMillis The time of the last successful sync, 0 if none.
+     * @param failureCount The number of failed syncs since the last successful one.
+     * @param nextAttemptMillis The earliest time of the next sync, 0 if none.
+     */
+    public MovieDbSync(MovieDbFanOutFetcher fetcher, Host host, Clock clock,
+                       long lastSuccessMillis, int failureCount, long nextAttemptMillis) {
+        mFetcher = fetcher;
+        mHost = host;
+        mClock = clock;
+        mLastSuccessMillis = lastSuccessMillis;
+        mFailureCount = failureCount;
+        mNextAttemptMillis = nextAttemptMillis;
+    }
+
+    //region Public methods
+
+    /**
+     * Sync the movie lists, if due. Blocks while the pages and posters are fetched and stored.
+     * @return The outcome.
+     * @throws InterruptedIOException If interrupted; the state is unchanged.
+     */
+    public synchronized Outcome sync() throws InterruptedIOException {
+        long nowMillis = mClock.currentTimeMillis();
+        if (nowMillis < mNextAttemptMillis) {
+            return Outcome.SKIPPED;
+        }
+        if (mFailureCount == 0 && mLastSuccessMillis > 0
+                && nowMillis - mLastSuccessMillis < sMinSyncIntervalMillis) {
+            return Outcome.SKIPPED;
+        }
+
+        List<MovieSortOrder> urlSortOrders = new ArrayList<>();
+        List<URL> urls = new ArrayList<>();
+        for (MovieSortOrder sortOrder : sSortOrders) {
+            for (int page = sFirstPage; page < sFirstPage + sPageCount; page++) {
+                urlSortOrders.add(sortOrder);
+                urls.add(mHost.getPageUrl(sortOrder, page));
+            }
+        }
+        MovieDbFanOutFetcher.Result result = mFetcher.fetch(urls);
+
+        List<String> posterPaths = new ArrayList<>();
+        for (int index = 0; index < result.getRequestCount(); index++) {
+            MovieDbPage moviePage = result.getPage(index);
+            if (moviePage == null || moviePage.movies.isEmpty()) {
+                continue;
+            }
+            mHost.saveMoviePage(urlSortOrders.get(index), moviePage, nowMillis);
+            if (moviePage.page == sFirstPage) {
+                addPosterPaths(moviePage.movies, posterPaths);
+            }
+        }
+        throwIfInterrupted();
+        if (!posterPaths.isEmpty()) {
+            mHost.prefetchPosters(posterPaths);
+            throwIfInterrupted();
+        }
+
+        Outcome outcome;
+        if (result.isComplete()) {
+            mLastSuccessMillis = nowMillis;
+            mFailureCount = 0;
+            mNextAttemptMillis = 0;
+            outcome = Outcome.SYNCED;
+        } else {
+            mFailureCount++;
+            mNextAttemptMillis = nowMillis + getBackoffMillis(mFailureCount);
+            outcome = Outcome.FAILED;
+        }
+        mHost.saveState(mLastSuccessMillis, mFailureCount, mNextAttemptMillis);
+        return outcome;
+    }
+
+    public synchronized long getLastSuccessMillis() {
+        return mLastSuccessMillis;
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailureCount;
+    }
+
+    /**
+     * @return The earliest time of the next sync after a failure, 0 if not backing off.
+     */
+    public synchronized long getNextAttemptMillis() {
+        return mNextAttemptMillis;
+    }
+
+    /**
+     * @param failureCount The number of consecutive failed syncs, at least 1.
+     * @return The delay before the next sync: doubled by each failure, up to a day.
+     */
+    public static long getBackoffMillis(int failureCount) {
+        long backoffMillis = sInitialBackoffMillis;
+        for (int i = 1; i < failureCount && backoffMillis < sMaxBackoffMillis; i++) {
+            backoffMillis *= 2;
+        }
+        return Math.min(backoffMillis, sMaxBackoffMillis);
+    }
+    //endregion
+
+    /**
+     * Stop a sync whose job was stopped before further network work. The state is unchanged,
+     * so that the next sync fetches again; the pages stored are kept.
+     */
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Sync stopped");
+        }
+    }
+
+    private static void addPosterPaths(List<MovieParcelable> movies, List<String> posterPaths) {
+        int count = 0;
+        for (MovieParcelable movie : movies) {
+            if (count == sPosterCount) {
+                break;
+            }
+            if (movie.posterPath != null) {
+                posterPaths.add(movie.posterPath);
+                count++;
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.paulmender.udacity.popularmovies.utility.MovieDbFanOutFetcher;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFetchScheduler;
+import com.paulmender.udacity.popularmovies.utility.MovieDbImageLoader;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the MovieDbSync periodically while the device is charging on an unmetered network.
+ * A failed sync is retried by a one-off job after the backoff delay, with the same
+ * constraints. The syncs run one at a time on their own thread, apart from the fetch pool of
+ * the UI; a stopped job interrupts its sync.
+ */
+public class MovieDbSyncJobService extends JobService {
+
+    //region Static Private fields
+    private static final String LOG_TAG = "pkmi Debug: "+MovieDbSyncJobService.class.getSimpleName();
+
+    private static final int sPeriodicJobId = 1001;
+
+    private static final int sRetryJobId = 1002;
+
+    private static final long sSyncIntervalMillis = 6 * 60 * 60 * 1000;
+
+    /** The periodic and the retry job may start together; the second waits for the first. */
+    private static final int sSyncQueueCapacity = 2;
+
+    /** The longest wait for the posters, well within the execution limit of a job. */
+    private static final long sPosterPrefetchTimeoutSeconds = 2 * 60;
+
+    /** The posters requested at a time: as many as Picasso downloads at a time on Wi-Fi. */
+    private static final int sPosterPrefetchWindow = 4;
+
+    private static final String sPreferencesName = "movie_db_sync";
+    private static final String sKeyLastSuccess = "lastSuccessMillis";
+    private static final String sKeyFailureCount = "failureCount";
+    private static final String sKeyNextAttempt = "nextAttemptMillis";
+    private static final String sKeyPosterWidth = "posterWidth";
+
+    private static final ExecutorService sSyncExecutor =
+            MovieDbFetchScheduler.createFetchExecutor(1, sSyncQueueCapacity);
+    //endregion
+
+    //region Declare non-public, non-static fields
+    /** The syncs of the jobs started and not yet finished or stopped, by job id. */
+    private final SparseArray<Future<?>> mSyncs = new SparseArray<>();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    //endregion
+
+    //region Public static methods
+
+    /**
+     * Schedule the periodic sync, unless it is already scheduled.
+     * @param context Any context.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler = getJobScheduler(context);
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == sPeriodicJobId) {
+                return;
+            }
+        }
+        jobScheduler.schedule(getJobInfoBuilder(context, sPeriodicJobId)
+                .setPeriodic(sSyncIntervalMillis)
+                .setPersisted(true)
+                .build());
+    }
+
+    /**
+     * Record the width of the poster grid cells, so that the sync prefetches the posters
+     * in the size the grid displays.
+     * @param context Any context.
+     * @param posterWidth The width of the poster cells in pixels.
+     */
+    public static void setPosterWidth(Context context, int posterWidth) {
+        if (posterWidth > 0) {
+            getPreferences(context).edit().putInt(sKeyPosterWidth, posterWidth).apply();
+        }
+    }
+    //endregion
+
+    //region Override methods
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final Context context = getApplicationContext();
+        Future<?> sync;
+        try {
+            sync = sSyncExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    MovieDbSync.Outcome outcome = null;
+                    Exception error = null;
+                    try {
+                        outcome = createSync(context).sync();
+                    } catch (InterruptedIOException e) {
+                        // Stopped by onStopJob.
+                        return;
+                    } catch (Exception e) {
+                        error = e;
+                    }
+                    final MovieDbSync.Outcome finalOutcome = outcome;
+                    final Exception finalError = error;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onSyncFinished(params, finalOutcome, finalError);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(LOG_TAG, "Sync not started", e);
+            return false;
+        }
+        mSyncs.put(params.getJobId(), sync);
+        // The sync completes in the background.
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints are no longer met; a sync in progress is retried later.
+        Future<?> sync = mSyncs.get(params.getJobId());
+        if (sync != null) {
+            mSyncs.remove(params.getJobId());
+            sync.cancel(true);
+        }
+        return true;
+    }
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Finish the job of a sync, unless the job was stopped. Called on the main thread.
+     */
+    private void onSyncFinished(JobParameters params, MovieDbSync.Outcome outcome,
+                                Exception error) {
+        int jobId = params.getJobId();
+        if (mSyncs.get(jobId) == null) {
+            return;
+        }
+        mSyncs.remove(jobId);
+        if (error != null) {
+            Log.w(LOG_TAG, "Sync failed", error);
+            jobFinished(params, true);
+            return;
+        }
+        if (outcome == MovieDbSync.Outcome.FAILED) {
+            scheduleRetry(this);
+        } else if (outcome == MovieDbSync.Outcome.SYNCED && jobId != sRetryJobId) {
+            // The periodic job synced; a retry of an earlier failure is no longer needed.
+            getJobScheduler(this).cancel(sRetryJobId);
+        }
+        jobFinished(params, false);
+    }
+
+    private static JobInfo.Builder getJobInfoBuilder(Context context, int jobId) {
+        return new JobInfo.Builder(jobId, new ComponentName(context, MovieDbSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true);
+    }
+
+    /**
+     * Schedule a one-off sync when the backoff delay of the failed sync has passed.
+     */
+    private static void scheduleRetry(Context context) {
+        long delayMillis = getPreferences(context).getLong(sKeyNextAttempt, 0)
+                - System.currentTimeMillis();
+        getJobScheduler(context).schedule(getJobInfoBuilder(context, sRetryJobId)
+                .setMinimumLatency(Math.max(0, delayMillis))
+                .build());
+    }
+
+    private static JobScheduler getJobScheduler(Context context) {
+        return (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(sPreferencesName, Context.MODE_PRIVATE);
+    }
+
+    private static MovieDbSync createSync(final Context context) {
+        final SharedPreferences preferences = getPreferences(context);
+        final int posterWidth = preferences.getInt(sKeyPosterWidth, 0);
+
+        MovieDbSync.Host host = new MovieDbSync.Host() {
+            @Override
+            public URL getPageUrl(MovieSortOrder sortOrder, int page) {
+                return MovieDbUtility.getURL(sortOrder, page);
+            }
+
+            @Override
+            public void saveMoviePage(MovieSortOrder sortOrder, MovieDbPage moviePage,
+                                      long nowMillis) {
+                MovieDbStore.getInstance(context).saveMoviePage(sortOrder, moviePage, nowMillis);
+            }
+
+            @Override
+            public void prefetchPosters(List<String> posterPaths) {
+                // Downloaded into the disk cache of the images, at low priority, a window at
+                // a time. The job waits for the downloads: once it finishes, it no longer holds
+                // the wake lock and the unmetered network. A stopped job interrupts the wait,
+                // and the posters not yet requested are not downloaded.
+                final Semaphore window = new Semaphore(sPosterPrefetchWindow);
+                Callback callback = new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        window.release();
+                    }
+
+                    @Override
+                    public void onError() {
+                        window.release();
+                    }
+                };
+                long deadlineNanos = System.nanoTime()
+                        + TimeUnit.SECONDS.toNanos(sPosterPrefetchTimeoutSeconds);
+                try {
+                    for (String posterPath : posterPaths) {
+                        if (!window.tryAcquire(deadlineNanos - System.nanoTime(),
+                                TimeUnit.NANOSECONDS)) {
+                            Log.w(LOG_TAG, "Posters not prefetched in time");
+                            return;
+                        }
+                        MovieDbImageLoader.with(context)
+                                .load(MovieDbUtility.getImageUrlString(posterPath, posterWidth))
+                                .priority(Picasso.Priority.LOW)
+                                .fetch(callback);
+                    }
+                    if (!window.tryAcquire(sPosterPrefetchWindow,
+                            deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        Log.w(LOG_TAG, "Posters not prefetched in time");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void saveState(long lastSuccessMillis, int failureCount,
+                                  long nextAttemptMillis) {
+                preferences.edit()
+                        .putLong(sKeyLastSuccess, lastSuccessMillis)
+                        .putInt(sKeyFailureCount, failureCount)
+                        .putLong(sKeyNextAttempt, nextAttemptMillis)
+                        .commit();
+            }
+        };
+
+        MovieDbSync.Clock clock = new MovieDbSync.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        };
+
+        return new MovieDbSync(MovieDbFanOutFetcher.getInstance(), host, clock,
+                preferences.getLong(sKeyLastSuccess, 0),
+                preferences.getInt(sKeyFailureCount, 0),
+                preferences.getLong(sKeyNextAttempt, 0));
+    }
+    //endregion
+}
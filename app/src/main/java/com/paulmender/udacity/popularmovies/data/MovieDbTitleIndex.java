@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An in-memory title search index, built incrementally as movies are added.
+ * Titles are normalized (lower case, without accents and punctuation) and indexed by their
+ * trigrams and by the one and two character prefixes of their words. A query of three or more
+ * characters looks up the posting list of its rarest trigram, a shorter query the posting list
+ * of its word prefix; the candidates are then verified against their titles, so the postings
+ * never need to be intersected.
+ * Results are ranked: titles starting with the query first, then titles with a word starting
+ * with the query, then other titles containing it; each rank by popularity.
+ */
+public final class MovieDbTitleIndex {
+
+    //region Static Private fields
+    private static final int sRankTitlePrefix = 0;
+    private static final int sRankWordPrefix = 1;
+    private static final int sRankSubstring = 2;
+
+    /** Marks the keys of the word prefixes, apart from the trigram keys. */
+    private static final long sWordPrefixKey = 1L << 48;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    /** The indexed movies by document (index). */
+    private final List<MovieParcelable> mMovies = new ArrayList<>();
+
+    /** The normalized titles by document. */
+    private final List<String> mTitles = new ArrayList<>();
+
+    private final Map<Integer, Integer> mDocumentsByMovieId = new HashMap<>();
+
+    /** The documents by trigram and word prefix key; a document may be listed twice. */
+    private final Map<Long, Postings> mPostings = new HashMap<>();
+
+    /** Marks the candidates already seen by a search, by document. */
+    private int[] mSearchMarks = new int[0];
+    private int mSearchMark;
+    //endregion
+
+    /**
+     * A growable list of documents.
+     */
+    private static final class Postings {
+        int[] documents = new int[4];
+        int size;
+
+        void add(int document) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            documents[size++] = document;
+        }
+    }
+
+    // Constructor
+    public MovieDbTitleIndex() {
+    }
+
+    //region Public methods
+
+    /**
+     * Add a movie, or replace the movie with the same movieId.
+     * @param movie The movie.
+     */
+    public synchronized void add(MovieParcelable movie) {
+        String title = normalize(movie.title);
+        Integer document = mDocumentsByMovieId.get(movie.movieId);
+        if (document != null) {
+            mMovies.set(document, movie);
+            if (mTitles.get(document).equals(title)) {
+                return;
+            }
+            // The postings of the previous title are left; candidates are verified.
+            mTitles.set(document, title);
+        } else {
+            document = mMovies.size();
+            mMovies.add(movie);
+            mTitles.add(title);
+            mDocumentsByMovieId.put(movie.movieId, document);
+        }
+        index(document, title);
+    }
+
+    /**
+     * Add movies, replacing the movies with the same movieIds.
+     * @param movies The movies.
+     */
+    public synchronized void addAll(Collection<MovieParcelable> movies) {
+        for (MovieParcelable movie : movies) {
+            add(movie);
+        }
+    }
+
+    public synchronized int size() {
+        return mMovies.size();
+    }
+
+    /**
+     * Search the titles.
+     * @param query The query, as typed.
+     * @param limit The maximum number of results.
+     * @return The movies whose titles contain the query, best ranked first; empty if the
+     *  query has no letters or digits.
+     */
+    public synchronized List<MovieParcelable> search(String query, int limit) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Postings candidates = getCandidates(normalizedQuery);
+        if (candidates == null) {
+            return new ArrayList<>();
+        }
+
+        if (mSearchMarks.length < mMovies.size()) {
+            mSearchMarks = Arrays.copyOf(mSearchMarks, Math.max(mMovies.size(), 16) * 2);
+        }
+        mSearchMark++;
+
+        // The best results so far, by rank and then popularity, as a sorted array.
+        int capacity = Math.min(limit, candidates.size);
+        int[] results = new int[capacity];
+        int[] resultRanks = new int[capacity];
+        int resultCount = 0;
+
+        for (int i = 0; i < candidates.size; i++) {
+            int document = candidates.documents[i];
+            if (mSearchMarks[document] == mSearchMark) {
+                continue;
+            }
+            mSearchMarks[document] = mSearchMark;
+
+            int rank = getRank(mTitles.get(document), normalizedQuery);
+            if (rank < 0) {
+                continue;
+            }
+            double popularity = mMovies.get(document).popularity;
+            if (resultCount == capacity && !isBetter(rank, popularity,
+                    resultRanks[capacity - 1], mMovies.get(results[capacity - 1]).popularity)) {
+                continue;
+            }
+            // Insert in order, dropping the worst result when full.
+            int position = Math.min(resultCount, capacity - 1);
+            while (position > 0 && isBetter(rank, popularity,
+                    resultRanks[position - 1], mMovies.get(results[position - 1]).popularity)) {
+                results[position] = results[position - 1];
+                resultRanks[position] = resultRanks[position - 1];
+                position--;
+            }
+            results[position] = document;
+            resultRanks[position] = rank;
+            if (resultCount < capacity) {
+                resultCount++;
+            }
+        }
+
+        List<MovieParcelable> movies = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            movies.add(mMovies.get(results[i]));
+        }
+        return movies;
+    }
+
+    /**
+     * @param title A title or query.
+     * @return The title in lower case, without accents, with runs of other characters than
+     *  letters and digits replaced by a single space, and trimmed.
+     */
+    public static String normalize(String title) {
+        if (title == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(title, Normalizer.Form.NFD)
+                .toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                space = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+    //endregion
+
+    //region Private methods
+
+    private void index(int document, String title) {
+        for (int i = 0; i + 3 <= title.length(); i++) {
+            addPosting(getTrigramKey(title, i), document);
+        }
+        for (int i = 0; i < title.length(); i++) {
+            if (i == 0 || title.charAt(i - 1) == ' ') {
+                addPosting(getWordPrefixKey(title, i, 1), document);
+                if (i + 1 < title.length() && title.charAt(i + 1) != ' ') {
+                    addPosting(getWordPrefixKey(title, i, 2), document);
+                }
+            }
+        }
+    }
+
+    private void addPosting(long key, int document) {
+        Postings postings = mPostings.get(key);
+        if (postings == null) {
+            postings = new Postings();
+            mPostings.put(key, postings);
+        }
+        postings.add(document);
+    }
+
+    /**
+     * @return The shortest posting list that holds all the matches of the query, or null if
+     *  there are none.
+     */
+    private Postings getCandidates(String query) {
+        if (query.length() < 3) {
+            // Matches start a word of the title.
+            return mPostings.get(getWordPrefixKey(query, 0, query.length()));
+        }
+        Postings shortest = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings postings = mPostings.get(getTrigramKey(query, i));
+            if (postings == null) {
+                return null;
+            }
+            if (shortest == null || postings.size < shortest.size) {
+                shortest = postings;
+            }
+        }
+        return shortest;
+    }
+
+    /**
+     * @return The rank of the title for the query, or -1 if the title does not match.
+     */
+    private static int getRank(String title, String query) {
+        if (title.startsWith(query)) {
+            return sRankTitlePrefix;
+        }
+        int index = title.indexOf(query);
+        if (index < 0) {
+            return -1;
+        }
+        int rank = sRankSubstring;
+        while (index > 0) {
+            if (title.charAt(index - 1) == ' ') {
+                return sRankWordPrefix;
+            }
+            index = title.indexOf(query, index + 1);
+        }
+        // Short queries only match word prefixes.
+        return query.length() < 3 ? -1 : rank;
+    }
+
+    private static boolean isBetter(int rank, double popularity,
+                                    int otherRank, double otherPopularity) {
+        return rank < otherRank || (rank == otherRank && popularity > otherPopularity);
+    }
+
+    private static long getTrigramKey(String text, int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+
+    private static long getWordPrefixKey(String text, int start, int length) {
+        long key = sWordPrefixKey | ((long) length << 40) | ((long) text.charAt(start) << 16);
+        if (length == 2) {
+            key |= text.charAt(start + 1);
+        }
+        return key;
+    }
+    //endregion
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A process-wide, size bounded, in-memory cache of the movie lists already loaded, keyed by
+ * sort order and page. Entries older than the time to live are stale: they may still be shown
+ * while a refresh is loaded (stale-while-revalidate).
+ */
+public final class MovieListCache {
+
+    //region Static Private fields
+    /** The number of lists kept; the least recently used list is evicted first. */
+    private static final int sDefaultMaxEntries = 32;
+
+    private static final long sDefaultTimeToLiveMillis = 5 * 60 * 1000;
+
+    private static MovieListCache sInstance;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final int mMaxEntries;
+
+    private final long mTimeToLiveMillis;
+
+    private final LinkedHashMap<String, Entry> mEntries;
+    //endregion
+
+    /**
+     * A cached movie list.
+     */
+    public static final class Entry {
+        public final List<MovieParcelable> movies;
+        public final int totalPages;
+        public final long loadedAtMillis;
+
+        private final long expiresAtMillis;
+
+        private Entry(List<MovieParcelable> movies, int totalPages, long loadedAtMillis,
+                      long expiresAtMillis) {
+            this.movies = movies;
+            this.totalPages = totalPages;
+            this.loadedAtMillis = loadedAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public boolean isStale(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    // Constructor
+    public MovieListCache(int maxEntries, long timeToLiveMillis) {
+        mMaxEntries = maxEntries;
+        mTimeToLiveMillis = timeToLiveMillis;
+        mEntries = new LinkedHashMap<String, MovieListCache.Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MovieListCache.Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The process-wide cache.
+     */
+    public static synchronized MovieListCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new MovieListCache(sDefaultMaxEntries, sDefaultTimeToLiveMillis);
+        }
+        return sInstance;
+    }
+
+    //region Public methods
+
+    /**
+     * Look up a movie list.
+     * @param sortOrder The sort order of the list.
+     * @param page The page of the list, starting at 1.
+     * @return The cached list, fresh or stale, or null on a miss.
+     */
+    public synchronized Entry get(MovieSortOrder sortOrder, int page) {
+        return mEntries.get(getKey(sortOrder, page));
+    }
+
+    /**
+     * Store a movie list, replacing any previous list for the sort order and page.
+     * @param sortOrder The sort order of the list.
+     * @param page The page of the list, starting at 1.
+     * @param movies The movies. The list must not be modified afterwards.
+     * @param totalPages The total number of pages of the sort order.
+     * @param nowMillis The time the list was loaded.
+     */
+    public synchronized void put(MovieSortOrder sortOrder, int page,
+                                 List<MovieParcelable> movies, int totalPages, long nowMillis) {
+        mEntries.put(getKey(sortOrder, page), new Entry(Collections.unmodifiableList(movies),
+                totalPages, nowMillis, nowMillis + mTimeToLiveMillis));
+    }
+
+    /**
+     * Remove all movie lists.
+     */
+    public synchronized void evictAll() {
+        mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /** @return The time after which a list is stale. */
+    public long getTimeToLiveMillis() {
+        return mTimeToLiveMillis;
+    }
+    //endregion
+
+    private static String getKey(MovieSortOrder sortOrder, int page) {
+        return sortOrder.name() + '/' + page;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary snapshot of the movie list last shown, restored at launch before anything
+ * is fetched or parsed.
+ * The file holds a header, a table of the distinct strings (titles, poster paths) and a fixed
+ * size row per movie referencing them. It is read in one bulk read and checked
+ * against its CRC32; the rows and strings are then decoded lazily, the first time each movie
+ * is used, e.g. as the grid binds it.
+ * Not thread safe: a snapshot is used on a single (the UI) thread.
+ */
+public final class MovieListSnapshot {
+
+    //region Static Private fields
+    private static final int sMagic = 0x4d444c53; // MDLS
+    private static final int sVersion = 2;
+    private static final String sTempSuffix = ".tmp";
+
+    /** The header: magic, version, payload length and payload CRC32. */
+    private static final int sHeaderSize = 16;
+
+    /**
+     * A row: movieId, title and poster path string indexes, release date, vote average, vote
+     * count and popularity.
+     */
+    private static final int sRowSize = 3 * 4 + 4 + 4 + 4 + 8;
+
+    private static final int sNoString = -1;
+
+    private static final Charset sCharsetUtf8 = Charset.forName("UTF-8");
+
+    /** Writes are made off the UI thread, one at a time. */
+    private static final Executor sWriteExecutor = Executors.newSingleThreadExecutor();
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final ByteBuffer mBuffer;
+
+    private final String mSortOrder;
+    private final int mLoadedPage;
+    private final int mTotalPages;
+    private final long mFetchedAtMillis;
+
+    private final int mMovieCount;
+    private final int mStringOffsetsPosition;
+    private final int mStringsPosition;
+    private final int mRowsPosition;
+
+    /** The decoded strings and movies, by index; null until first used. */
+    private final String[] mStrings;
+    private final MovieParcelable[] mMovies;
+
+    private final List<MovieParcelable> mMovieList;
+    //endregion
+
+    // Constructor
+    private MovieListSnapshot(ByteBuffer buffer) {
+        mBuffer = buffer;
+
+        byte[] sortOrder = new byte[buffer.getShort() & 0xffff];
+        buffer.get(sortOrder);
+        mSortOrder = new String(sortOrder, sCharsetUtf8);
+        mLoadedPage = buffer.getInt();
+        mTotalPages = buffer.getInt();
+        mFetchedAtMillis = buffer.getLong();
+
+        mMovieCount = buffer.getInt();
+        int stringCount = buffer.getInt();
+        mStringOffsetsPosition = buffer.position();
+        mStringsPosition = mStringOffsetsPosition + (stringCount + 1) * 4;
+        int stringsLength = buffer.getInt(mStringsPosition - 4);
+        mRowsPosition = mStringsPosition + stringsLength;
+        if (mMovieCount < 0 || stringCount < 0 || stringsLength < 0
+                || mRowsPosition + (long) mMovieCount * sRowSize != buffer.limit()) {
+            throw new IllegalArgumentException("Invalid snapshot layout");
+        }
+
+        mStrings = new String[stringCount];
+        mMovies = new MovieParcelable[mMovieCount];
+        mMovieList = new MovieList();
+    }
+
+    /**
+     * The movies of a snapshot, each decoded the first time it is read.
+     */
+    private final class MovieList extends AbstractList<MovieParcelable> implements RandomAccess {
+        @Override
+        public MovieParcelable get(int index) {
+            return getMovie(index);
+        }
+
+        @Override
+        public int size() {
+            return mMovieCount;
+        }
+    }
+
+    //region Public static methods
+
+    /**
+     * Read a snapshot file.
+     * @param file The snapshot file.
+     * @return The snapshot, or null if the file is missing or is not a valid snapshot.
+     */
+    public static MovieListSnapshot read(File file) {
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                if (in.length() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                byte[] data = new byte[(int) in.length()];
+                in.readFully(data);
+                return decode(data);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot file atomically: a partly written file is never read.
+     * @param file The snapshot file.
+     * @param sortOrder The sort order of the movies.
+     * @param loadedPage The last page of the movies.
+     * @param totalPages The total number of pages of the sort order.
+     * @param fetchedAtMillis The time the first page was fetched.
+     * @param movies The movies.
+     * @throws IOException Related to file writing.
+     */
+    public static void write(File file, String sortOrder, int loadedPage, int totalPages,
+                             long fetchedAtMillis, List<MovieParcelable> movies)
+            throws IOException {
+        byte[] data = encode(sortOrder, loadedPage, totalPages, fetchedAtMillis, movies);
+        File temp = new File(file.getPath() + sTempSuffix);
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+                // The rename must not be persisted before the data.
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    /**
+     * Write a snapshot file in the background; a failed write is ignored.
+     * @see #write(File, String, int, int, long, List)
+     * @param movies The movies. The list must not be modified afterwards.
+     */
+    public static void writeAsync(final File file, final String sortOrder, final int loadedPage,
+                                  final int totalPages, final long fetchedAtMillis,
+                                  final List<MovieParcelable> movies) {
+        sWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(file, sortOrder, loadedPage, totalPages, fetchedAtMillis, movies);
+                } catch (IOException e) {
+                    // The previous snapshot, if any, is kept.
+                }
+            }
+        });
+    }
+
+    /**
+     * Encode a snapshot. Equal strings are stored once.
+     * @see #write(File, String, int, int, long, List)
+     * @return The snapshot bytes.
+     */
+    public static byte[] encode(String sortOrder, int loadedPage, int totalPages,
+                                long fetchedAtMillis, List<MovieParcelable> movies) {
+        Map<String, Integer> stringIndexes = new HashMap<>();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        List<Integer> stringOffsets = new ArrayList<>();
+        ByteBuffer rows = ByteBuffer.allocate(movies.size() * sRowSize);
+        for (MovieParcelable movie : movies) {
+            rows.putInt(movie.movieId);
+            rows.putInt(getStringIndex(movie.title, stringIndexes, strings, stringOffsets));
+            rows.putInt(getStringIndex(movie.posterPath, stringIndexes, strings, stringOffsets));
+            rows.putInt(movie.releaseDate);
+            rows.putFloat(movie.voteAverage);
+            rows.putInt(movie.voteCount);
+            rows.putDouble(movie.popularity);
+        }
+        stringOffsets.add(strings.size());
+
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(
+                    64 + stringOffsets.size() * 4 + strings.size() + rows.capacity());
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            byte[] sortOrderBytes = sortOrder.getBytes(sCharsetUtf8);
+            payload.writeShort(sortOrderBytes.length);
+            payload.write(sortOrderBytes);
+            payload.writeInt(loadedPage);
+            payload.writeInt(totalPages);
+            payload.writeLong(fetchedAtMillis);
+            payload.writeInt(movies.size());
+            payload.writeInt(stringOffsets.size() - 1);
+            for (int offset : stringOffsets) {
+                payload.writeInt(offset);
+            }
+            strings.writeTo(payload);
+            payload.write(rows.array());
+            payload.flush();
+
+            byte[] payloadArray = payloadBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payloadArray);
+            ByteBuffer data = ByteBuffer.allocate(sHeaderSize + payloadArray.length);
+            data.putInt(sMagic);
+            data.putInt(sVersion);
+            data.putInt(payloadArray.length);
+            data.putInt((int) crc.getValue());
+            data.put(payloadArray);
+            return data.array();
+        } catch (IOException e) {
+            // Not thrown by in-memory streams.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a snapshot. Only the header and the string table layout are read.
+     * @param data The snapshot bytes.
+     * @return The snapshot, or null if the bytes are not a valid snapshot.
+     */
+    public static MovieListSnapshot decode(byte[] data) {
+        if (data.length < sHeaderSize) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 0, sHeaderSize);
+        if (header.getInt() != sMagic || header.getInt() != sVersion) {
+            return null;
+        }
+        int payloadLength = header.getInt();
+        int payloadCrc = header.getInt();
+        if (payloadLength != data.length - sHeaderSize) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, sHeaderSize, payloadLength);
+        if ((int) crc.getValue() != payloadCrc) {
+            return null;
+        }
+        try {
+            return new MovieListSnapshot(
+                    ByteBuffer.wrap(data, sHeaderSize, payloadLength).slice());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            return null;
+        }
+    }
+    //endregion
+
+    //region Public methods
+
+    public String getSortOrder() {
+        return mSortOrder;
+    }
+
+    public int getLoadedPage() {
+        return mLoadedPage;
+    }
+
+    public int getTotalPages() {
+        return mTotalPages;
+    }
+
+    public long getFetchedAtMillis() {
+        return mFetchedAtMillis;
+    }
+
+    /**
+     * @return The movies, decoded as they are read. The list is unmodifiable.
+     */
+    public List<MovieParcelable> getMovies() {
+        return mMovieList;
+    }
+    //endregion
+
+    //region Private methods
+
+    private MovieParcelable getMovie(int index) {
+        if (index < 0 || index >= mMovieCount) {
+            throw new IndexOutOfBoundsException("Movie " + index + " of " + mMovieCount);
+        }
+        MovieParcelable movie = mMovies[index];
+        if (movie == null) {
+            int position = mRowsPosition + index * sRowSize;
+            movie = new MovieParcelable();
+            movie.movieId = mBuffer.getInt(position);
+            movie.title = getString(mBuffer.getInt(position + 4));
+            movie.posterPath = getString(mBuffer.getInt(position + 8));
+            movie.releaseDate = mBuffer.getInt(position + 12);
+            movie.voteAverage = mBuffer.getFloat(position + 16);
+            movie.voteCount = mBuffer.getInt(position + 20);
+            movie.popularity = mBuffer.getDouble(position + 24);
+            mMovies[index] = movie;
+        }
+        return movie;
+    }
+
+    private String getString(int index) {
+        if (index == sNoString) {
+            return null;
+        }
+        String string = mStrings[index];
+        if (string == null) {
+            int start = mBuffer.getInt(mStringOffsetsPosition + index * 4);
+            int end = mBuffer.getInt(mStringOffsetsPosition + (index + 1) * 4);
+            string = new String(mBuffer.array(), mBuffer.arrayOffset() + mStringsPosition + start,
+                    end - start, sCharsetUtf8);
+            mStrings[index] = string;
+        }
+        return string;
+    }
+
+    private static int getStringIndex(String string, Map<String, Integer> stringIndexes,
+                                      ByteArrayOutputStream strings, List<Integer> stringOffsets) {
+        if (string == null) {
+            return sNoString;
+        }
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            index = stringOffsets.size();
+            stringIndexes.put(string, index);
+            stringOffsets.add(strings.size());
+            byte[] bytes = string.getBytes(sCharsetUtf8);
+            strings.write(bytes, 0, bytes.length);
+        }
+        return index;
+    }
+    //endregion
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.data;
+
+import android.content.Context;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The process-wide source of movies by movieId, shared by the activities: the main activity
+ * puts the movie it opens, and the detail activity resolves the movieId of its Intent, so the
+ * movie is not parcelled through the Intent. Also the source of the movie details that the
+ * movie lists do not hold, i.e. the overview (plot synopsis).
+ * The movies and overviews last used are kept in size bounded caches; on a miss the sources
+ * are tried in order, e.g. the local movie store and then the MovieDB.
+ */
+public final class MovieRepository {
+
+    //region Static Private fields
+    private static final int sMaxCachedMovies = 256;
+
+    private static final int sMaxCachedOverviews = 32;
+
+    private static MovieRepository sInstance;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final Source[] mSources;
+
+    /** The movies by movieId, least recently used first. */
+    private final LinkedHashMap<Integer, MovieParcelable> mMovies;
+
+    /** The overviews by movieId, least recently used first. */
+    private final LinkedHashMap<Integer, String> mOverviews;
+    //endregion
+
+    /**
+     * Loads movies and their overviews, e.g. from the store or the network.
+     */
+    public interface Source {
+        /**
+         * Load a movie, on the calling thread.
+         * @param movieId The MovieDB id of the movie.
+         * @return The movie, or null if the source does not have it.
+         * @throws IOException Related to reading the source.
+         */
+        MovieParcelable loadMovie(int movieId) throws IOException;
+
+        /**
+         * Load the overview of a movie, on the calling thread.
+         * @param movieId The MovieDB id of the movie.
+         * @return The overview, or null if the source does not have it.
+         * @throws IOException Related to reading the source.
+         */
+        String loadOverview(int movieId) throws IOException;
+    }
+
+    // Constructor
+    public MovieRepository(int maxCachedMovies, int maxCachedOverviews, Source... sources) {
+        mSources = sources;
+        mMovies = createCache(maxCachedMovies);
+        mOverviews = createCache(maxCachedOverviews);
+    }
+
+    /**
+     * @param context Any context; the application context is kept.
+     * @return The process-wide repository, backed by the movie store and the MovieDB.
+     */
+    public static synchronized MovieRepository getInstance(Context context) {
+        if (sInstance == null) {
+            final MovieDbStore movieDbStore = MovieDbStore.getInstance(context);
+            sInstance = new MovieRepository(sMaxCachedMovies, sMaxCachedOverviews,
+                    new Source() {
+                        @Override
+                        public MovieParcelable loadMovie(int movieId) {
+                            return movieDbStore.loadMovie(movieId);
+                        }
+
+                        @Override
+                        public String loadOverview(int movieId) {
+                            return movieDbStore.loadOverview(movieId);
+                        }
+                    },
+                    new Source() {
+                        @Override
+                        public MovieParcelable loadMovie(int movieId) throws IOException {
+                            return fetchMovie(movieId).movies.get(0);
+                        }
+
+                        @Override
+                        public String loadOverview(int movieId) throws IOException {
+                            return fetchMovie(movieId).overviews.get(movieId);
+                        }
+
+                        private MovieDbPage fetchMovie(int movieId) throws IOException {
+                            // Concurrent loads of the movie and its overview share one
+                            // request; a later load is served by the response cache.
+                            return MovieDbUtility.getMovieFromHttpUrl(
+                                    MovieDbUtility.getMovieURL(movieId));
+                        }
+                    });
+        }
+        return sInstance;
+    }
+
+    //region Public methods
+
+    /**
+     * @param movieId The MovieDB id of the movie.
+     * @return The cached movie, or null on a miss.
+     */
+    public synchronized MovieParcelable getCachedMovie(int movieId) {
+        return mMovies.get(movieId);
+    }
+
+    /**
+     * Cache movies, e.g. the movie being opened, replacing the movies with the same movieIds.
+     * @param movies The movies. They must not be modified afterwards.
+     */
+    public synchronized void putMovies(Collection<MovieParcelable> movies) {
+        for (MovieParcelable movie : movies) {
+            mMovies.put(movie.movieId, movie);
+        }
+    }
+
+    /**
+     * Get a movie from the cache, or else load it from the first source that has it.
+     * Reads the sources on the calling thread.
+     * @param movieId The MovieDB id of the movie.
+     * @return The movie, or null if no source has it.
+     * @throws IOException Related to reading a source.
+     */
+    public MovieParcelable loadMovie(int movieId) throws IOException {
+        MovieParcelable movie = getCachedMovie(movieId);
+        for (int i = 0; movie == null && i < mSources.length; i++) {
+            movie = mSources[i].loadMovie(movieId);
+        }
+        if (movie != null) {
+            synchronized (this) {
+                mMovies.put(movieId, movie);
+            }
+        }
+        return movie;
+    }
+
+    /**
+     * @param movieId The MovieDB id of the movie.
+     * @return The cached overview, or null on a miss.
+     */
+    public synchronized String getCachedOverview(int movieId) {
+        return mOverviews.get(movieId);
+    }
+
+    /**
+     * Cache overviews that are not stored, e.g. of search results.
+     * @param overviews The overviews by movieId.
+     */
+    public synchronized void putOverviews(Map<Integer, String> overviews) {
+        mOverviews.putAll(overviews);
+    }
+
+    /**
+     * Get the overview of a movie from the cache, or else load it from the first source that
+     * has it. Reads the sources on the calling thread.
+     * @param movieId The MovieDB id of the movie.
+     * @return The overview, or null if no source has it.
+     * @throws IOException Related to reading a source.
+     */
+    public String loadOverview(int movieId) throws IOException {
+        String overview = getCachedOverview(movieId);
+        for (int i = 0; overview == null && i < mSources.length; i++) {
+            overview = mSources[i].loadOverview(movieId);
+        }
+        if (overview != null) {
+            synchronized (this) {
+                mOverviews.put(movieId, overview);
+            }
+        }
+        return overview;
+    }
+    //endregion
+
+    private static <T> LinkedHashMap<Integer, T> createCache(final int maxEntries) {
+        return new LinkedHashMap<Integer, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fetches several MovieDB pages, of one or more endpoints, concurrently (fan-out) and merges
+ * their movies. The requests run on a bounded pool, and at most a fixed number of requests to
+ * the same host are open at a time. A failed request does not fail the others: the result
+ * holds the pages fetched and the failure of each request that failed.
+ * Warming N pages takes about one round trip instead of N.
+ */
+public final class MovieDbFanOutFetcher {
+
+    //region Static Private fields
+    private static final int sPoolSize = 6;
+
+    private static final int sQueueCapacity = 64;
+
+    /**
+     * The launch warm-up and the sync fetch 3 pages of 2 sort orders from the one MovieDB host,
+     * all at once. http.maxConnections limits the idle kept-alive sockets, not the open ones:
+     * a socket beyond it is closed after its request instead of being pooled.
+     */
+    private static final int sMaxConnectionsPerHost = sPoolSize;
+
+    private static MovieDbFanOutFetcher sInstance;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final ExecutorService mExecutor;
+
+    private final int mMaxConnectionsPerHost;
+
+    private final PageSource mPageSource;
+
+    /** The connection permits by host. Guarded by this. */
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+    //endregion
+
+    /**
+     * Fetches one page of movies, e.g. MovieDbUtility.getMoviePageFromHttpUrl.
+     */
+    public interface PageSource {
+        MovieDbPage fetch(URL url) throws IOException;
+    }
+
+    /**
+     * The pages of a fan-out fetch and their merged movies.
+     */
+    public static final class Result {
+        /**
+         * The movies of all pages fetched, each movie once (by movieId). The movies are in
+         * the order of the requests, and in rank order within each request.
+         */
+        public final List<MovieParcelable> movies;
+
+        private final MovieDbPage[] mPages;
+        private final IOException[] mFailures;
+
+        private Result(MovieDbPage[] pages, IOException[] failures) {
+            mPages = pages;
+            mFailures = failures;
+            movies = Collections.unmodifiableList(merge(pages));
+        }
+
+        /**
+         * @param index The index of the request.
+         * @return The page fetched, or null if the request failed.
+         */
+        public MovieDbPage getPage(int index) {
+            return mPages[index];
+        }
+
+        /**
+         * @param index The index of the request.
+         * @return The failure of the request, or null if it succeeded.
+         */
+        public IOException getFailure(int index) {
+            return mFailures[index];
+        }
+
+        public int getRequestCount() {
+            return mPages.length;
+        }
+
+        public int getFailureCount() {
+            int count = 0;
+            for (IOException failure : mFailures) {
+                if (failure != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return True if all requests succeeded.
+         */
+        public boolean isComplete() {
+            return getFailureCount() == 0;
+        }
+    }
+
+    // Constructor
+    public MovieDbFanOutFetcher(ExecutorService executor, int maxConnectionsPerHost,
+                                PageSource pageSource) {
+        mExecutor = executor;
+        mMaxConnectionsPerHost = maxConnectionsPerHost;
+        mPageSource = pageSource;
+    }
+
+    /**
+     * @return The process-wide fetcher of MovieDB pages, through the response cache.
+     */
+    public static synchronized MovieDbFanOutFetcher getInstance() {
+        if (sInstance == null) {
+            sInstance = new MovieDbFanOutFetcher(
+                    MovieDbFetchScheduler.createFetchExecutor(sPoolSize, sQueueCapacity),
+                    sMaxConnectionsPerHost,
+                    new PageSource() {
+                        @Override
+                        public MovieDbPage fetch(URL url) throws IOException {
+                            return MovieDbUtility.getMoviePageFromHttpUrl(url);
+                        }
+                    });
+        }
+        return sInstance;
+    }
+
+    //region Public methods
+
+    /**
+     * Fetch the pages concurrently and wait for all of them.
+     * @param urls The URLs of the pages, in rank order, e.g. page 1 before page 2.
+     * @return The pages fetched, the failures, and the merged movies.
+     * @throws InterruptedIOException If interrupted while waiting; the requests are cancelled.
+     */
+    public Result fetch(List<URL> urls) throws InterruptedIOException {
+        int count = urls.size();
+        MovieDbPage[] pages = new MovieDbPage[count];
+        IOException[] failures = new IOException[count];
+
+        List<Future<MovieDbPage>> futures = new ArrayList<>(count);
+        for (final URL url : urls) {
+            try {
+                futures.add(mExecutor.submit(new Callable<MovieDbPage>() {
+                    @Override
+                    public MovieDbPage call() throws IOException {
+                        return fetchWithHostPermit(url);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+            }
+        }
+
+        try {
+            for (int index = 0; index < count; index++) {
+                Future<MovieDbPage> future = futures.get(index);
+                if (future == null) {
+                    failures[index] = new IOException("Too many fetches queued");
+                    continue;
+                }
+                try {
+                    pages[index] = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures[index] = cause instanceof IOException
+                            ? (IOException) cause : new IOException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<MovieDbPage> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + count + " pages");
+        }
+        return new Result(pages, failures);
+    }
+    //endregion
+
+    //region Private methods
+
+    private MovieDbPage fetchWithHostPermit(URL url) throws IOException {
+        Semaphore permits = getHostPermits(url.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url.getHost());
+        }
+        try {
+            MovieDbPage page = mPageSource.fetch(url);
+            if (page == null) {
+                throw new IOException("Empty response from " + url.getPath());
+            }
+            return page;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private synchronized Semaphore getHostPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(mMaxConnectionsPerHost);
+            mHostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    private static List<MovieParcelable> merge(MovieDbPage[] pages) {
+        List<MovieParcelable> movies = new ArrayList<>();
+        Set<Integer> movieIds = new HashSet<>();
+        for (MovieDbPage page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (MovieParcelable movie : page.movies) {
+                if (movieIds.add(movie.movieId)) {
+                    movies.add(movie);
+                }
+            }
+        }
+        return movies;
+    }
+    //endregion
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules MovieDB fetches on a dedicated, bounded thread pool and delivers the results on
+ * the result executor (the main thread for the process-wide instance).
+ * Each fetch belongs to a group (e.g. a sort order) and has a key within the group (e.g. a
+ * page). A newer fetch with the same group and key supersedes the older one: the older fetch is
+ * cancelled and its callback is never called. A cancelled fetch releases its callback, so a
+ * callback referencing an Activity does not leak it.
+ * Replaces the FetchMoviesTask AsyncTask of MainActivity.
+ */
+public final class MovieDbFetchScheduler {
+
+    //region Static Private fields
+    private static final int sPoolSize = 3;
+
+    private static final int sQueueCapacity = 32;
+
+    private static final long sKeepAliveSeconds = 30;
+
+    private static MovieDbFetchScheduler sInstance;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final ThreadPoolExecutor mFetchExecutor;
+
+    private final Executor mResultExecutor;
+
+    /** The fetches in flight by group and key. Guarded by this. */
+    private final Map<String, FetchToken> mFetchesInFlight = new HashMap<>();
+    //endregion
+
+    /**
+     * The interface for receiving fetch results.
+     * @param <T> The type of the fetch result.
+     */
+    public interface MovieDbFetchCallback<T> {
+        void onFetchComplete(T result);
+
+        void onFetchFailed(Exception e);
+    }
+
+    /**
+     * Identifies a scheduled fetch and allows cancelling it.
+     */
+    public static final class FetchToken {
+        private final MovieDbFetchScheduler mScheduler;
+        private final String mGroup;
+        private final String mFetchKey;
+
+        private volatile boolean mCancelled;
+
+        private MovieDbFetchCallback<?> mCallback;
+
+        private Future<?> mFuture;
+
+        private FetchToken(MovieDbFetchScheduler scheduler, String group, String fetchKey,
+                           MovieDbFetchCallback<?> callback) {
+            mScheduler = scheduler;
+            mGroup = group;
+            mFetchKey = fetchKey;
+            mCallback = callback;
+        }
+
+        public String getGroup() {
+            return mGroup;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Cancel the fetch. Its callback will not be called and is released.
+         */
+        public void cancel() {
+            mScheduler.remove(this);
+            Future<?> future;
+            synchronized (this) {
+                mCancelled = true;
+                mCallback = null;
+                future = mFuture;
+            }
+            if (future != null) {
+                // Not interrupted: the request may be shared with other callers.
+                future.cancel(false);
+            }
+        }
+
+        private synchronized void setFuture(Future<?> future) {
+            mFuture = future;
+        }
+
+        private synchronized MovieDbFetchCallback<?> takeCallback() {
+            MovieDbFetchCallback<?> callback = mCallback;
+            mCallback = null;
+            return mCancelled ? null : callback;
+        }
+    }
+
+    // Constructor
+    public MovieDbFetchScheduler(ThreadPoolExecutor fetchExecutor, Executor resultExecutor) {
+        mFetchExecutor = fetchExecutor;
+        mResultExecutor = resultExecutor;
+    }
+
+    /**
+     * @return The process-wide scheduler, delivering results on the main thread.
+     */
+    public static synchronized MovieDbFetchScheduler getInstance() {
+        if (sInstance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            Executor mainExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            };
+            sInstance = new MovieDbFetchScheduler(createFetchExecutor(sPoolSize, sQueueCapacity),
+                    mainExecutor);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create a bounded pool of background priority fetch threads.
+     * @param poolSize The number of concurrent fetches.
+     * @param queueCapacity The number of fetches that may wait; more are rejected.
+     * @return The executor.
+     */
+    public static ThreadPoolExecutor createFetchExecutor(int poolSize, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                sKeepAliveSeconds, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "MovieDbFetch #" + mCount.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    //region Public methods
+
+    /**
+     * Schedule a fetch, superseding the fetch in flight with the same group and key.
+     * @param group The group of the fetch, e.g. the sort order.
+     * @param fetchKey The key of the fetch within the group, e.g. the page.
+     * @param fetch Performs the fetch on a pool thread.
+     * @param callback Receives the result on the result executor, unless cancelled.
+     * @param <T> The type of the fetch result.
+     * @return The token to cancel the fetch.
+     */
+    public <T> FetchToken submit(String group, String fetchKey, final Callable<T> fetch,
+                                 MovieDbFetchCallback<T> callback) {
+
+        final FetchToken token = new FetchToken(this, group, fetchKey, callback);
+
+        FetchToken superseded;
+        synchronized (this) {
+            superseded = mFetchesInFlight.put(getKey(group, fetchKey), token);
+        }
+        if (superseded != null) {
+            superseded.cancel();
+        }
+
+        try {
+            token.setFuture(mFetchExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (token.isCancelled()) {
+                        return;
+                    }
+                    T result = null;
+                    Exception error = null;
+                    try {
+                        result = fetch.call();
+                    } catch (Exception e) {
+                        error = e;
+                    }
+                    deliver(token, result, error);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            deliver(token, null, new IOException("Too many fetches queued", e));
+        }
+        return token;
+    }
+
+    /**
+     * Cancel all fetches of a group.
+     * @param group The group of the fetches, e.g. the sort order.
+     */
+    public void cancelGroup(String group) {
+        List<FetchToken> cancelled = new ArrayList<>();
+        synchronized (this) {
+            for (FetchToken token : mFetchesInFlight.values()) {
+                if (token.mGroup.equals(group)) {
+                    cancelled.add(token);
+                }
+            }
+        }
+        for (FetchToken token : cancelled) {
+            token.cancel();
+        }
+    }
+
+    /**
+     * @return The number of fetches scheduled and not yet delivered or cancelled.
+     */
+    public synchronized int getFetchesInFlightCount() {
+        return mFetchesInFlight.size();
+    }
+    //endregion
+
+    //region Private methods
+
+    private <T> void deliver(final FetchToken token, final T result, final Exception error) {
+        mResultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                remove(token);
+                // The token was checked on the pool thread, but may be cancelled since.
+                @SuppressWarnings("unchecked")
+                MovieDbFetchCallback<T> callback = (MovieDbFetchCallback<T>) token.takeCallback();
+                if (callback == null) {
+                    return;
+                }
+                if (error == null) {
+                    callback.onFetchComplete(result);
+                } else {
+                    callback.onFetchFailed(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Remove the token from the fetches in flight, unless it was superseded.
+     */
+    private synchronized void remove(FetchToken token) {
+        String key = getKey(token.mGroup, token.mFetchKey);
+        if (mFetchesInFlight.get(key) == token) {
+            mFetchesInFlight.remove(key);
+        }
+    }
+
+    private static String getKey(String group, String fetchKey) {
+        return group + '/' + fetchKey;
+    }
+    //endregion
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The HTTP client of the MovieDB API and image requests, with connect and read timeouts.
+ * Connections are kept alive and reused from the connection pool of the platform
+ * HttpURLConnection: a response is read (or drained) to its end and its stream closed rather
+ * than disconnected, so consecutive requests to the same host skip the TCP and TLS handshakes.
+ * A connection is only disconnected when a request fails, as its state is then unknown.
+ */
+public final class MovieDbHttpClient {
+
+    //region Static Private fields
+    private static final int sDefaultConnectTimeoutMillis = 15 * 1000;
+
+    private static final int sDefaultReadTimeoutMillis = 20 * 1000;
+
+    /** Larger remaining bodies are not drained; the connection is closed instead. */
+    private static final int sMaxDrainBytes = 64 * 1024;
+
+    private static MovieDbHttpClient sInstance;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final int mConnectTimeoutMillis;
+
+    private final int mReadTimeoutMillis;
+
+    private final SSLSocketFactory mSslSocketFactory;
+    //endregion
+
+    /**
+     * Handles a response. The connection is released by the client afterwards.
+     * @param <T> The type of the result.
+     */
+    public interface ResponseHandler<T> {
+        T handleResponse(HttpURLConnection connection) throws IOException;
+    }
+
+    // Constructor
+    /**
+     * @param connectTimeoutMillis The connect timeout, 0 for none.
+     * @param readTimeoutMillis The read timeout, 0 for none.
+     * @param sslSocketFactory The TLS socket factory, or null for the platform default. The
+     *                         same factory must be used for connections to be reused.
+     */
+    public MovieDbHttpClient(int connectTimeoutMillis, int readTimeoutMillis,
+                             SSLSocketFactory sslSocketFactory) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mSslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * @return The process-wide client.
+     */
+    public static synchronized MovieDbHttpClient getInstance() {
+        if (sInstance == null) {
+            sInstance = new MovieDbHttpClient(sDefaultConnectTimeoutMillis,
+                    sDefaultReadTimeoutMillis, null);
+        }
+        return sInstance;
+    }
+
+    //region Public methods
+
+    /**
+     * Perform a GET request.
+     * @param url The request URL.
+     * @param handler Reads the response.
+     * @param <T> The type of the result.
+     * @return The result of the handler.
+     * @throws IOException Related to network and stream reading, or thrown by the handler.
+     */
+    public <T> T execute(URL url, ResponseHandler<T> handler) throws IOException {
+        return execute(url, Collections.<String, String>emptyMap(), handler);
+    }
+
+    /**
+     * Perform a GET request.
+     * @param url The request URL.
+     * @param requestHeaders The request headers, e.g. conditional request headers.
+     * @param handler Reads the response.
+     * @param <T> The type of the result.
+     * @return The result of the handler.
+     * @throws IOException Related to network and stream reading, or thrown by the handler.
+     */
+    public <T> T execute(URL url, Map<String, String> requestHeaders, ResponseHandler<T> handler)
+            throws IOException {
+
+        HttpURLConnection connection = open(url);
+        boolean reusable = false;
+        try {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            T result = handler.handleResponse(connection);
+            reusable = true;
+            return result;
+        } finally {
+            if (reusable) {
+                release(connection);
+            } else {
+                connection.disconnect();
+            }
+        }
+    }
+
+    public int getConnectTimeoutMillis() {
+        return mConnectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return mReadTimeoutMillis;
+    }
+    //endregion
+
+    //region Private methods
+
+    private HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(mConnectTimeoutMillis);
+        connection.setReadTimeout(mReadTimeoutMillis);
+        if (mSslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(mSslSocketFactory);
+        }
+        return connection;
+    }
+
+    /**
+     * Read the rest of the response and close its stream, returning the connection to the
+     * pool. The handler may already have done so.
+     */
+    private static void release(HttpURLConnection connection) {
+        InputStream in;
+        try {
+            in = connection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getErrorStream() : connection.getInputStream();
+        } catch (IOException e) {
+            connection.disconnect();
+            return;
+        }
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                drained += read;
+                if (drained > sMaxDrainBytes) {
+                    connection.disconnect();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Closed by the handler, which released the connection.
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // The connection is not reused.
+            }
+        }
+    }
+    //endregion
+}
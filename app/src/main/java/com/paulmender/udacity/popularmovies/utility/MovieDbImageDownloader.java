@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.net.Uri;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.NetworkPolicy;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The Picasso downloader of the poster images, with a size bounded disk cache.
+ * MovieDB image URLs never change their content, so a cached image is used without
+ * revalidation: an image in the disk cache is never downloaded again.
+ */
+public final class MovieDbImageDownloader implements Downloader {
+
+    //region Declare non-public, non-static fields
+    private final File mCacheDirectory;
+
+    private final long mCacheMaxSize;
+
+    /** Created on the first load, off the UI thread. Guarded by this. */
+    private MovieDbResponseCache mCache;
+    //endregion
+
+    // Constructor
+    public MovieDbImageDownloader(File cacheDirectory, long cacheMaxSize) {
+        mCacheDirectory = cacheDirectory;
+        mCacheMaxSize = cacheMaxSize;
+    }
+
+    //region Override methods
+    @Override
+    public Response load(Uri uri, int networkPolicy) throws IOException {
+        return load(uri.toString(), networkPolicy);
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing to release, the connections are pooled by the process-wide client.
+    }
+    //endregion
+
+    /**
+     * Load an image from the disk cache or the network.
+     * @param url The image URL.
+     * @param networkPolicy The Picasso NetworkPolicy flags.
+     * @return The image response.
+     * @throws IOException If the image is not cached and cannot be downloaded.
+     */
+    Response load(String url, int networkPolicy) throws IOException {
+        long loadStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.IMAGE_LOAD);
+        try {
+            return loadImage(url, networkPolicy);
+        } finally {
+            MovieDbMetrics.end(MovieDbMetrics.Stage.IMAGE_LOAD, loadStart);
+        }
+    }
+
+    private Response loadImage(String url, int networkPolicy) throws IOException {
+
+        MovieDbResponseCache cache = getCache();
+
+        if (NetworkPolicy.shouldReadFromDiskCache(networkPolicy)) {
+            MovieDbResponseCache.Entry entry = cache.get(url);
+            if (entry != null) {
+                cache.recordHit();
+                return new Response(new ByteArrayInputStream(entry.body), true,
+                        entry.body.length);
+            }
+        }
+        if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+            throw new IOException("Image not cached: " + url);
+        }
+
+        byte[] body = MovieDbHttpClient.getInstance().execute(new URL(url),
+                new MovieDbHttpClient.ResponseHandler<byte[]>() {
+            @Override
+            public byte[] handleResponse(HttpURLConnection urlConnection) throws IOException {
+                int responseCode = urlConnection.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    throw new IOException(responseCode + " " + urlConnection.getResponseMessage());
+                }
+                return MovieDbResponseReader.readBodyBytes(urlConnection.getInputStream(),
+                        urlConnection.getContentLength(),
+                        urlConnection.getContentEncoding());
+            }
+        });
+        cache.recordNetwork();
+
+        if (NetworkPolicy.shouldWriteToDiskCache(networkPolicy)) {
+            cache.put(new MovieDbResponseCache.Entry(url, null, null, Long.MAX_VALUE, body));
+        }
+        return new Response(new ByteArrayInputStream(body), false, body.length);
+    }
+
+    //region Public methods
+    // The cache is not created by these, as they may be called on the UI thread.
+
+    /** @return The number of images loaded from the disk cache. */
+    public synchronized int getDiskHitCount() {
+        return mCache == null ? 0 : mCache.getHitCount();
+    }
+
+    /** @return The number of images downloaded. */
+    public synchronized int getNetworkCount() {
+        return mCache == null ? 0 : mCache.getNetworkCount();
+    }
+
+    /** @return The total size of the cached images in bytes. */
+    public synchronized long getDiskCacheSize() {
+        return mCache == null ? 0 : mCache.size();
+    }
+    //endregion
+
+    private synchronized MovieDbResponseCache getCache() {
+        if (mCache == null) {
+            mCache = new MovieDbResponseCache(mCacheDirectory, mCacheMaxSize);
+        }
+        return mCache;
+    }
+}
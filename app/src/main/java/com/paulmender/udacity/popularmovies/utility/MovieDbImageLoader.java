@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * The shared, configured image loader of the posters.
+ * Decoded posters are kept in a memory cache sized as a fraction of the heap; downloaded
+ * posters are kept in a size bounded disk cache (see MovieDbImageDownloader). Grid thumbnails
+ * are decoded as RGB_565, half the memory of ARGB_8888; posters have no transparency, and
+ * downsampled to the cell width while decoding.
+ * Use with(context) instead of Picasso.with(context).
+ */
+public final class MovieDbImageLoader {
+
+    //region Static Private fields
+    /** The memory cache may use 1/6 of the heap. */
+    private static final int sMemoryCacheHeapFraction = 6;
+
+    private static final String sDiskCacheDirectory = "movie_db_posters";
+
+    private static final long sDiskCacheMaxSize = 32 * 1024 * 1024;
+
+    private static Picasso sPicasso;
+
+    private static LruCache sMemoryCache;
+
+    private static MovieDbImageDownloader sDownloader;
+    //endregion
+
+    // The constructor.
+    private MovieDbImageLoader(){
+    }
+
+    //region Public static methods
+
+    /**
+     * @param context Any context; the application context is kept.
+     * @return The shared Picasso instance, also installed as the Picasso singleton.
+     */
+    public static synchronized Picasso with(Context context) {
+        if (sPicasso == null) {
+            Context applicationContext = context.getApplicationContext();
+            sMemoryCache = new LruCache(getMemoryCacheSize(Runtime.getRuntime().maxMemory()));
+            sDownloader = new MovieDbImageDownloader(
+                    new File(applicationContext.getCacheDir(), sDiskCacheDirectory),
+                    sDiskCacheMaxSize);
+            sPicasso = new Picasso.Builder(applicationContext)
+                    .memoryCache(sMemoryCache)
+                    .downloader(sDownloader)
+                    .build();
+            Picasso.setSingletonInstance(sPicasso);
+        }
+        return sPicasso;
+    }
+
+    /**
+     * Start a grid thumbnail request. The grid and its prefetches must request the same
+     * thumbnail, so that the prefetched bitmap is found in the memory cache.
+     * The bitmap is decoded with a sample size and scaled to the cell width (keeping the aspect
+     * ratio), so no more than the cell is held in memory; it is never scaled up.
+     * @param context Any context.
+     * @param posterUrl The poster URL.
+     * @param widthPixels The width of the grid cell in pixels, or 0 if not yet known.
+     * @return The request.
+     */
+    public static RequestCreator loadThumbnail(Context context, String posterUrl,
+                                               int widthPixels) {
+        RequestCreator request = with(context)
+                .load(posterUrl)
+                .config(Bitmap.Config.RGB_565);
+        if (widthPixels > 0) {
+            request.resize(widthPixels, 0).onlyScaleDown();
+        }
+        return request;
+    }
+
+    /** @return The number of posters found in the memory cache. */
+    public static synchronized int getMemoryHitCount() {
+        return sMemoryCache == null ? 0 : sMemoryCache.hitCount();
+    }
+
+    /** @return The number of posters not found in the memory cache. */
+    public static synchronized int getMemoryMissCount() {
+        return sMemoryCache == null ? 0 : sMemoryCache.missCount();
+    }
+
+    /** @return The number of posters loaded from the disk cache. */
+    public static synchronized int getDiskHitCount() {
+        return sDownloader == null ? 0 : sDownloader.getDiskHitCount();
+    }
+
+    /** @return The number of posters downloaded. */
+    public static synchronized int getNetworkCount() {
+        return sDownloader == null ? 0 : sDownloader.getNetworkCount();
+    }
+
+    /** @return The total size of the posters in the disk cache in bytes. */
+    public static synchronized long getDiskCacheSize() {
+        return sDownloader == null ? 0 : sDownloader.getDiskCacheSize();
+    }
+
+    /**
+     * @return e.g. "memoryHits=90 memoryMisses=10 memoryHitRate=90.0% diskHits=8 downloads=2
+     *  diskCacheSize=123456"
+     */
+    public static String getSummary() {
+        int memoryHits = getMemoryHitCount();
+        int memoryMisses = getMemoryMissCount();
+        int requests = memoryHits + memoryMisses;
+        return String.format(Locale.US,
+                "memoryHits=%1$d memoryMisses=%2$d memoryHitRate=%3$.1f%% diskHits=%4$d"
+                        + " downloads=%5$d diskCacheSize=%6$d",
+                memoryHits, memoryMisses, requests == 0 ? 0 : 100.0 * memoryHits / requests,
+                getDiskHitCount(), getNetworkCount(), getDiskCacheSize());
+    }
+
+    /**
+     * Print the cache hit counts, e.g. for adb shell dumpsys activity.
+     * @param prefix The line prefix.
+     * @param writer The writer to print to.
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("MovieDbImageLoader: " + getSummary());
+    }
+    //endregion
+
+    /**
+     * @param maxMemory The maximum heap size in bytes.
+     * @return The memory cache size in bytes.
+     */
+    static int getMemoryCacheSize(long maxMemory) {
+        return (int) Math.min(Integer.MAX_VALUE, maxMemory / sMemoryCacheHeapFraction);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.view.Choreographer;
+
+import com.paulmender.common.metrics.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Measures the frame times of the poster grid while it scrolls, and attributes each slow frame
+ * to the UI thread work that took most of it: binding cells, laying out the grid, or displaying
+ * posters (see MovieDbMetrics, which must be enabled). The session totals can be dumped.
+ * Runs on the UI thread. Frames are observed through a FrameScheduler, which is the
+ * Choreographer in the app and a simulated clock in tests.
+ */
+public final class MovieDbJankMonitor implements Choreographer.FrameCallback,
+        MovieDbMetrics.SpanListener {
+
+    /**
+     * The causes slow frames are attributed to.
+     */
+    public enum Cause {
+        BIND,
+        LAYOUT,
+        IMAGE,
+        /** No measured work, e.g. drawing or garbage collection. */
+        OTHER
+    }
+
+    /**
+     * Posts frame callbacks, like the Choreographer.
+     */
+    public interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+
+        void removeFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    //region Declare non-public, non-static fields
+    private final FrameScheduler mFrameScheduler;
+
+    private final long mFrameIntervalNanos;
+
+    /** Work on other threads does not delay frames. */
+    private final Thread mUiThread;
+
+    private boolean mRunning;
+
+    /** The time of the previous frame while running, or 0. */
+    private long mLastFrameTimeNanos;
+
+    /** The UI thread work since the previous frame, by cause. */
+    private final long[] mFrameWorkNanos = new long[Cause.values().length];
+
+    private final LatencyHistogram mFrameTimes = new LatencyHistogram();
+
+    private long mSlowFrameCount;
+
+    private long mDroppedFrameCount;
+
+    private final long[] mSlowFramesByCause = new long[Cause.values().length];
+    //endregion
+
+    /**
+     * Create a monitor on the calling (UI) thread.
+     * @param frameScheduler Schedules the frame callbacks.
+     * @param refreshRate The display refresh rate in frames per second, e.g. 60.
+     */
+    public MovieDbJankMonitor(FrameScheduler frameScheduler, float refreshRate) {
+        mFrameScheduler = frameScheduler;
+        mFrameIntervalNanos = (long) (1000000000L / refreshRate);
+        mUiThread = Thread.currentThread();
+    }
+
+    /**
+     * @return A scheduler of Choreographer frame callbacks for the calling (UI) thread.
+     */
+    public static FrameScheduler getChoreographerFrameScheduler() {
+        final Choreographer choreographer = Choreographer.getInstance();
+        return new FrameScheduler() {
+            @Override
+            public void postFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.postFrameCallback(callback);
+            }
+
+            @Override
+            public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.removeFrameCallback(callback);
+            }
+        };
+    }
+
+    //region Public methods
+
+    /**
+     * Start measuring frames, e.g. when the grid starts scrolling.
+     */
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mLastFrameTimeNanos = 0;
+        MovieDbMetrics.setSpanListener(this);
+        mFrameScheduler.postFrameCallback(this);
+    }
+
+    /**
+     * Stop measuring frames, e.g. when the grid stops scrolling.
+     */
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        MovieDbMetrics.setSpanListener(null);
+        mFrameScheduler.removeFrameCallback(this);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public long getFrameCount() {
+        return mFrameTimes.getCount();
+    }
+
+    /** @return The number of frames that took longer than the frame interval. */
+    public long getSlowFrameCount() {
+        return mSlowFrameCount;
+    }
+
+    /** @return The number of frame intervals missed by the slow frames. */
+    public long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    public long getSlowFrameCount(Cause cause) {
+        return mSlowFramesByCause[cause.ordinal()];
+    }
+
+    public LatencyHistogram getFrameTimes() {
+        return mFrameTimes;
+    }
+
+    /**
+     * Print the session summary.
+     * @param prefix The prefix of each line.
+     * @param writer The writer to print to.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("MovieDbJankMonitor: " + getSummary());
+    }
+
+    /**
+     * @return e.g. "frames=600 slow=12 dropped=20 bind=3 layout=1 image=6 other=2
+     *  frameTimes: count=600 p50=..."
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder()
+                .append("frames=").append(getFrameCount())
+                .append(" slow=").append(mSlowFrameCount)
+                .append(" dropped=").append(mDroppedFrameCount);
+        for (Cause cause : Cause.values()) {
+            summary.append(' ').append(cause.name().toLowerCase(Locale.US))
+                    .append('=').append(getSlowFrameCount(cause));
+        }
+        return summary.append(" frameTimes: ").append(mFrameTimes).toString();
+    }
+    //endregion
+
+    //region Override methods
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0) {
+            recordFrame(frameTimeNanos - mLastFrameTimeNanos);
+        }
+        clearFrameWork();
+        mLastFrameTimeNanos = frameTimeNanos;
+        mFrameScheduler.postFrameCallback(this);
+    }
+
+    @Override
+    public void onSpan(MovieDbMetrics.Stage stage, long elapsedNanos) {
+        if (!mRunning || Thread.currentThread() != mUiThread) {
+            return;
+        }
+        Cause cause;
+        switch (stage) {
+            case BIND:
+                cause = Cause.BIND;
+                break;
+            case LAYOUT:
+                cause = Cause.LAYOUT;
+                break;
+            case IMAGE_DISPLAY:
+                cause = Cause.IMAGE;
+                break;
+            default:
+                return;
+        }
+        mFrameWorkNanos[cause.ordinal()] += elapsedNanos;
+    }
+    //endregion
+
+    //region Private methods
+
+    private void recordFrame(long frameNanos) {
+        mFrameTimes.record(frameNanos);
+
+        // A frame is slow when the next frame did not come at the next vsync; allow some jitter.
+        long droppedFrames = (frameNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+        if (droppedFrames <= 0) {
+            return;
+        }
+        mSlowFrameCount++;
+        mDroppedFrameCount += droppedFrames;
+
+        Cause slowest = Cause.OTHER;
+        long slowestNanos = 0;
+        for (Cause cause : Cause.values()) {
+            if (mFrameWorkNanos[cause.ordinal()] > slowestNanos) {
+                slowest = cause;
+                slowestNanos = mFrameWorkNanos[cause.ordinal()];
+            }
+        }
+        mSlowFramesByCause[slowest.ordinal()]++;
+    }
+
+    private void clearFrameWork() {
+        for (int i = 0; i < mFrameWorkNanos.length; i++) {
+            mFrameWorkNanos[i] = 0;
+        }
+    }
+    //endregion
+}
@@ -16,14 +16,22 @@ package com.paulmender.udacity.popularmovies.utility;
 
 import com.paulmender.udacity.popularmovies.MovieParcelable;
 import com.paulmender.udacity.popularmovies.data.MovieDbContract;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utilities to manage the MovieDb JSON data.
@@ -36,6 +44,14 @@ public final class MovieDbJsonUtility {
 
     private static final String sMdJsonCode = "cod";
     private static final String sMdResults = "results";
+    private static final String sMdCharset = "UTF-8";
+
+    /**
+     * The interface for receiving movies as they are parsed from a JSON stream.
+     */
+    public interface MovieDbJsonOnParsedHandler {
+        void onMovieParsed(MovieParcelable movie);
+    }
 
     /**
      * Parse the JSON response from the MovieDB API.
@@ -59,11 +75,14 @@ public final class MovieDbJsonUtility {
 
                 MovieParcelable movieParcelable = new MovieParcelable();
                 movieParcelable.movieId = movie.getInt(MovieDbContract.MOVIE_DB_ID);
-                movieParcelable.overview = movie.getString(MovieDbContract.MOVIE_DB_OVERVIEW);
                 movieParcelable.posterPath = movie.getString(MovieDbContract.MOVIE_DB_POSTER_PATH);
-                movieParcelable.releaseDate = movie.getString(MovieDbContract.MOVIE_DB_RELEASE_DATE);
+                movieParcelable.releaseDate = parseReleaseDate(
+                        movie.optString(MovieDbContract.MOVIE_DB_RELEASE_DATE, null));
                 movieParcelable.title = movie.getString(MovieDbContract.MOVIE_DB_TITLE);
-                movieParcelable.voteAverage = movie.getString(MovieDbContract.MOVIE_DB_VOTE_AVERAGE);
+                movieParcelable.voteAverage =
+                        (float) movie.optDouble(MovieDbContract.MOVIE_DB_VOTE_AVERAGE, 0);
+                movieParcelable.voteCount = movie.optInt(MovieDbContract.MOVIE_DB_VOTE_COUNT, 0);
+                movieParcelable.popularity = movie.optDouble(MovieDbContract.MOVIE_DB_POPULARITY, 0);
 
                 parsedMovies.add(i,movieParcelable);
             }
@@ -71,24 +90,223 @@ public final class MovieDbJsonUtility {
         return parsedMovies;
     }
 
+    /**
+     * Parse the JSON response from the MovieDB API directly from the response stream.
+     * Unlike getMovieDbStringsFromJson, neither the response String nor a JSONObject tree is
+     * built; only the movie currently being read is held in memory.
+     *
+     * @param movieDbJsonStream response stream from server.
+     * @return The list of parsed movies.
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed.
+     */
+    public static List<MovieParcelable> getMovieDbListFromJsonStream(InputStream movieDbJsonStream)
+            throws IOException {
+
+        return getMovieDbPageFromJsonStream(movieDbJsonStream).movies;
+    }
+
+    /**
+     * Parse one page of a MovieDB API list response directly from the response stream.
+     *
+     * @param movieDbJsonStream response stream from server.
+     * @return The page with its movies and paging attributes.
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed.
+     */
+    public static MovieDbPage getMovieDbPageFromJsonStream(InputStream movieDbJsonStream)
+            throws IOException {
+
+        final MovieDbPage parsedPage = new MovieDbPage();
+        parseMovieDbJsonStream(movieDbJsonStream, parsedPage, new MovieDbJsonOnParsedHandler() {
+            @Override
+            public void onMovieParsed(MovieParcelable movie) {
+                parsedPage.movies.add(movie);
+            }
+        });
+        return parsedPage;
+    }
+
+    /**
+     * Pull parse the JSON response from the MovieDB API, passing each movie to the handler as
+     * soon as it has been read. Fields that are not used by the application are skipped.
+     *
+     * @param movieDbJsonStream response stream from server.
+     * @param handler Receives each parsed movie in the order of the results array.
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed.
+     */
+    public static void parseMovieDbJsonStream(InputStream movieDbJsonStream,
+                                              MovieDbJsonOnParsedHandler handler)
+            throws IOException {
+
+        parseMovieDbJsonStream(movieDbJsonStream, new MovieDbPage(), handler);
+    }
+
+    /**
+     * Pull parse the JSON response from the MovieDB API.
+     *
+     * @param movieDbJsonStream response stream from server.
+     * @param pageAttributes Receives the paging attributes and the overviews; its movie list is
+     *                       not changed.
+     * @param handler Receives each parsed movie in the order of the results array.
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed.
+     */
+    private static void parseMovieDbJsonStream(InputStream movieDbJsonStream,
+                                               MovieDbPage pageAttributes,
+                                               MovieDbJsonOnParsedHandler handler)
+            throws IOException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(movieDbJsonStream, sMdCharset));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(sMdResults) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        handler.onMovieParsed(readMovie(reader, pageAttributes.overviews));
+                    }
+                    reader.endArray();
+                } else if (name.equals(sMdJsonCode) && reader.peek() == JsonToken.NUMBER) {
+                    if (!isValidJsonCode(reader.nextInt())) {
+                        // Nothing more of use in an error response.
+                        return;
+                    }
+                } else if (name.equals(MovieDbContract.MOVIE_DB_PAGE)
+                        && reader.peek() == JsonToken.NUMBER) {
+                    pageAttributes.page = reader.nextInt();
+                } else if (name.equals(MovieDbContract.MOVIE_DB_TOTAL_PAGES)
+                        && reader.peek() == JsonToken.NUMBER) {
+                    pageAttributes.totalPages = reader.nextInt();
+                } else if (name.equals(MovieDbContract.MOVIE_DB_TOTAL_RESULTS)
+                        && reader.peek() == JsonToken.NUMBER) {
+                    pageAttributes.totalResults = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException|NumberFormatException e) {
+            // JsonReader reports unexpected tokens as IllegalStateException.
+            throw new IOException(e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parse a MovieDB API movie details response, e.g. of /movie/{id}, directly from the
+     * response stream.
+     *
+     * @param movieDbJsonStream response stream from server.
+     * @return A page with the movie and its overview.
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed.
+     */
+    public static MovieDbPage getMovieFromJsonStream(InputStream movieDbJsonStream)
+            throws IOException {
+
+        MovieDbPage parsedPage = new MovieDbPage();
+        JsonReader reader = new JsonReader(new InputStreamReader(movieDbJsonStream, sMdCharset));
+        try {
+            MovieParcelable movie = readMovie(reader, parsedPage.overviews);
+            if (movie.movieId == 0) {
+                throw new IOException("The response is not a movie");
+            }
+            parsedPage.movies.add(movie);
+            parsedPage.page = 1;
+            parsedPage.totalPages = 1;
+            parsedPage.totalResults = 1;
+        } catch (IllegalStateException|NumberFormatException e) {
+            throw new IOException(e);
+        } finally {
+            reader.close();
+        }
+        return parsedPage;
+    }
+
+    /**
+     * Read a single movie object of the results array.
+     * @param reader The reader positioned at the beginning of the movie object.
+     * @param overviews Receives the overview of the movie, by movieId.
+     * @return The parsed movie.
+     */
+    private static MovieParcelable readMovie(JsonReader reader, Map<Integer, String> overviews)
+            throws IOException {
+
+        MovieParcelable movieParcelable = new MovieParcelable();
+        String overview = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case MovieDbContract.MOVIE_DB_ID:
+                    movieParcelable.movieId = reader.nextInt();
+                    break;
+                case MovieDbContract.MOVIE_DB_OVERVIEW:
+                    overview = reader.nextString();
+                    break;
+                case MovieDbContract.MOVIE_DB_POSTER_PATH:
+                    movieParcelable.posterPath = reader.nextString();
+                    break;
+                case MovieDbContract.MOVIE_DB_RELEASE_DATE:
+                    movieParcelable.releaseDate = parseReleaseDate(reader.nextString());
+                    break;
+                case MovieDbContract.MOVIE_DB_TITLE:
+                    movieParcelable.title = reader.nextString();
+                    break;
+                case MovieDbContract.MOVIE_DB_VOTE_AVERAGE:
+                    movieParcelable.voteAverage = (float) reader.nextDouble();
+                    break;
+                case MovieDbContract.MOVIE_DB_VOTE_COUNT:
+                    movieParcelable.voteCount = reader.nextInt();
+                    break;
+                case MovieDbContract.MOVIE_DB_POPULARITY:
+                    movieParcelable.popularity = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (overview != null) {
+            overviews.put(movieParcelable.movieId, overview);
+        }
+        return movieParcelable;
+    }
+
+    /**
+     * Pack a MovieDB release date for the typed movie field.
+     * @param releaseDate The release date as yyyy-mm-dd, e.g. "2017-08-26".
+     * @return The date packed as yyyymmdd, e.g. 20170826, or 0 if the date is missing or invalid.
+     */
+    public static int parseReleaseDate(String releaseDate) {
+        if (releaseDate == null || releaseDate.length() != 10
+                || releaseDate.charAt(4) != '-' || releaseDate.charAt(7) != '-') {
+            return 0;
+        }
+        int packed = 0;
+        for (int i = 0; i < releaseDate.length(); i++) {
+            if (i == 4 || i == 7) {
+                continue;
+            }
+            int digit = releaseDate.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            packed = packed * 10 + digit;
+        }
+        return packed;
+    }
+
     private static boolean isValidJsonObject(JSONObject movieJson){
         boolean isValid = true;
         if (movieJson.has(sMdJsonCode)) {
             try {
-                int errorCode = movieJson.getInt(sMdJsonCode);
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        isValid = true;
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                    /* invalid query*/
-                        isValid = false;
-                        break;
-                    default:
-                    /* Server probably down */
-                        isValid = false;
-                        break;
-                }
+                isValid = isValidJsonCode(movieJson.getInt(sMdJsonCode));
             }
             catch (JSONException e){
                 e.printStackTrace();
@@ -96,4 +314,22 @@ public final class MovieDbJsonUtility {
         }
         return isValid;
     }
+
+    private static boolean isValidJsonCode(int errorCode){
+        boolean isValid;
+        switch (errorCode) {
+            case HttpURLConnection.HTTP_OK:
+                isValid = true;
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+            /* invalid query*/
+                isValid = false;
+                break;
+            default:
+            /* Server probably down */
+                isValid = false;
+                break;
+        }
+        return isValid;
+    }
 }
\ No newline at end of file
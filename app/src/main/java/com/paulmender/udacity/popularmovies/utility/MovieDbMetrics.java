@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.os.Trace;
+import android.util.Log;
+
+import com.paulmender.common.metrics.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Latency histograms of the stages between a MovieDB request and a poster on screen, and
+ * matching systrace sections. Disabled by default: then a span costs a single volatile read.
+ * <pre>
+ *     long start = MovieDbMetrics.begin(MovieDbMetrics.Stage.PARSE);
+ *     try {
+ *         ...
+ *     } finally {
+ *         MovieDbMetrics.end(MovieDbMetrics.Stage.PARSE, start);
+ *     }
+ * </pre>
+ * A span must end on the thread it began on. Enable before any span begins.
+ */
+public final class MovieDbMetrics {
+
+    private static final String LOG_TAG = MovieDbMetrics.class.getSimpleName();
+
+    /**
+     * The measured stages.
+     */
+    public enum Stage {
+        /**
+         * A MovieDB request, from the network or the response cache, excluding its parsing.
+         * A response parsed as it is streamed from the network counts until its headers.
+         */
+        FETCH("MovieDb.fetch"),
+        /** Parsing a MovieDB response; when streamed from the network, including the reads. */
+        PARSE("MovieDb.parse"),
+        /** Binding a poster cell, apart from displaying its poster. */
+        BIND("MovieDb.bind"),
+        /** Laying out the poster grid. */
+        LAYOUT("MovieDb.layout"),
+        /** Displaying a poster from the memory cache, or its placeholder, on the UI thread. */
+        IMAGE_DISPLAY("MovieDb.imageDisplay"),
+        /** Loading a poster image from the disk cache or the network. */
+        IMAGE_LOAD("MovieDb.imageLoad"),
+        /**
+         * Opening the detail screen, from the poster click until the movie is shown. Spans two
+         * activities, so it is recorded without a systrace section.
+         */
+        DETAIL_OPEN("MovieDb.detailOpen");
+
+        private final String mTraceSectionName;
+
+        Stage(String traceSectionName) {
+            mTraceSectionName = traceSectionName;
+        }
+    }
+
+    //region Static Private fields
+    private static volatile boolean sEnabled;
+
+    private static volatile boolean sTraceEnabled;
+
+    private static volatile SpanListener sSpanListener;
+
+    private static final LatencyHistogram[] sHistograms =
+            new LatencyHistogram[Stage.values().length];
+
+    static {
+        for (int i = 0; i < sHistograms.length; i++) {
+            sHistograms[i] = new LatencyHistogram();
+        }
+    }
+    //endregion
+
+    /**
+     * The interface for receiving each measured span, e.g. to attribute slow frames.
+     * Called on the thread of the span.
+     */
+    public interface SpanListener {
+        void onSpan(Stage stage, long elapsedNanos);
+    }
+
+    // The constructor.
+    private MovieDbMetrics(){
+    }
+
+    //region Public static methods
+
+    /**
+     * @param enabled True to record the span latencies.
+     * @param traceEnabled True to also emit the spans as systrace sections.
+     */
+    public static void setEnabled(boolean enabled, boolean traceEnabled) {
+        sEnabled = enabled;
+        sTraceEnabled = enabled && traceEnabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Begin a span.
+     * @param stage The stage of the span.
+     * @return The start time to pass to end, 0 when disabled.
+     */
+    public static long begin(Stage stage) {
+        if (!sEnabled) {
+            return 0;
+        }
+        if (sTraceEnabled) {
+            Trace.beginSection(stage.mTraceSectionName);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * End a span.
+     * @param stage The stage of the span.
+     * @param startNanos The value returned by begin.
+     */
+    public static void end(Stage stage, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (sTraceEnabled) {
+            Trace.endSection();
+        }
+        recordSpan(stage, elapsedNanos);
+    }
+
+    /**
+     * Record a span measured by the caller, e.g. across activities, without a systrace section.
+     * @param stage The stage of the span.
+     * @param startNanos The System.nanoTime() at the start of the span, 0 if not measured.
+     */
+    public static void record(Stage stage, long startNanos) {
+        if (!sEnabled || startNanos == 0) {
+            return;
+        }
+        recordSpan(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param spanListener Receives the spans while enabled, or null.
+     */
+    public static void setSpanListener(SpanListener spanListener) {
+        sSpanListener = spanListener;
+    }
+
+    public static LatencyHistogram getHistogram(Stage stage) {
+        return sHistograms[stage.ordinal()];
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : sHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Print the latency percentiles of each stage, e.g. from Activity.dump for
+     * "adb shell dumpsys activity".
+     * @param prefix The prefix of each line.
+     * @param writer The writer to print to.
+     */
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("MovieDbMetrics:");
+        for (Stage stage : Stage.values()) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(stage.name().toLowerCase(Locale.US));
+            writer.print(": ");
+            writer.println(getHistogram(stage));
+        }
+    }
+
+    /**
+     * Log the latency percentiles of each stage.
+     */
+    public static void logSummary() {
+        for (Stage stage : Stage.values()) {
+            Log.i(LOG_TAG, stage.name().toLowerCase(Locale.US) + ": " + getHistogram(stage));
+        }
+    }
+    //endregion
+
+    private static void recordSpan(Stage stage, long elapsedNanos) {
+        sHistograms[stage.ordinal()].record(elapsedNanos);
+
+        SpanListener spanListener = sSpanListener;
+        if (spanListener != null) {
+            spanListener.onSpan(stage, elapsedNanos);
+        }
+    }
+}
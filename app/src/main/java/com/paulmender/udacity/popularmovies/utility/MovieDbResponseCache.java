@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A disk-backed cache of MovieDB HTTP responses, used by MovieDbUtility.
+ * Each response is stored in its own file together with its ETag, Last-Modified and expiry
+ * time so that stale entries can be revalidated with a conditional request.
+ * The total size of the cached bodies is bounded; the least recently used entries are evicted
+ * first. The use order survives restarts through the file modification times.
+ * Installed once per process, similar to android.net.http.HttpResponseCache.
+ */
+public final class MovieDbResponseCache {
+
+    //region Static Private fields
+    private static final int sEntryMagic = 0x4d444243; // MDBC
+    private static final int sEntryVersion = 1;
+    private static final String sEntrySuffix = ".entry";
+    private static final String sTempSuffix = ".tmp";
+
+    private static MovieDbResponseCache sInstalled;
+    //endregion
+
+    //region Declare non-public, non-static fields
+    private final File mDirectory;
+
+    private final long mMaxSize;
+
+    private long mSize;
+
+    /** Cache keys (URLs) to entry files in least recently used first order. */
+    private final LinkedHashMap<String, File> mEntryFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int mHitCount;
+    private int mNetworkCount;
+    private int mConditionalHitCount;
+    //endregion
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        public final String url;
+        public final String eTag;
+        public final String lastModified;
+        public final long expiresAtMillis;
+        public final byte[] body;
+
+        public Entry(String url, String eTag, String lastModified, long expiresAtMillis,
+                     byte[] body) {
+            this.url = url;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.expiresAtMillis = expiresAtMillis;
+            this.body = body;
+        }
+
+        public boolean isFresh(long nowMillis) {
+            return nowMillis < expiresAtMillis;
+        }
+    }
+
+    // Constructor
+    public MovieDbResponseCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        loadIndex();
+    }
+
+    //region Public static methods
+
+    /**
+     * Create the process-wide cache, or return the existing one if already installed.
+     * @param directory The directory for the cache files, e.g. Context.getCacheDir().
+     * @param maxSize The maximum total size of the cached bodies in bytes.
+     * @return The installed cache.
+     */
+    public static synchronized MovieDbResponseCache install(File directory, long maxSize) {
+        if (sInstalled == null || !sInstalled.mDirectory.equals(directory)
+                || sInstalled.mMaxSize != maxSize) {
+            sInstalled = new MovieDbResponseCache(directory, maxSize);
+        }
+        return sInstalled;
+    }
+
+    /**
+     * @return The installed cache, or null if no cache is installed.
+     */
+    public static synchronized MovieDbResponseCache getInstalled() {
+        return sInstalled;
+    }
+
+    /**
+     * Remove the installed cache. The cache files are kept.
+     */
+    public static synchronized void uninstall() {
+        sInstalled = null;
+    }
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Look up a cached response.
+     * @param url The request URL.
+     * @return The cached response, or null on a miss.
+     */
+    public synchronized Entry get(String url) {
+        File file = mEntryFiles.get(url);
+        if (file == null) {
+            return null;
+        }
+        try {
+            Entry entry = readEntry(file, true);
+            if (entry == null || !entry.url.equals(url)) {
+                remove(url);
+                return null;
+            }
+            // Record the use so that the LRU order survives a restart.
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException e) {
+            remove(url);
+            return null;
+        }
+    }
+
+    /**
+     * Store a response, replacing any previous response for the same URL, and evict the least
+     * recently used responses while the cache exceeds its maximum size.
+     * @param entry The response to store.
+     */
+    public synchronized void put(Entry entry) {
+        if (entry.body.length > mMaxSize) {
+            remove(entry.url);
+            return;
+        }
+        File file = new File(mDirectory, getFileName(entry.url));
+        File temp = new File(mDirectory, file.getName() + sTempSuffix);
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            mDirectory.mkdirs();
+            writeEntry(temp, entry);
+            remove(entry.url);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+        mEntryFiles.put(entry.url, file);
+        mSize += file.length();
+        trimToSize();
+    }
+
+    /**
+     * Remove a cached response.
+     * @param url The request URL.
+     */
+    public synchronized void remove(String url) {
+        File file = mEntryFiles.remove(url);
+        if (file != null) {
+            mSize -= file.length();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Remove all cached responses.
+     */
+    public synchronized void evictAll() {
+        for (String url : new ArrayList<>(mEntryFiles.keySet())) {
+            remove(url);
+        }
+    }
+
+    /** @return The total size of the cache files in bytes. */
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized long maxSize() {
+        return mMaxSize;
+    }
+
+    /** @return The number of responses served without network access. */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /** @return The number of responses revalidated with a 304 Not Modified. */
+    public synchronized int getConditionalHitCount() {
+        return mConditionalHitCount;
+    }
+
+    /** @return The number of responses that required a full network fetch. */
+    public synchronized int getNetworkCount() {
+        return mNetworkCount;
+    }
+
+    synchronized void recordHit() {
+        mHitCount++;
+    }
+
+    synchronized void recordConditionalHit() {
+        mConditionalHitCount++;
+    }
+
+    synchronized void recordNetwork() {
+        mNetworkCount++;
+    }
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Build the index from the entry files in the cache directory, least recently used first.
+     */
+    private void loadIndex() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> entryFiles = new ArrayList<>(Arrays.asList(files));
+        for (Iterator<File> iterator = entryFiles.iterator(); iterator.hasNext(); ) {
+            File file = iterator.next();
+            if (!file.getName().endsWith(sEntrySuffix)) {
+                if (file.getName().endsWith(sTempSuffix)) {
+                    // Left over from an interrupted write.
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+                iterator.remove();
+            }
+        }
+        Collections.sort(entryFiles, new Comparator<File>() {
+            @Override
+            public int compare(File left, File right) {
+                long l = left.lastModified();
+                long r = right.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : entryFiles) {
+            Entry entry = null;
+            try {
+                entry = readEntry(file, false);
+            } catch (IOException e) {
+                // Deleted below.
+            }
+            if (entry == null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                continue;
+            }
+            mEntryFiles.put(entry.url, file);
+            mSize += file.length();
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, File>> iterator = mEntryFiles.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            File file = iterator.next().getValue();
+            iterator.remove();
+            mSize -= file.length();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static String getFileName(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2 + sEntrySuffix.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(sEntrySuffix).toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode()) + sEntrySuffix;
+        }
+    }
+
+    private static void writeEntry(File file, Entry entry) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(sEntryMagic);
+            out.writeInt(sEntryVersion);
+            out.writeUTF(entry.url);
+            out.writeUTF(entry.eTag == null ? "" : entry.eTag);
+            out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+            out.writeLong(entry.expiresAtMillis);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read an entry file.
+     * @param file The entry file.
+     * @param readBody False to read only the header, leaving the body empty.
+     * @return The entry, or null if the file is not a valid entry.
+     */
+    private static Entry readEntry(File file, boolean readBody) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != sEntryMagic || in.readInt() != sEntryVersion) {
+                return null;
+            }
+            String url = in.readUTF();
+            String eTag = in.readUTF();
+            String lastModified = in.readUTF();
+            long expiresAtMillis = in.readLong();
+            byte[] body = new byte[readBody ? in.readInt() : 0];
+            in.readFully(body);
+            return new Entry(url,
+                    eTag.isEmpty() ? null : eTag,
+                    lastModified.isEmpty() ? null : lastModified,
+                    expiresAtMillis,
+                    body);
+        } finally {
+            in.close();
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads HTTP response bodies from the MovieDB into Strings.
+ * The body is read into a byte buffer borrowed from a small pool, sized from the Content-Length
+ * header when present, and decoded as UTF-8 in a single pass. Gzip content encoding is supported.
+ * Replaces the Scanner("\\A") approach, which ran a regex over the stream and grew its buffer
+ * repeatedly.
+ */
+public final class MovieDbResponseReader {
+
+    //region Private static fields
+    private static final Charset sCharsetUtf8 = Charset.forName("UTF-8");
+
+    private static final String sEncodingGzip = "gzip";
+
+    /** The buffer size used when the body length is unknown. */
+    private static final int sDefaultBufferSize = 16 * 1024;
+
+    /**
+     * The largest buffer allocated up front from the Content-Length header, which the server
+     * may get wrong; larger bodies grow the buffer as they are read.
+     */
+    private static final int sMaxInitialBufferSize = 1024 * 1024;
+
+    /** Buffers larger than this are not returned to the pool. */
+    private static final int sMaxPooledBufferSize = 1024 * 1024;
+
+    private static final int sMaxPooledBuffers = 2;
+
+    private static final ArrayDeque<byte[]> sBufferPool = new ArrayDeque<>(sMaxPooledBuffers);
+    //endregion
+
+    // The constructor.
+    private MovieDbResponseReader(){
+    }
+
+    //region Public static methods
+
+    /**
+     * Open the response body stream of the connection, decompressing it if required.
+     * @param urlConnection The connection to read.
+     * @return The (decoded) response body stream.
+     * @throws IOException Related to network and stream reading.
+     */
+    public static InputStream getInputStream(HttpURLConnection urlConnection) throws IOException {
+        InputStream in = urlConnection.getInputStream();
+        if (isGzip(urlConnection.getContentEncoding())) {
+            in = new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Read the entire response body of the connection.
+     * @param urlConnection The connection to read.
+     * @return The response body, or null if the body is empty.
+     * @throws IOException Related to network and stream reading.
+     */
+    public static String readResponse(HttpURLConnection urlConnection) throws IOException {
+        return readBody(urlConnection.getInputStream(),
+                urlConnection.getContentLength(),
+                urlConnection.getContentEncoding());
+    }
+
+    /**
+     * Read the entire body from the stream.
+     * @param in The body stream, as received.
+     * @param contentLength The Content-Length header value, or -1 if unknown.
+     * @param contentEncoding The Content-Encoding header value, or null if none.
+     * @return The body decoded as UTF-8, or null if the body is empty.
+     * @throws IOException Related to stream reading.
+     */
+    public static String readBody(InputStream in, int contentLength, String contentEncoding)
+            throws IOException {
+
+        int sizeHint = contentLength;
+        if (isGzip(contentEncoding)) {
+            in = new GZIPInputStream(in);
+            // The Content-Length is the compressed length, so it is only a lower bound.
+            sizeHint = -1;
+        }
+
+        byte[][] bufferHolder = { obtainBuffer(getInitialBufferSize(sizeHint)) };
+        try {
+            int length = readFully(in, bufferHolder);
+            return length == 0 ? null : new String(bufferHolder[0], 0, length, sCharsetUtf8);
+        } finally {
+            recycleBuffer(bufferHolder[0]);
+            in.close();
+        }
+    }
+
+    /**
+     * Read the entire body from the stream without decoding it.
+     * @param in The body stream, as received.
+     * @param contentLength The Content-Length header value, or -1 if unknown.
+     * @param contentEncoding The Content-Encoding header value, or null if none.
+     * @return The (decompressed) body bytes, empty if the body is empty.
+     * @throws IOException Related to stream reading.
+     */
+    public static byte[] readBodyBytes(InputStream in, int contentLength, String contentEncoding)
+            throws IOException {
+
+        int sizeHint = contentLength;
+        if (isGzip(contentEncoding)) {
+            in = new GZIPInputStream(in);
+            sizeHint = -1;
+        }
+
+        byte[][] bufferHolder = { obtainBuffer(getInitialBufferSize(sizeHint)) };
+        try {
+            int length = readFully(in, bufferHolder);
+            return Arrays.copyOf(bufferHolder[0], length);
+        } finally {
+            recycleBuffer(bufferHolder[0]);
+            in.close();
+        }
+    }
+
+    /**
+     * Decode body bytes as UTF-8.
+     * @param body The body bytes.
+     * @return The body, or null if the body is empty.
+     */
+    public static String decode(byte[] body) {
+        return body.length == 0 ? null : new String(body, sCharsetUtf8);
+    }
+    //endregion
+
+    //region Private static methods
+
+    private static boolean isGzip(String contentEncoding) {
+        return contentEncoding != null && contentEncoding.equalsIgnoreCase(sEncodingGzip);
+    }
+
+    /**
+     * @param sizeHint The expected body length, or -1 if unknown.
+     * @return The size of the buffer to read the body into first.
+     */
+    private static int getInitialBufferSize(int sizeHint) {
+        return sizeHint > 0 ? Math.min(sizeHint, sMaxInitialBufferSize) : sDefaultBufferSize;
+    }
+
+    /**
+     * Take a pooled buffer of at least the minimum size, or allocate one.
+     */
+    private static byte[] obtainBuffer(int minimumSize) {
+        synchronized (sBufferPool) {
+            for (byte[] pooled : sBufferPool) {
+                if (pooled.length >= minimumSize) {
+                    sBufferPool.remove(pooled);
+                    return pooled;
+                }
+            }
+        }
+        return new byte[minimumSize];
+    }
+
+    /**
+     * Return a buffer to the pool, replacing the smallest pooled buffer when the pool is full.
+     */
+    private static void recycleBuffer(byte[] buffer) {
+        if (buffer.length > sMaxPooledBufferSize) {
+            return;
+        }
+        synchronized (sBufferPool) {
+            if (sBufferPool.size() == sMaxPooledBuffers) {
+                byte[] smallest = null;
+                for (byte[] pooled : sBufferPool) {
+                    if (smallest == null || pooled.length < smallest.length) {
+                        smallest = pooled;
+                    }
+                }
+                if (smallest.length >= buffer.length) {
+                    return;
+                }
+                sBufferPool.remove(smallest);
+            }
+            sBufferPool.offerFirst(buffer);
+        }
+    }
+
+    /**
+     * Read the stream to its end into the buffer, growing the buffer as required.
+     * @param in The stream to read.
+     * @param bufferHolder Holds the buffer; replaced by a larger buffer when it is grown.
+     * @return The number of bytes read.
+     */
+    private static int readFully(InputStream in, byte[][] bufferHolder) throws IOException {
+        byte[] buffer = bufferHolder[0];
+        int length = 0;
+        int read;
+        while (true) {
+            if (length == buffer.length) {
+                // Probe for the end of the stream before growing an exactly sized buffer.
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                buffer = growBuffer(buffer, length);
+                bufferHolder[0] = buffer;
+                buffer[length++] = (byte) next;
+            }
+            read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private static byte[] growBuffer(byte[] buffer, int length) {
+        byte[] grown = obtainBuffer(buffer.length * 2);
+        System.arraycopy(buffer, 0, grown, 0, length);
+        recycleBuffer(buffer);
+        return grown;
+    }
+    //endregion
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.utility;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent identical requests (single-flight): while a request for a key is in
+ * flight, other callers for the same key wait for it and share its result instead of issuing
+ * their own. Once the request completes the next caller issues a new request.
+ * The shared result must be treated as read only by all callers.
+ * @param <T> The type of the request result.
+ */
+public final class MovieDbSingleFlight<T> {
+
+    private final ConcurrentHashMap<String, FutureTask<T>> mRequestsInFlight =
+            new ConcurrentHashMap<>();
+
+    private final AtomicInteger mJoinedCount = new AtomicInteger();
+
+    // Constructor
+    public MovieDbSingleFlight() {
+    }
+
+    /**
+     * Perform the request, or join the identical request in flight.
+     * @param key Identifies identical requests, e.g. the request URL.
+     * @param request Performs the request on the calling thread if none is in flight.
+     * @return The result of the request.
+     * @throws IOException If the request failed; all joined callers receive the failure.
+     */
+    public T execute(String key, Callable<T> request) throws IOException {
+        FutureTask<T> task = new FutureTask<>(request);
+        FutureTask<T> inFlight = mRequestsInFlight.putIfAbsent(key, task);
+        if (inFlight == null) {
+            try {
+                task.run();
+            } finally {
+                mRequestsInFlight.remove(key, task);
+            }
+            inFlight = task;
+        } else {
+            mJoinedCount.incrementAndGet();
+        }
+
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + key);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @return The number of requests in flight.
+     */
+    public int getRequestsInFlightCount() {
+        return mRequestsInFlight.size();
+    }
+
+    /**
+     * @return The number of calls that joined a request in flight instead of issuing their own.
+     */
+    public int getJoinedCount() {
+        return mJoinedCount.get();
+    }
+}
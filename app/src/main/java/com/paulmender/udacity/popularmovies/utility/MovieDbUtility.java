@@ -18,13 +18,20 @@ package com.paulmender.udacity.popularmovies.utility;
 import android.net.Uri;
 
 import com.paulmender.udacity.popularmovies.BuildConfig;
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+import com.paulmender.udacity.popularmovies.data.MovieDbQueryEngine;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Query the MovieDB API on the web.
@@ -43,7 +50,11 @@ public class MovieDbUtility {
     public enum MovieSortOrder {
         MOVIE_SORT_POPULAR,
         MOVIE_SORT_TOP_RATED,
-        MOVIE_SORT_DEFAULT
+        MOVIE_SORT_DEFAULT,
+        // Sorted locally over the movies already fetched (see MovieDbQueryEngine).
+        MOVIE_SORT_NEWEST,
+        MOVIE_SORT_TITLE,
+        MOVIE_SORT_MOST_VOTED
     }
 
     //endregion
@@ -55,6 +66,8 @@ public class MovieDbUtility {
     private static final String sEndPointFind = "/find";
     private static final String sEndPointImage = "image";
     private static final String sEndPointSearch = "/search";
+    private static final String sEndPointSearchMovie = "/search/movie";
+    private static final String sEndPointMovie = "/movie/";
     private static final String sEndPointMoviePopular = "/movie/popular";
     private static final String sEndPointMovieTopRated = "/movie/top_rated";
 
@@ -77,6 +90,32 @@ public class MovieDbUtility {
      */
     private static final String sParamApiKey = "api_key";
     private static final String sParamSortByKey = "sort_by";
+    private static final String sParamPageKey = "page";
+    private static final String sParamQueryKey = "query";
+
+    /** Omits the page parameter; the MovieDB then returns the first page. */
+    private static final int sPageNone = 0;
+
+    /**
+     * HTTP header constants used by the response cache.
+     */
+    private static final String sHeaderCacheControl = "Cache-Control";
+    private static final String sHeaderETag = "ETag";
+    private static final String sHeaderLastModified = "Last-Modified";
+    private static final String sHeaderIfNoneMatch = "If-None-Match";
+    private static final String sHeaderIfModifiedSince = "If-Modified-Since";
+
+    private static final String sCacheControlMaxAge = "max-age=";
+    private static final String sCacheControlNoCache = "no-cache";
+    private static final String sCacheControlNoStore = "no-store";
+
+    /**
+     * Concurrent requests for the same URL share one request and its result.
+     */
+    private static final MovieDbSingleFlight<String> sResponseSingleFlight =
+            new MovieDbSingleFlight<>();
+    private static final MovieDbSingleFlight<MovieDbPage> sMoviePageSingleFlight =
+            new MovieDbSingleFlight<>();
 
     /**
      * The base image URI used in conjunction with the poster path to complete the
@@ -92,6 +131,11 @@ public class MovieDbUtility {
     private static final String sUriImageSize500 = "w500";
     private static final String sUriImageSize780 = "w780";
     private static final String sUriImageSizeOriginal = "original";
+
+    /** The fixed width sizes, narrowest first, and their widths in pixels. */
+    private static final String[] sUriImageSizes = {sUriImageSize92, sUriImageSize154,
+            sUriImageSize185, sUriImageSize342, sUriImageSize500, sUriImageSize780};
+    private static final int[] sImageSizeWidths = {92, 154, 185, 342, 500, 780};
     // endregion
 
     //region Private static methods
@@ -100,10 +144,11 @@ public class MovieDbUtility {
      * Builds the URL used to query the MovieDB.
      * @param endPoint The end point (defined by the END_POINT... constants).
      * @param sortBy The sort order (defined by the SORT_BY... constants).
+     * @param page The page to query, starting at 1, or sPageNone.
      * @return The URL.
      * Example: https://api.themoviedb.org/3/discover/movie?api_key=<<api_key>>&sort_by=popularity.desc
      */
-    private static URL buildMovieUrl(String api_key, String endPoint, String sortBy) {
+    private static URL buildMovieUrl(String api_key, String endPoint, String sortBy, int page) {
 
         String baseUrl = sUriBase + endPoint;
 
@@ -114,9 +159,113 @@ public class MovieDbUtility {
                     .appendQueryParameter(sParamSortByKey, sortBy)
                     .build();
         }
+        if (page != sPageNone) {
+            builtUri = builtUri.buildUpon()
+                    .appendQueryParameter(sParamPageKey, String.valueOf(page))
+                    .build();
+        }
         return getUrl(builtUri);
     }
 
+    /**
+     * Fetch the response body through the response cache. A fresh cached response is returned
+     * without network access; a stale one is revalidated with a conditional request.
+     * @param url The URL to fetch the HTTP response from.
+     * @param cache The response cache.
+     * @return The body of the HTTP response.
+     * @throws IOException Related to network and stream reading
+     */
+    private static byte[] getCachedResponseFromHttpUrl(URL url, final MovieDbResponseCache cache)
+            throws IOException {
+
+        final String key = url.toString();
+        final long now = System.currentTimeMillis();
+
+        final MovieDbResponseCache.Entry cached = cache.get(key);
+        if (cached != null && cached.isFresh(now)) {
+            cache.recordHit();
+            return cached.body;
+        }
+
+        Map<String, String> requestHeaders = new HashMap<>();
+        if (cached != null) {
+            if (cached.eTag != null) {
+                requestHeaders.put(sHeaderIfNoneMatch, cached.eTag);
+            }
+            if (cached.lastModified != null) {
+                requestHeaders.put(sHeaderIfModifiedSince, cached.lastModified);
+            }
+        }
+
+        return MovieDbHttpClient.getInstance().execute(url, requestHeaders,
+                new MovieDbHttpClient.ResponseHandler<byte[]>() {
+            @Override
+            public byte[] handleResponse(HttpURLConnection urlConnection) throws IOException {
+                return readCachedResponse(urlConnection, key, cached, cache, now);
+            }
+        });
+    }
+
+    private static byte[] readCachedResponse(HttpURLConnection urlConnection, String key,
+                                             MovieDbResponseCache.Entry cached,
+                                             MovieDbResponseCache cache, long now)
+            throws IOException {
+
+        int responseCode = urlConnection.getResponseCode();
+        String cacheControl = urlConnection.getHeaderField(sHeaderCacheControl);
+        String eTag = urlConnection.getHeaderField(sHeaderETag);
+        String lastModified = urlConnection.getHeaderField(sHeaderLastModified);
+
+        if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // Still valid; only the freshness (and possibly the validators) changed.
+            cache.recordConditionalHit();
+            cache.put(new MovieDbResponseCache.Entry(key,
+                    eTag != null ? eTag : cached.eTag,
+                    lastModified != null ? lastModified : cached.lastModified,
+                    getExpiresAtMillis(cacheControl, now),
+                    cached.body));
+            return cached.body;
+        }
+
+        byte[] body = MovieDbResponseReader.readBodyBytes(urlConnection.getInputStream(),
+                urlConnection.getContentLength(),
+                urlConnection.getContentEncoding());
+        cache.recordNetwork();
+
+        if (responseCode == HttpURLConnection.HTTP_OK && body.length > 0
+                && (cacheControl == null || !cacheControl.contains(sCacheControlNoStore))) {
+            cache.put(new MovieDbResponseCache.Entry(key, eTag, lastModified,
+                    getExpiresAtMillis(cacheControl, now), body));
+        }
+        return body;
+    }
+
+    /**
+     * Get the time until which a response may be served from the cache without revalidation.
+     * @param cacheControl The Cache-Control header value, or null.
+     * @param now The time the response was received.
+     * @return The expiry time; now if the response must be revalidated before it is reused.
+     */
+    private static long getExpiresAtMillis(String cacheControl, long now) {
+        if (cacheControl == null || cacheControl.contains(sCacheControlNoCache)) {
+            return now;
+        }
+        int index = cacheControl.indexOf(sCacheControlMaxAge);
+        if (index < 0) {
+            return now;
+        }
+        int start = index + sCacheControlMaxAge.length();
+        int end = start;
+        while (end < cacheControl.length() && Character.isDigit(cacheControl.charAt(end))) {
+            end++;
+        }
+        try {
+            return now + Long.parseLong(cacheControl.substring(start, end)) * 1000L;
+        } catch (NumberFormatException e) {
+            return now;
+        }
+    }
+
     private static URL getUrl(android.net.Uri uri){
         URL url = null;
 
@@ -147,6 +296,12 @@ public class MovieDbUtility {
                 movieSortOrder =  MovieSortOrder.MOVIE_SORT_TOP_RATED;
             } else if (sortOrder.equals(String.valueOf(MovieSortOrder.MOVIE_SORT_DEFAULT))){
                 movieSortOrder =  MovieSortOrder.MOVIE_SORT_DEFAULT;
+            } else if (sortOrder.equals(String.valueOf(MovieSortOrder.MOVIE_SORT_NEWEST))){
+                movieSortOrder =  MovieSortOrder.MOVIE_SORT_NEWEST;
+            } else if (sortOrder.equals(String.valueOf(MovieSortOrder.MOVIE_SORT_TITLE))){
+                movieSortOrder =  MovieSortOrder.MOVIE_SORT_TITLE;
+            } else if (sortOrder.equals(String.valueOf(MovieSortOrder.MOVIE_SORT_MOST_VOTED))){
+                movieSortOrder =  MovieSortOrder.MOVIE_SORT_MOST_VOTED;
             } else {
                 movieSortOrder =  MovieSortOrder.MOVIE_SORT_DEFAULT;
             }
@@ -162,6 +317,8 @@ public class MovieDbUtility {
                 movieSortOrder =  String.valueOf(MovieSortOrder.MOVIE_SORT_TOP_RATED);
             } else if (sortOrder == MovieSortOrder.MOVIE_SORT_DEFAULT) {
                 movieSortOrder =  String.valueOf(MovieSortOrder.MOVIE_SORT_DEFAULT);
+            } else if (isLocal(sortOrder)) {
+                movieSortOrder =  String.valueOf(sortOrder);
             } else {
                 // MOVIE_SORT_DEFAULT
                 movieSortOrder =  String.valueOf(MovieSortOrder.MOVIE_SORT_POPULAR);
@@ -188,6 +345,40 @@ public class MovieDbUtility {
             return MovieSortOrder.MOVIE_SORT_DEFAULT;
         }
 
+        /**
+         * @return True if the sort order is sorted locally rather than by a MovieDB endpoint.
+         */
+        public static boolean isLocal(MovieSortOrder sortOrder){
+            return sortOrder == MovieSortOrder.MOVIE_SORT_NEWEST
+                    || sortOrder == MovieSortOrder.MOVIE_SORT_TITLE
+                    || sortOrder == MovieSortOrder.MOVIE_SORT_MOST_VOTED;
+        }
+
+        /**
+         * @param sortOrder A local sort order.
+         * @return The query of the local sort order, or null if the sort order is not local.
+         */
+        public static MovieDbQueryEngine.Query getLocalQuery(MovieSortOrder sortOrder){
+            MovieDbQueryEngine.Query query;
+            if (sortOrder == MovieSortOrder.MOVIE_SORT_NEWEST){
+                query = new MovieDbQueryEngine.Query()
+                        .sortBy(MovieDbQueryEngine.SortKey.RELEASE_YEAR, true)
+                        .sortBy(MovieDbQueryEngine.SortKey.POPULARITY, true);
+            } else if (sortOrder == MovieSortOrder.MOVIE_SORT_TITLE) {
+                query = new MovieDbQueryEngine.Query()
+                        .sortBy(MovieDbQueryEngine.SortKey.TITLE, false)
+                        .sortBy(MovieDbQueryEngine.SortKey.RELEASE_YEAR, true);
+            } else if (sortOrder == MovieSortOrder.MOVIE_SORT_MOST_VOTED) {
+                query = new MovieDbQueryEngine.Query()
+                        .sortBy(MovieDbQueryEngine.SortKey.VOTE_COUNT, true)
+                        .sortBy(MovieDbQueryEngine.SortKey.RATING, true);
+            } else {
+                query = null;
+            }
+
+            return query;
+        }
+
         private static String getEndPoint(MovieSortOrder sortOrder){
             String endPoint;
 
@@ -209,32 +400,198 @@ public class MovieDbUtility {
 
     public static URL getURL(MovieSortOrder sortOrder){
         return buildMovieUrl(sApiKey,MovieSortOrderWrapper.getEndPoint(sortOrder),
-                        MovieSortOrderWrapper.getSortByParameter(sortOrder));
+                        MovieSortOrderWrapper.getSortByParameter(sortOrder), sPageNone);
+    }
+
+    /**
+     * Get the URL of one page of the movies in the sort order.
+     * @param sortOrder The sort order of the movies.
+     * @param page The page, starting at 1.
+     * @return The URL.
+     */
+    public static URL getURL(MovieSortOrder sortOrder, int page){
+        return buildMovieUrl(sApiKey,MovieSortOrderWrapper.getEndPoint(sortOrder),
+                MovieSortOrderWrapper.getSortByParameter(sortOrder), page);
+    }
+
+    /**
+     * Get the URL of the details of a movie.
+     * Example: https://api.themoviedb.org/3/movie/550?api_key=<<api_key>>
+     * @param movieId The MovieDB id of the movie.
+     * @return The URL.
+     */
+    public static URL getMovieURL(int movieId){
+        return buildMovieUrl(sApiKey, sEndPointMovie + movieId, sSortByNone, sPageNone);
+    }
+
+    /**
+     * Get the URL of the first page of the movies whose titles match the query.
+     * Example: https://api.themoviedb.org/3/search/movie?api_key=<<api_key>>&query=star
+     * @param query The query, as typed.
+     * @return The URL.
+     */
+    public static URL getSearchURL(String query){
+        Uri builtUri = android.net.Uri.parse(sUriBase + sEndPointSearchMovie).buildUpon()
+                .appendQueryParameter(sParamApiKey, sApiKey)
+                .appendQueryParameter(sParamQueryKey, query)
+                .build();
+        return getUrl(builtUri);
     }
 
     /**
      * This method returns the entire result from the HTTP response.
+     * When a response cache is installed the response may be served from the cache instead.
+     * Concurrent calls for the same URL share a single request.
      *
      * @param url The URL to fetch the HTTP response from.
      * @return The contents of the HTTP response.
      * @throws IOException Related to network and stream reading
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+    public static String getResponseFromHttpUrl(final URL url) throws IOException {
+        return sResponseSingleFlight.execute(url.toString(), new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return fetchResponseFromHttpUrl(url);
+            }
+        });
+    }
+
+    /**
+     * @return The coalescer of the getResponseFromHttpUrl requests, observed by the tests.
+     */
+    static MovieDbSingleFlight<String> getResponseSingleFlight() {
+        return sResponseSingleFlight;
+    }
+
+    private static String fetchResponseFromHttpUrl(URL url) throws IOException {
+        long fetchStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.FETCH);
         try {
-            InputStream in = urlConnection.getInputStream();
+            MovieDbResponseCache cache = MovieDbResponseCache.getInstalled();
+            if (cache != null) {
+                return MovieDbResponseReader.decode(getCachedResponseFromHttpUrl(url, cache));
+            }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+            return MovieDbHttpClient.getInstance().execute(url,
+                    new MovieDbHttpClient.ResponseHandler<String>() {
+                @Override
+                public String handleResponse(HttpURLConnection urlConnection) throws IOException {
+                    return MovieDbResponseReader.readResponse(urlConnection);
+                }
+            });
+        } finally {
+            MovieDbMetrics.end(MovieDbMetrics.Stage.FETCH, fetchStart);
+        }
+    }
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                return null;
+    /**
+     * This method parses the movies from the HTTP response as it is read from the network,
+     * without buffering the entire response. When a response cache is installed the response
+     * may be served from the cache instead.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return The movies contained in the HTTP response.
+     * @throws IOException Related to network, stream reading and JSON parsing.
+     */
+    public static List<MovieParcelable> getMoviesFromHttpUrl(URL url) throws IOException {
+        return getMoviePageFromHttpUrl(url).movies;
+    }
+
+    /**
+     * This method parses one page of movies, with its paging attributes, from the HTTP
+     * response as it is read from the network. When a response cache is installed the response
+     * may be served from the cache instead. Concurrent calls for the same URL share a single
+     * request and the returned page, which must not be modified.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return The page of movies contained in the HTTP response.
+     * @throws IOException Related to network, stream reading and JSON parsing.
+     */
+    public static MovieDbPage getMoviePageFromHttpUrl(final URL url) throws IOException {
+        return sMoviePageSingleFlight.execute(url.toString(), new Callable<MovieDbPage>() {
+            @Override
+            public MovieDbPage call() throws IOException {
+                return fetchMoviePageFromHttpUrl(url);
             }
+        });
+    }
+
+    /**
+     * This method parses the details of one movie, e.g. from getMovieURL, as the response is
+     * read from the network. When a response cache is installed the response may be served
+     * from the cache instead. Concurrent calls for the same URL, e.g. for the movie and for its
+     * overview, share a single request and the returned page, which must not be modified.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return A page with the movie and its overview.
+     * @throws IOException Related to network, stream reading and JSON parsing.
+     */
+    public static MovieDbPage getMovieFromHttpUrl(final URL url) throws IOException {
+        // The movie URLs differ from the list URLs, so the list coalescer is shared.
+        return sMoviePageSingleFlight.execute(url.toString(), new Callable<MovieDbPage>() {
+            @Override
+            public MovieDbPage call() throws IOException {
+                return fetchMoviePageFromHttpUrl(url, true);
+            }
+        });
+    }
+
+    private static MovieDbPage fetchMoviePageFromHttpUrl(URL url) throws IOException {
+        return fetchMoviePageFromHttpUrl(url, false);
+    }
+
+    /**
+     * @param singleMovie True if the response is the details of one movie, rather than a list.
+     */
+    private static MovieDbPage fetchMoviePageFromHttpUrl(URL url, final boolean singleMovie)
+            throws IOException {
+        MovieDbResponseCache cache = MovieDbResponseCache.getInstalled();
+        if (cache != null) {
+            // The body is kept for the cache, but still no String or JSONObject is built.
+            byte[] body;
+            long fetchStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.FETCH);
+            try {
+                body = getCachedResponseFromHttpUrl(url, cache);
+            } finally {
+                MovieDbMetrics.end(MovieDbMetrics.Stage.FETCH, fetchStart);
+            }
+            return parseMoviePage(new ByteArrayInputStream(body), singleMovie);
+        }
+
+        // The body is read as it is parsed, so the fetch ends with the response headers.
+        final long fetchStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.FETCH);
+        final boolean[] fetchEnded = { false };
+        try {
+            return MovieDbHttpClient.getInstance().execute(url,
+                    new MovieDbHttpClient.ResponseHandler<MovieDbPage>() {
+                @Override
+                public MovieDbPage handleResponse(HttpURLConnection urlConnection)
+                        throws IOException {
+                    InputStream in;
+                    try {
+                        in = MovieDbResponseReader.getInputStream(urlConnection);
+                    } finally {
+                        fetchEnded[0] = true;
+                        MovieDbMetrics.end(MovieDbMetrics.Stage.FETCH, fetchStart);
+                    }
+
+                    return parseMoviePage(in, singleMovie);
+                }
+            });
+        } finally {
+            if (!fetchEnded[0]) {
+                MovieDbMetrics.end(MovieDbMetrics.Stage.FETCH, fetchStart);
+            }
+        }
+    }
+
+    private static MovieDbPage parseMoviePage(InputStream in, boolean singleMovie)
+            throws IOException {
+        long parseStart = MovieDbMetrics.begin(MovieDbMetrics.Stage.PARSE);
+        try {
+            return singleMovie ? MovieDbJsonUtility.getMovieFromJsonStream(in)
+                    : MovieDbJsonUtility.getMovieDbPageFromJsonStream(in);
         } finally {
-            urlConnection.disconnect();
+            MovieDbMetrics.end(MovieDbMetrics.Stage.PARSE, parseStart);
         }
     }
 
@@ -249,6 +606,31 @@ public class MovieDbUtility {
         return sWebProtocol + sUriImageAuthority + sUriImageSize185 + imagePath;
     }
 
+    /**
+     * Builds the URI of the smallest poster image covering the width of the view.
+     * @param imagePath The Movie's image path.
+     * @param widthPixels The width of the view in (physical) pixels, or 0 if not yet known.
+     */
+    public static String getImageUrlString(String imagePath, int widthPixels) {
+        if (widthPixels <= 0) {
+            return getImageUrlString(imagePath);
+        }
+        return sWebProtocol + sUriImageAuthority + getImageSize(widthPixels) + imagePath;
+    }
+
+    /**
+     * @param widthPixels The width of the view in (physical) pixels.
+     * @return The smallest image size at least as wide as the view, or the original size.
+     */
+    public static String getImageSize(int widthPixels) {
+        for (int i = 0; i < sImageSizeWidths.length; i++) {
+            if (sImageSizeWidths[i] >= widthPixels) {
+                return sUriImageSizes[i];
+            }
+        }
+        return sUriImageSizeOriginal;
+    }
+
     // /endregion Public static methods
 }
 
@@ -0,0 +1,66 @@
+package com.paulmender.common.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    private static final long sMillis = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void empty_reportsZero() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentiles_withinBucketPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..100 ms.
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * sMillis);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100 * sMillis, histogram.getMaxNanos());
+        assertEquals(50 * sMillis + sMillis / 2, histogram.getMeanNanos());
+
+        assertWithinBucket(50 * sMillis, histogram.getPercentileNanos(50));
+        assertWithinBucket(95 * sMillis, histogram.getPercentileNanos(95));
+        assertWithinBucket(99 * sMillis, histogram.getPercentileNanos(99));
+        // Never above the maximum.
+        assertEquals(100 * sMillis, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    public void outOfRange_isCounted() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+        assertEquals(2, histogram.getCount());
+        // The first bucket holds latencies up to 1 microsecond.
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), histogram.getPercentileNanos(50));
+        assertEquals(TimeUnit.HOURS.toNanos(1), histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void reset_clears() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(sMillis);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    private static void assertWithinBucket(long expectedNanos, long actualNanos) {
+        assertTrue(actualNanos + " < " + expectedNanos, actualNanos >= expectedNanos);
+        assertTrue(actualNanos + " > " + expectedNanos, actualNanos <= expectedNanos * 1.19 + 1);
+    }
+}
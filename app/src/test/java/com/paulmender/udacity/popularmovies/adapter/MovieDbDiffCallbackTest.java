@@ -0,0 +1,63 @@
+package com.paulmender.udacity.popularmovies.adapter;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the movie identity and content of the MovieDbDiffCallback.
+ */
+public class MovieDbDiffCallbackTest {
+
+    private static MovieParcelable newMovie(int movieId, String title, String posterPath) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = movieId;
+        movie.title = title;
+        movie.posterPath = posterPath;
+        return movie;
+    }
+
+    @Test
+    public void listSizes() throws Exception {
+        MovieDbDiffCallback callback = new MovieDbDiffCallback(
+                Arrays.asList(newMovie(1, "A", "/a.jpg"), newMovie(2, "B", "/b.jpg")),
+                Collections.singletonList(newMovie(1, "A", "/a.jpg")));
+
+        assertEquals(2, callback.getOldListSize());
+        assertEquals(1, callback.getNewListSize());
+    }
+
+    @Test
+    public void areItemsTheSame_byMovieId() throws Exception {
+        MovieDbDiffCallback callback = new MovieDbDiffCallback(
+                Arrays.asList(newMovie(1, "A", "/a.jpg"), newMovie(2, "B", "/b.jpg")),
+                Arrays.asList(newMovie(2, "Renamed", "/other.jpg"), newMovie(3, "B", "/b.jpg")));
+
+        // The same movie with other fields.
+        assertTrue(callback.areItemsTheSame(1, 0));
+        // Other movies with the same title and poster.
+        assertFalse(callback.areItemsTheSame(1, 1));
+        assertFalse(callback.areItemsTheSame(0, 0));
+    }
+
+    @Test
+    public void areContentsTheSame_byPosterPath() throws Exception {
+        MovieDbDiffCallback callback = new MovieDbDiffCallback(
+                Arrays.asList(newMovie(1, "A", "/a.jpg"), newMovie(2, "B", null),
+                        newMovie(3, "C", "/c.jpg")),
+                Arrays.asList(newMovie(1, "Renamed", "/a.jpg"), newMovie(2, "B", null),
+                        newMovie(3, "C", "/new.jpg"), newMovie(4, "D", null)));
+
+        // Only the poster is displayed, the title is not.
+        assertTrue(callback.areContentsTheSame(0, 0));
+        assertTrue(callback.areContentsTheSame(1, 1));
+        assertFalse(callback.areContentsTheSame(2, 2));
+        assertFalse(callback.areContentsTheSame(0, 3));
+        assertFalse(callback.areContentsTheSame(1, 2));
+    }
+}
@@ -0,0 +1,220 @@
+package com.paulmender.udacity.popularmovies.adapter;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbListDiffer, with the differences computed when the test runs
+ * the diff executor and delivered directly.
+ */
+public class MovieDbListDifferTest {
+
+    /** The differences waiting to be computed. */
+    private final List<Runnable> mPendingDiffs = new ArrayList<>();
+
+    /** The size of the list as notified to the callback, as the RecyclerView tracks it. */
+    private int mNotifiedSize;
+
+    private int mReplacedCount;
+
+    private final List<String> mInsertions = new ArrayList<>();
+
+    private MovieDbListDiffer mDiffer;
+
+    @Before
+    public void setUp() {
+        Executor diffExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mPendingDiffs.add(command);
+            }
+        };
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        mDiffer = new MovieDbListDiffer(new MovieDbListDiffer.Callback() {
+            @Override
+            public void onListReplaced() {
+                mReplacedCount++;
+                List<MovieParcelable> movieList = mDiffer.getMovieList();
+                mNotifiedSize = movieList == null ? 0 : movieList.size();
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                assertTrue(position <= mNotifiedSize);
+                mNotifiedSize += count;
+                mInsertions.add(position + "+" + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                assertTrue(position + count <= mNotifiedSize);
+                mNotifiedSize -= count;
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                assertTrue(fromPosition < mNotifiedSize && toPosition < mNotifiedSize);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                assertTrue(position + count <= mNotifiedSize);
+            }
+        }, diffExecutor, directExecutor);
+    }
+
+    private void runPendingDiffs() {
+        List<Runnable> diffs = new ArrayList<>(mPendingDiffs);
+        mPendingDiffs.clear();
+        for (Runnable diff : diffs) {
+            diff.run();
+        }
+    }
+
+    private static List<MovieParcelable> newMovies(int firstMovieId, int count) {
+        List<MovieParcelable> movies = new ArrayList<>();
+        for (int movieId = firstMovieId; movieId < firstMovieId + count; movieId++) {
+            MovieParcelable movie = new MovieParcelable();
+            movie.movieId = movieId;
+            movie.posterPath = "/" + movieId + ".jpg";
+            movies.add(movie);
+        }
+        return movies;
+    }
+
+    private void assertMovieIds(int firstMovieId, int count, List<MovieParcelable> movies,
+                                int offset) {
+        for (int index = 0; index < count; index++) {
+            assertEquals(firstMovieId + index, movies.get(offset + index).movieId);
+        }
+    }
+
+    @Test
+    public void setMovieList_firstListIsNotDiffed() throws Exception {
+        List<MovieParcelable> movies = newMovies(1, 20);
+
+        mDiffer.setMovieList(movies);
+
+        assertTrue(mPendingDiffs.isEmpty());
+        assertEquals(1, mReplacedCount);
+        assertSame(movies, mDiffer.getMovieList());
+        assertEquals(20, mNotifiedSize);
+    }
+
+    @Test
+    public void setMovieList_newListIsDispatchedOnceDiffed() throws Exception {
+        mDiffer.setMovieList(newMovies(1, 20));
+
+        mDiffer.setMovieList(newMovies(11, 20));
+        // The displayed movies are kept until the difference is dispatched.
+        assertEquals(1, mDiffer.getMovieList().get(0).movieId);
+        assertEquals(1, mPendingDiffs.size());
+
+        runPendingDiffs();
+        assertEquals(1, mReplacedCount);
+        assertEquals(20, mDiffer.getMovieList().size());
+        assertMovieIds(11, 20, mDiffer.getMovieList(), 0);
+        assertEquals(20, mNotifiedSize);
+    }
+
+    @Test
+    public void setMovieList_supersededListIsDropped() throws Exception {
+        mDiffer.setMovieList(newMovies(1, 20));
+
+        mDiffer.setMovieList(newMovies(101, 20));
+        mDiffer.setMovieList(newMovies(201, 15));
+        assertEquals(2, mPendingDiffs.size());
+
+        runPendingDiffs();
+        // The difference to the first new list is discarded, not dispatched.
+        assertEquals(15, mDiffer.getMovieList().size());
+        assertMovieIds(201, 15, mDiffer.getMovieList(), 0);
+        assertEquals(15, mNotifiedSize);
+    }
+
+    @Test
+    public void setMovieList_emptyListSupersedesPendingDiff() throws Exception {
+        mDiffer.setMovieList(newMovies(1, 20));
+        mDiffer.setMovieList(newMovies(101, 20));
+
+        mDiffer.setMovieList(new ArrayList<MovieParcelable>());
+        runPendingDiffs();
+
+        assertTrue(mDiffer.getMovieList().isEmpty());
+        assertEquals(0, mNotifiedSize);
+    }
+
+    @Test
+    public void appendMovieList_whileDiffPendingIsAfterNewList() throws Exception {
+        mDiffer.setMovieList(newMovies(1, 20));
+        mDiffer.setMovieList(newMovies(101, 20));
+
+        mDiffer.appendMovieList(newMovies(121, 20));
+        mDiffer.appendMovieList(newMovies(141, 20));
+        // Not appended to the displayed list that is being replaced.
+        assertEquals(20, mDiffer.getMovieList().size());
+        assertEquals(1, mDiffer.getMovieList().get(0).movieId);
+
+        runPendingDiffs();
+        assertEquals(60, mDiffer.getMovieList().size());
+        assertMovieIds(101, 60, mDiffer.getMovieList(), 0);
+        assertEquals(60, mNotifiedSize);
+        // One insertion of the appended pages after the new list.
+        assertEquals("20+40", mInsertions.get(mInsertions.size() - 1));
+    }
+
+    @Test
+    public void appendMovieList_ofSupersededListIsDropped() throws Exception {
+        mDiffer.setMovieList(newMovies(1, 20));
+        mDiffer.setMovieList(newMovies(101, 20));
+        mDiffer.appendMovieList(newMovies(121, 20));
+
+        mDiffer.setMovieList(newMovies(201, 20));
+        runPendingDiffs();
+
+        assertEquals(20, mDiffer.getMovieList().size());
+        assertMovieIds(201, 20, mDiffer.getMovieList(), 0);
+        assertEquals(20, mNotifiedSize);
+    }
+
+    @Test
+    public void appendMovieList_copiesTheListSet() throws Exception {
+        List<MovieParcelable> movies = newMovies(1, 20);
+        mDiffer.setMovieList(movies);
+
+        mDiffer.appendMovieList(newMovies(21, 20));
+        mDiffer.appendMovieList(newMovies(41, 20));
+
+        // The list set, e.g. of the list cache, is not modified.
+        assertEquals(20, movies.size());
+        assertEquals(60, mDiffer.getMovieList().size());
+        assertMovieIds(1, 60, mDiffer.getMovieList(), 0);
+        assertEquals("20+20", mInsertions.get(0));
+        assertEquals("40+20", mInsertions.get(1));
+        assertEquals(60, mNotifiedSize);
+    }
+
+    @Test
+    public void appendMovieList_withoutListSetsIt() throws Exception {
+        List<MovieParcelable> movies = newMovies(1, 20);
+
+        mDiffer.appendMovieList(movies);
+
+        assertSame(movies, mDiffer.getMovieList());
+        assertEquals(1, mReplacedCount);
+        assertEquals(20, mNotifiedSize);
+    }
+}
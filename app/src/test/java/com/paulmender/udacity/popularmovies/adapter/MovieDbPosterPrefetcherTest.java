@@ -0,0 +1,40 @@
+package com.paulmender.udacity.popularmovies.adapter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the prefetch window of the MovieDbPosterPrefetcher.
+ */
+public class MovieDbPosterPrefetcherTest {
+
+    @Test
+    public void prefetchWindow_scrollingDownIsAfterLastVisible() throws Exception {
+        // 3 rows of 4 columns after positions 8..19.
+        int[] window = MovieDbPosterPrefetcher.getPrefetchWindow(1, 8, 19, 12, 24, 100);
+        assertArrayEquals(new int[]{20, 31}, window);
+    }
+
+    @Test
+    public void prefetchWindow_scrollingUpIsBeforeFirstVisible() throws Exception {
+        int[] window = MovieDbPosterPrefetcher.getPrefetchWindow(-1, 40, 51, 12, 24, 100);
+        assertArrayEquals(new int[]{39, 28}, window);
+    }
+
+    @Test
+    public void prefetchWindow_isBoundedByMaxAndList() throws Exception {
+        assertArrayEquals(new int[]{20, 25},
+                MovieDbPosterPrefetcher.getPrefetchWindow(1, 8, 19, 12, 6, 100));
+        assertArrayEquals(new int[]{20, 21},
+                MovieDbPosterPrefetcher.getPrefetchWindow(1, 8, 19, 12, 24, 22));
+        assertArrayEquals(new int[]{3, 0},
+                MovieDbPosterPrefetcher.getPrefetchWindow(-1, 4, 15, 12, 24, 100));
+    }
+
+    @Test
+    public void prefetchWindow_nothingAheadIsNull() throws Exception {
+        assertNull(MovieDbPosterPrefetcher.getPrefetchWindow(1, 8, 19, 12, 24, 20));
+        assertNull(MovieDbPosterPrefetcher.getPrefetchWindow(-1, 0, 11, 12, 24, 100));
+    }
+}
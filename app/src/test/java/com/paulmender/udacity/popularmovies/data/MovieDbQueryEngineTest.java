@@ -0,0 +1,158 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbQueryEngine against sorting and filtering the movie list.
+ */
+public class MovieDbQueryEngineTest {
+
+    private static MovieParcelable createMovie(int movieId, String title, int releaseDate,
+                                               float voteAverage, int voteCount) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = movieId;
+        movie.title = title;
+        movie.releaseDate = releaseDate;
+        movie.voteAverage = voteAverage;
+        movie.voteCount = voteCount;
+        movie.popularity = movieId;
+        return movie;
+    }
+
+    /** Movies with many ties on each key. */
+    private static List<MovieParcelable> createMovies(int count) {
+        Random random = new Random(17);
+        List<MovieParcelable> movies = new ArrayList<>(count);
+        for (int movieId = 1; movieId <= count; movieId++) {
+            movies.add(createMovie(movieId, "Movie " + random.nextInt(count / 4 + 1),
+                    (1990 + random.nextInt(30)) * 10000 + 101,
+                    random.nextInt(21) / 2f, random.nextInt(50)));
+        }
+        return movies;
+    }
+
+    private static List<Integer> getMovieIds(List<MovieParcelable> movies) {
+        List<Integer> movieIds = new ArrayList<>(movies.size());
+        for (MovieParcelable movie : movies) {
+            movieIds.add(movie.movieId);
+        }
+        return movieIds;
+    }
+
+    /** Rating descending, then release year descending, then vote count ascending. */
+    private static final Comparator<MovieParcelable> sReferenceOrder =
+            new Comparator<MovieParcelable>() {
+        @Override
+        public int compare(MovieParcelable left, MovieParcelable right) {
+            int comparison = Float.compare(right.voteAverage, left.voteAverage);
+            if (comparison == 0) {
+                comparison = right.getReleaseYear() - left.getReleaseYear();
+            }
+            if (comparison == 0) {
+                comparison = left.voteCount - right.voteCount;
+            }
+            return comparison;
+        }
+    };
+
+    private static MovieDbQueryEngine.Query createReferenceQuery() {
+        return new MovieDbQueryEngine.Query()
+                .sortBy(MovieDbQueryEngine.SortKey.RATING, true)
+                .sortBy(MovieDbQueryEngine.SortKey.RELEASE_YEAR, true)
+                .sortBy(MovieDbQueryEngine.SortKey.VOTE_COUNT, false);
+    }
+
+    /** Compare only the sort keys; movies tied on all keys may be in any order. */
+    private static void assertOrdered(List<MovieParcelable> expected,
+                                      List<MovieParcelable> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(0, sReferenceOrder.compare(expected.get(i), actual.get(i)));
+        }
+    }
+
+    @Test
+    public void query_multiKeySort() throws Exception {
+        List<MovieParcelable> movies = createMovies(2000);
+        MovieDbQueryEngine engine = new MovieDbQueryEngine(movies);
+
+        List<MovieParcelable> expected = new ArrayList<>(movies);
+        Collections.sort(expected, sReferenceOrder);
+
+        assertOrdered(expected, engine.query(createReferenceQuery()));
+    }
+
+    @Test
+    public void query_rangeFilters() throws Exception {
+        List<MovieParcelable> movies = createMovies(2000);
+        MovieDbQueryEngine engine = new MovieDbQueryEngine(movies);
+
+        List<MovieParcelable> expected = new ArrayList<>();
+        for (MovieParcelable movie : movies) {
+            if (movie.voteAverage >= 7f && movie.getReleaseYear() >= 2000
+                    && movie.getReleaseYear() <= 2009 && movie.voteCount >= 10) {
+                expected.add(movie);
+            }
+        }
+        Collections.sort(expected, sReferenceOrder);
+
+        List<MovieParcelable> actual = engine.query(createReferenceQuery()
+                .filterRating(7f, 10f)
+                .filterReleaseYear(2000, 2009)
+                .filterVoteCount(10, Integer.MAX_VALUE));
+        assertFalse(actual.isEmpty());
+        assertOrdered(expected, actual);
+    }
+
+    @Test
+    public void query_topKIsPrefixOfFullSort() throws Exception {
+        List<MovieParcelable> movies = createMovies(2000);
+        MovieDbQueryEngine engine = new MovieDbQueryEngine(movies);
+
+        List<MovieParcelable> expected = new ArrayList<>(movies);
+        Collections.sort(expected, sReferenceOrder);
+
+        for (int limit : new int[] { 0, 1, 7, 20, 1999, 5000 }) {
+            List<MovieParcelable> actual = engine.query(createReferenceQuery().limit(limit));
+            assertOrdered(expected.subList(0, Math.min(limit, expected.size())), actual);
+        }
+    }
+
+    @Test
+    public void query_titleSortIgnoresCase() throws Exception {
+        MovieDbQueryEngine engine = new MovieDbQueryEngine(Arrays.asList(
+                createMovie(1, "beta", 20170101, 5f, 1),
+                createMovie(2, "Alpha", 20160101, 5f, 1),
+                createMovie(3, null, 20150101, 5f, 1),
+                createMovie(4, "Gamma", 20140101, 5f, 1)));
+
+        List<MovieParcelable> movies = engine.query(new MovieDbQueryEngine.Query()
+                .sortBy(MovieDbQueryEngine.SortKey.TITLE, false));
+
+        assertEquals(Arrays.asList(3, 2, 1, 4), getMovieIds(movies));
+    }
+
+    @Test
+    public void query_withoutSortKeepsOrderAndDedupes() throws Exception {
+        MovieDbQueryEngine engine = new MovieDbQueryEngine(Arrays.asList(
+                createMovie(3, "C", 20170101, 8f, 1),
+                createMovie(1, "A", 20160101, 6f, 1),
+                createMovie(3, "C again", 20170101, 8f, 1),
+                createMovie(2, "B", 20150101, 9f, 1)));
+
+        assertEquals(3, engine.size());
+        assertEquals(Arrays.asList(3, 2), getMovieIds(engine.query(
+                new MovieDbQueryEngine.Query().filterRating(7f, 10f))));
+    }
+}
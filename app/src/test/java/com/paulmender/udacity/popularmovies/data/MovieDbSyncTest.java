@@ -0,0 +1,221 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.utility.MovieDbFanOutFetcher;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbSync with a fake clock and a stub MovieDB page source.
+ */
+public class MovieDbSyncTest {
+
+    private static final long sHourMillis = 60 * 60 * 1000;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(6);
+
+    private volatile boolean mServerFailing;
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    private long mNowMillis = 1000 * sHourMillis;
+
+    private final List<String> mSavedPages = new ArrayList<>();
+
+    private final List<String> mPrefetchedPosters = new ArrayList<>();
+
+    private int mSavedStateCount;
+
+    /** Stops the sync, as onStopJob does, once a page is stored. */
+    private boolean mStopAfterSave;
+
+    private final MovieDbSync.Clock mClock = new MovieDbSync.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    };
+
+    private final MovieDbSync.Host mHost = new MovieDbSync.Host() {
+        @Override
+        public URL getPageUrl(MovieSortOrder sortOrder, int page) {
+            try {
+                return new URL("https://api.themoviedb.org/3/"
+                        + MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder)
+                        + "?page=" + page);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void saveMoviePage(MovieSortOrder sortOrder, MovieDbPage moviePage,
+                                  long nowMillis) {
+            assertEquals(mNowMillis, nowMillis);
+            mSavedPages.add(MovieDbUtility.MovieSortOrderWrapper.getString(sortOrder)
+                    + '/' + moviePage.page);
+            if (mStopAfterSave) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void prefetchPosters(List<String> posterPaths) {
+            mPrefetchedPosters.addAll(posterPaths);
+        }
+
+        @Override
+        public void saveState(long lastSuccessMillis, int failureCount,
+                              long nextAttemptMillis) {
+            mSavedStateCount++;
+        }
+    };
+
+    /**
+     * Serves 20 movies for each page, or fails the pages after the first while the server is
+     * failing, as the MovieDB does when it is unavailable.
+     */
+    private final MovieDbFanOutFetcher.PageSource mPageSource =
+            new MovieDbFanOutFetcher.PageSource() {
+        @Override
+        public MovieDbPage fetch(URL url) throws IOException {
+            mRequestCount.incrementAndGet();
+            int page = Integer.parseInt(url.getQuery().replaceAll(".*page=", ""));
+            if (mServerFailing && page > 1) {
+                throw new IOException("503 Service Unavailable");
+            }
+            MovieDbPage moviePage = new MovieDbPage();
+            moviePage.page = page;
+            moviePage.totalPages = 10;
+            moviePage.totalResults = 200;
+            for (int index = 0; index < 20; index++) {
+                MovieParcelable movie = new MovieParcelable();
+                movie.movieId = 100 * page + index;
+                movie.title = "Movie " + movie.movieId;
+                movie.posterPath = "/" + movie.movieId + ".jpg";
+                moviePage.movies.add(movie);
+            }
+            return moviePage;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private MovieDbSync createSync(long lastSuccessMillis, int failureCount,
+                                   long nextAttemptMillis) {
+        MovieDbFanOutFetcher fetcher = new MovieDbFanOutFetcher(mExecutor, 6, mPageSource);
+        return new MovieDbSync(fetcher, mHost, mClock,
+                lastSuccessMillis, failureCount, nextAttemptMillis);
+    }
+
+    @Test
+    public void sync_storesAllListsInOneWakeUp() throws Exception {
+        MovieDbSync sync = createSync(0, 0, 0);
+
+        assertEquals(MovieDbSync.Outcome.SYNCED, sync.sync());
+
+        assertEquals(6, mRequestCount.get());
+        assertEquals(6, mSavedPages.size());
+        assertTrue(mSavedPages.contains(MovieDbUtility.MovieSortOrderWrapper
+                .getString(MovieSortOrder.MOVIE_SORT_TOP_RATED) + "/3"));
+        // The first posters of the first page of each list.
+        assertEquals(24, mPrefetchedPosters.size());
+        assertEquals("/100.jpg", mPrefetchedPosters.get(0));
+        assertEquals(mNowMillis, sync.getLastSuccessMillis());
+        assertEquals(1, mSavedStateCount);
+    }
+
+    @Test
+    public void sync_skippedShortlyAfterSuccess() throws Exception {
+        MovieDbSync sync = createSync(0, 0, 0);
+        assertEquals(MovieDbSync.Outcome.SYNCED, sync.sync());
+
+        mNowMillis += sHourMillis / 2;
+        assertEquals(MovieDbSync.Outcome.SKIPPED, sync.sync());
+        assertEquals(6, mRequestCount.get());
+
+        mNowMillis += sHourMillis;
+        assertEquals(MovieDbSync.Outcome.SYNCED, sync.sync());
+        assertEquals(12, mRequestCount.get());
+    }
+
+    @Test
+    public void sync_backsOffAfterFailures() throws Exception {
+        mServerFailing = true;
+        MovieDbSync sync = createSync(0, 0, 0);
+
+        assertEquals(MovieDbSync.Outcome.FAILED, sync.sync());
+        // The pages fetched are stored nevertheless.
+        assertEquals(2, mSavedPages.size());
+        assertEquals(1, sync.getFailureCount());
+        assertEquals(mNowMillis + sHourMillis / 2, sync.getNextAttemptMillis());
+
+        mNowMillis += sHourMillis / 4;
+        assertEquals(MovieDbSync.Outcome.SKIPPED, sync.sync());
+
+        mNowMillis += sHourMillis / 4;
+        assertEquals(MovieDbSync.Outcome.FAILED, sync.sync());
+        assertEquals(mNowMillis + sHourMillis, sync.getNextAttemptMillis());
+
+        mServerFailing = false;
+        mNowMillis += sHourMillis;
+        assertEquals(MovieDbSync.Outcome.SYNCED, sync.sync());
+        assertEquals(0, sync.getFailureCount());
+        assertEquals(0, sync.getNextAttemptMillis());
+    }
+
+    @Test
+    public void sync_stoppedBeforePrefetch() throws Exception {
+        mStopAfterSave = true;
+        MovieDbSync sync = createSync(0, 0, 0);
+
+        try {
+            sync.sync();
+            fail("The stopped sync completed");
+        } catch (InterruptedIOException e) {
+            // Expected.
+        } finally {
+            Thread.interrupted();
+        }
+        // The pages fetched are stored, but no posters are fetched and the state is unchanged.
+        assertEquals(6, mSavedPages.size());
+        assertTrue(mPrefetchedPosters.isEmpty());
+        assertEquals(0, mSavedStateCount);
+        assertEquals(0, sync.getLastSuccessMillis());
+    }
+
+    @Test
+    public void sync_restoresBackoffState() throws Exception {
+        MovieDbSync sync = createSync(0, 2, mNowMillis + sHourMillis);
+
+        assertEquals(MovieDbSync.Outcome.SKIPPED, sync.sync());
+        assertEquals(0, mRequestCount.get());
+    }
+
+    @Test
+    public void getBackoffMillis_doublesUpToADay() throws Exception {
+        assertEquals(sHourMillis / 2, MovieDbSync.getBackoffMillis(1));
+        assertEquals(sHourMillis, MovieDbSync.getBackoffMillis(2));
+        assertEquals(16 * sHourMillis, MovieDbSync.getBackoffMillis(6));
+        assertEquals(24 * sHourMillis, MovieDbSync.getBackoffMillis(7));
+        assertEquals(24 * sHourMillis, MovieDbSync.getBackoffMillis(100));
+    }
+}
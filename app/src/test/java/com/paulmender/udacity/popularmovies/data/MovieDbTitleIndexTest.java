@@ -0,0 +1,125 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbTitleIndex against searching the movie titles.
+ */
+public class MovieDbTitleIndexTest {
+
+    private static MovieParcelable createMovie(int movieId, String title, double popularity) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = movieId;
+        movie.title = title;
+        movie.popularity = popularity;
+        return movie;
+    }
+
+    private static List<Integer> search(MovieDbTitleIndex titleIndex, String query) {
+        List<Integer> movieIds = new ArrayList<>();
+        for (MovieParcelable movie : titleIndex.search(query, 10)) {
+            movieIds.add(movie.movieId);
+        }
+        return movieIds;
+    }
+
+    @Test
+    public void normalize_foldsCaseAccentsAndPunctuation() {
+        assertEquals("amelie", MovieDbTitleIndex.normalize("Amélie"));
+        assertEquals("wall e", MovieDbTitleIndex.normalize("  WALL·E!"));
+        assertEquals("star wars episode iv", MovieDbTitleIndex.normalize("Star Wars: Episode IV"));
+        assertEquals("", MovieDbTitleIndex.normalize("?!"));
+        assertEquals("", MovieDbTitleIndex.normalize(null));
+    }
+
+    @Test
+    public void search_ranksTitlePrefixThenWordPrefixThenSubstring() {
+        MovieDbTitleIndex titleIndex = new MovieDbTitleIndex();
+        titleIndex.addAll(Arrays.asList(
+                createMovie(1, "Superstar", 90),
+                createMovie(2, "A Star Is Born", 50),
+                createMovie(3, "Star Trek", 10),
+                createMovie(4, "Starship Troopers", 20),
+                createMovie(5, "Mustang", 99)));
+
+        assertEquals(Arrays.asList(4, 3, 2, 1), search(titleIndex, "star"));
+        assertEquals(Arrays.asList(4, 3, 2, 1), search(titleIndex, "STAR"));
+        assertEquals(Arrays.asList(3), search(titleIndex, "star tr"));
+        assertEquals(Arrays.asList(5), search(titleIndex, "musta"));
+        assertTrue(search(titleIndex, "starz").isEmpty());
+        assertTrue(search(titleIndex, " : ").isEmpty());
+    }
+
+    @Test
+    public void search_shortQuery_matchesWordPrefixesOnly() {
+        MovieDbTitleIndex titleIndex = new MovieDbTitleIndex();
+        titleIndex.addAll(Arrays.asList(
+                createMovie(1, "Up", 10),
+                createMovie(2, "Cup Final", 20),
+                createMovie(3, "Grown Ups", 30)));
+
+        assertEquals(Arrays.asList(1, 3), search(titleIndex, "up"));
+        assertEquals(Arrays.asList(1, 3), search(titleIndex, "u"));
+        assertEquals(Arrays.asList(2), search(titleIndex, "f"));
+    }
+
+    @Test
+    public void add_sameMovieId_replacesMovie() {
+        MovieDbTitleIndex titleIndex = new MovieDbTitleIndex();
+        titleIndex.add(createMovie(1, "Alien", 10));
+        titleIndex.add(createMovie(2, "Aliens", 20));
+        titleIndex.add(createMovie(1, "Alien: Covenant", 30));
+
+        assertEquals(2, titleIndex.size());
+        assertEquals(Arrays.asList(1, 2), search(titleIndex, "alien"));
+        assertEquals(Arrays.asList(1), search(titleIndex, "covenant"));
+
+        // The previous title no longer matches.
+        titleIndex.add(createMovie(2, "Prometheus", 20));
+        assertEquals(Arrays.asList(1), search(titleIndex, "alien"));
+        assertEquals(Arrays.asList(2), search(titleIndex, "prom"));
+    }
+
+    @Test
+    public void search_matchesBruteForce() {
+        Random random = new Random(5);
+        String[] words = { "the", "star", "dark", "night", "return", "of", "love", "war", "a" };
+        List<MovieParcelable> movies = new ArrayList<>();
+        MovieDbTitleIndex titleIndex = new MovieDbTitleIndex();
+        for (int movieId = 1; movieId <= 2000; movieId++) {
+            StringBuilder title = new StringBuilder();
+            for (int word = random.nextInt(4); word >= 0; word--) {
+                title.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            MovieParcelable movie = createMovie(movieId, title.toString(), random.nextDouble());
+            movies.add(movie);
+            titleIndex.add(movie);
+        }
+
+        for (String query : new String[]{ "ar", "war", "night", "e st", "turn of" }) {
+            int matchCount = 0;
+            for (MovieParcelable movie : movies) {
+                String title = MovieDbTitleIndex.normalize(movie.title);
+                if (query.length() < 3 ? (" " + title).contains(" " + query)
+                        : title.contains(query)) {
+                    matchCount++;
+                }
+            }
+            List<MovieParcelable> results = titleIndex.search(query, Integer.MAX_VALUE / 2);
+            assertEquals(query, matchCount, results.size());
+            for (MovieParcelable movie : results) {
+                assertTrue(movie.title.toLowerCase(Locale.ROOT).contains(query));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.utility.MovieDbUtility.MovieSortOrder;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieListCache.
+ */
+public class MovieListCacheTest {
+
+    private static final List<MovieParcelable> sMovies =
+            Collections.singletonList(new MovieParcelable());
+
+    @Test
+    public void get_freshThenStale() {
+        MovieListCache cache = new MovieListCache(4, 1000);
+        cache.put(MovieSortOrder.MOVIE_SORT_POPULAR, 1, sMovies, 1, 5000);
+
+        MovieListCache.Entry entry = cache.get(MovieSortOrder.MOVIE_SORT_POPULAR, 1);
+        assertNotNull(entry);
+        assertFalse(entry.isStale(5999));
+        assertTrue(entry.isStale(6000));
+        // A stale entry is still returned so that it can be shown while refreshing.
+        assertSame(sMovies.get(0), entry.movies.get(0));
+    }
+
+    @Test
+    public void get_keyedBySortOrderAndPage() {
+        MovieListCache cache = new MovieListCache(4, 1000);
+        cache.put(MovieSortOrder.MOVIE_SORT_POPULAR, 1, sMovies, 1, 0);
+
+        assertNull(cache.get(MovieSortOrder.MOVIE_SORT_TOP_RATED, 1));
+        assertNull(cache.get(MovieSortOrder.MOVIE_SORT_POPULAR, 2));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        MovieListCache cache = new MovieListCache(2, 1000);
+        cache.put(MovieSortOrder.MOVIE_SORT_POPULAR, 1, sMovies, 1, 0);
+        cache.put(MovieSortOrder.MOVIE_SORT_TOP_RATED, 1, sMovies, 1, 0);
+        cache.get(MovieSortOrder.MOVIE_SORT_POPULAR, 1);
+        cache.put(MovieSortOrder.MOVIE_SORT_POPULAR, 2, sMovies, 1, 0);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(MovieSortOrder.MOVIE_SORT_POPULAR, 1));
+        assertNull(cache.get(MovieSortOrder.MOVIE_SORT_TOP_RATED, 1));
+    }
+}
@@ -0,0 +1,130 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieListSnapshot against encoding and restoring the movie list.
+ */
+public class MovieListSnapshotTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static MovieParcelable createMovie(int movieId, String title, String posterPath) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = movieId;
+        movie.title = title;
+        movie.posterPath = posterPath;
+        movie.releaseDate = 20170101 + movieId;
+        movie.voteAverage = 7.5f;
+        movie.voteCount = 1000 + movieId;
+        movie.popularity = 12.25 * movieId;
+        return movie;
+    }
+
+    private static List<MovieParcelable> createMovies(int count) {
+        List<MovieParcelable> movies = new ArrayList<>(count);
+        for (int movieId = 1; movieId <= count; movieId++) {
+            movies.add(createMovie(movieId, "Movie é " + movieId, "/poster.jpg"));
+        }
+        return movies;
+    }
+
+    private static void assertMovieEquals(MovieParcelable expected, MovieParcelable actual) {
+        assertEquals(expected.movieId, actual.movieId);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.posterPath, actual.posterPath);
+        assertEquals(expected.releaseDate, actual.releaseDate);
+        assertEquals(expected.voteAverage, actual.voteAverage, 0);
+        assertEquals(expected.voteCount, actual.voteCount);
+        assertEquals(expected.popularity, actual.popularity, 0);
+    }
+
+    @Test
+    public void decode_restoresEncodedList() {
+        List<MovieParcelable> movies = createMovies(40);
+        movies.add(createMovie(41, null, null));
+
+        MovieListSnapshot snapshot = MovieListSnapshot.decode(
+                MovieListSnapshot.encode("popular", 2, 500, 1234L, movies));
+
+        assertNotNull(snapshot);
+        assertEquals("popular", snapshot.getSortOrder());
+        assertEquals(2, snapshot.getLoadedPage());
+        assertEquals(500, snapshot.getTotalPages());
+        assertEquals(1234L, snapshot.getFetchedAtMillis());
+        assertEquals(movies.size(), snapshot.getMovies().size());
+        for (int i = movies.size() - 1; i >= 0; i--) {
+            assertMovieEquals(movies.get(i), snapshot.getMovies().get(i));
+        }
+        // Decoded once.
+        assertSame(snapshot.getMovies().get(3), snapshot.getMovies().get(3));
+    }
+
+    @Test
+    public void encode_storesEqualStringsOnce() {
+        List<MovieParcelable> movies = createMovies(20);
+        int size = MovieListSnapshot.encode("popular", 1, 1, 0L, movies).length;
+        for (MovieParcelable movie : movies) {
+            movie.posterPath = "/poster" + movie.movieId + ".jpg";
+        }
+        int distinctSize = MovieListSnapshot.encode("popular", 1, 1, 0L, movies).length;
+
+        // The shared poster path is stored once, each distinct path in full.
+        assertTrue(distinctSize - size >= 19 * "/poster1.jpg".length());
+
+        MovieListSnapshot snapshot = MovieListSnapshot.decode(
+                MovieListSnapshot.encode("popular", 1, 1, 0L, createMovies(2)));
+        assertSame(snapshot.getMovies().get(0).posterPath,
+                snapshot.getMovies().get(1).posterPath);
+    }
+
+    @Test
+    public void decode_rejectsCorruptData() {
+        byte[] data = MovieListSnapshot.encode("popular", 1, 1, 0L, createMovies(5));
+
+        byte[] corrupt = data.clone();
+        corrupt[corrupt.length - 3] ^= 1;
+        assertNull(MovieListSnapshot.decode(corrupt));
+
+        byte[] otherVersion = data.clone();
+        otherVersion[7]++;
+        assertNull(MovieListSnapshot.decode(otherVersion));
+
+        assertNull(MovieListSnapshot.decode(Arrays.copyOf(data, data.length - 1)));
+        assertNull(MovieListSnapshot.decode(new byte[3]));
+    }
+
+    @Test
+    public void write_replacesSnapshotFile() throws IOException {
+        File file = new File(mTemporaryFolder.getRoot(), "movie_list.snapshot");
+        assertNull(MovieListSnapshot.read(file));
+
+        MovieListSnapshot.write(file, "popular", 1, 10, 0L, createMovies(3));
+        MovieListSnapshot.write(file, "top_rated", 1, 10, 0L, createMovies(4));
+
+        MovieListSnapshot snapshot = MovieListSnapshot.read(file);
+        assertNotNull(snapshot);
+        assertEquals("top_rated", snapshot.getSortOrder());
+        assertEquals(4, snapshot.getMovies().size());
+        assertEquals(Arrays.asList(file.getName()), Arrays.asList(file.getParentFile().list()));
+
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertNull(MovieListSnapshot.read(file));
+    }
+}
@@ -0,0 +1,133 @@
+package com.paulmender.udacity.popularmovies.data;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieRepository against loading the movies and their overviews.
+ */
+public class MovieRepositoryTest {
+
+    /** Has its movies and their overviews, and records the loads. */
+    private static final class FakeSource implements MovieRepository.Source {
+        final Map<Integer, MovieParcelable> movies = new HashMap<>();
+        final Map<Integer, String> overviews = new HashMap<>();
+        final List<Integer> loads = new ArrayList<>();
+        IOException failure;
+
+        @Override
+        public MovieParcelable loadMovie(int movieId) throws IOException {
+            loads.add(movieId);
+            if (failure != null) {
+                throw failure;
+            }
+            return movies.get(movieId);
+        }
+
+        @Override
+        public String loadOverview(int movieId) throws IOException {
+            loads.add(movieId);
+            if (failure != null) {
+                throw failure;
+            }
+            return overviews.get(movieId);
+        }
+    }
+
+    @Test
+    public void loadOverview_triesSourcesInOrderAndCaches() throws IOException {
+        FakeSource store = new FakeSource();
+        FakeSource network = new FakeSource();
+        store.overviews.put(1, "Stored");
+        network.overviews.put(1, "Fetched");
+        network.overviews.put(2, "Fetched 2");
+        MovieRepository movieRepository = new MovieRepository(8, 8, store, network);
+
+        assertNull(movieRepository.getCachedOverview(1));
+        assertEquals("Stored", movieRepository.loadOverview(1));
+        assertEquals("Fetched 2", movieRepository.loadOverview(2));
+        assertNull(movieRepository.loadOverview(3));
+        assertEquals(Collections.singletonList(1), store.loads.subList(0, 1));
+        assertEquals(2, network.loads.size());
+
+        // Served from memory.
+        assertEquals("Stored", movieRepository.getCachedOverview(1));
+        assertEquals("Fetched 2", movieRepository.loadOverview(2));
+        assertEquals(3, store.loads.size());
+        assertEquals(2, network.loads.size());
+    }
+
+    @Test
+    public void putOverviews_evictsLeastRecentlyUsed() throws IOException {
+        FakeSource network = new FakeSource();
+        network.failure = new IOException("offline");
+        MovieRepository movieRepository = new MovieRepository(8, 2, network);
+
+        Map<Integer, String> overviews = new HashMap<>();
+        overviews.put(1, "One");
+        overviews.put(2, "Two");
+        movieRepository.putOverviews(overviews);
+        assertEquals("One", movieRepository.loadOverview(1));
+        movieRepository.putOverviews(Collections.singletonMap(3, "Three"));
+
+        assertEquals("One", movieRepository.getCachedOverview(1));
+        assertNull(movieRepository.getCachedOverview(2));
+        assertEquals("Three", movieRepository.getCachedOverview(3));
+        assertTrue(network.loads.isEmpty());
+
+        try {
+            movieRepository.loadOverview(2);
+            fail("The source failure is reported");
+        } catch (IOException e) {
+            assertEquals("offline", e.getMessage());
+        }
+    }
+
+    @Test
+    public void loadMovie_prefersCachedThenSourcesInOrder() throws IOException {
+        FakeSource store = new FakeSource();
+        FakeSource network = new FakeSource();
+        MovieParcelable opened = createMovie(1, "Opened");
+        MovieParcelable stored = createMovie(2, "Stored");
+        MovieParcelable fetched = createMovie(3, "Fetched");
+        store.movies.put(2, stored);
+        network.movies.put(2, createMovie(2, "Stale"));
+        network.movies.put(3, fetched);
+        MovieRepository movieRepository = new MovieRepository(2, 8, store, network);
+
+        // The movie opened from the list is resolved without reading the sources.
+        movieRepository.putMovies(Collections.singletonList(opened));
+        assertSame(opened, movieRepository.getCachedMovie(1));
+        assertSame(opened, movieRepository.loadMovie(1));
+        assertTrue(store.loads.isEmpty());
+
+        assertSame(stored, movieRepository.loadMovie(2));
+        assertSame(fetched, movieRepository.loadMovie(3));
+        assertNull(movieRepository.loadMovie(4));
+        assertEquals(Arrays.asList(2, 3, 4), store.loads);
+        assertEquals(Arrays.asList(3, 4), network.loads);
+
+        // At most two movies are kept; the opened movie was the least recently used.
+        assertNull(movieRepository.getCachedMovie(1));
+        assertSame(stored, movieRepository.getCachedMovie(2));
+        assertSame(fetched, movieRepository.getCachedMovie(3));
+    }
+
+    private static MovieParcelable createMovie(int movieId, String title) {
+        MovieParcelable movie = new MovieParcelable();
+        movie.movieId = movieId;
+        movie.title = title;
+        return movie;
+    }
+}
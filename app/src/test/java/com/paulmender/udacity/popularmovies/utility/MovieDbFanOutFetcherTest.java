@@ -0,0 +1,140 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbFanOutFetcher with a simulated MovieDB.
+ */
+public class MovieDbFanOutFetcherTest {
+
+    private static final long sLatencyMillis = 200;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(6);
+
+    private final AtomicInteger mConcurrentFetches = new AtomicInteger();
+    private final AtomicInteger mMaxConcurrentFetches = new AtomicInteger();
+
+    /**
+     * Serves pages of movies after a simulated round trip. The page parameter selects the
+     * movie ids: page n holds the ids 10n to 10n + 14, so neighbouring pages overlap.
+     * Page 0 fails.
+     */
+    private final MovieDbFanOutFetcher.PageSource mPageSource =
+            new MovieDbFanOutFetcher.PageSource() {
+        @Override
+        public MovieDbPage fetch(URL url) throws IOException {
+            int concurrent = mConcurrentFetches.incrementAndGet();
+            int max;
+            while (concurrent > (max = mMaxConcurrentFetches.get())) {
+                mMaxConcurrentFetches.compareAndSet(max, concurrent);
+            }
+            try {
+                Thread.sleep(sLatencyMillis);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                mConcurrentFetches.decrementAndGet();
+            }
+
+            int page = Integer.parseInt(url.getQuery().replaceAll(".*page=", ""));
+            if (page == 0) {
+                throw new IOException("Service unavailable");
+            }
+            MovieDbPage moviePage = new MovieDbPage();
+            moviePage.page = page;
+            moviePage.totalPages = 10;
+            for (int movieId = 10 * page; movieId < 10 * page + 15; movieId++) {
+                MovieParcelable movie = new MovieParcelable();
+                movie.movieId = movieId;
+                moviePage.movies.add(movie);
+            }
+            return moviePage;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private static List<URL> getUrls(String host, int... pages) throws Exception {
+        List<URL> urls = new ArrayList<>();
+        for (int page : pages) {
+            urls.add(new URL("https://" + host + "/3/movie/popular?page=" + page));
+        }
+        return urls;
+    }
+
+    @Test
+    public void fetch_concurrentlyInOneRoundTrip() throws Exception {
+        MovieDbFanOutFetcher fetcher = new MovieDbFanOutFetcher(mExecutor, 6, mPageSource);
+
+        long start = System.nanoTime();
+        MovieDbFanOutFetcher.Result result =
+                fetcher.fetch(getUrls("api.themoviedb.org", 1, 2, 3, 4, 5, 6));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(result.isComplete());
+        assertEquals(6, mMaxConcurrentFetches.get());
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 2 * sLatencyMillis);
+    }
+
+    @Test
+    public void fetch_mergesInRankOrderWithoutDuplicates() throws Exception {
+        MovieDbFanOutFetcher fetcher = new MovieDbFanOutFetcher(mExecutor, 6, mPageSource);
+
+        MovieDbFanOutFetcher.Result result = fetcher.fetch(getUrls("api.themoviedb.org", 1, 2));
+
+        // Page 1 holds 10..24 and page 2 holds 20..34.
+        assertEquals(25, result.movies.size());
+        for (int index = 0; index < result.movies.size(); index++) {
+            assertEquals(10 + index, result.movies.get(index).movieId);
+        }
+        assertEquals(15, result.getPage(1).movies.size());
+    }
+
+    @Test
+    public void fetch_returnsPartialResultsOnFailure() throws Exception {
+        MovieDbFanOutFetcher fetcher = new MovieDbFanOutFetcher(mExecutor, 6, mPageSource);
+
+        MovieDbFanOutFetcher.Result result =
+                fetcher.fetch(getUrls("api.themoviedb.org", 1, 0, 3));
+
+        assertFalse(result.isComplete());
+        assertEquals(1, result.getFailureCount());
+        assertNull(result.getPage(1));
+        assertNotNull(result.getFailure(1));
+        assertNotNull(result.getPage(2));
+        assertEquals(30, result.movies.size());
+    }
+
+    @Test
+    public void fetch_limitsConnectionsPerHost() throws Exception {
+        MovieDbFanOutFetcher fetcher = new MovieDbFanOutFetcher(mExecutor, 2, mPageSource);
+
+        List<URL> urls = getUrls("api.themoviedb.org", 1, 2, 3, 4);
+        assertTrue(fetcher.fetch(urls).isComplete());
+        assertEquals(2, mMaxConcurrentFetches.get());
+
+        // Another host has its own connections.
+        mMaxConcurrentFetches.set(0);
+        urls.addAll(getUrls("image.tmdb.org", 1, 2));
+        assertTrue(fetcher.fetch(urls).isComplete());
+        assertEquals(4, mMaxConcurrentFetches.get());
+    }
+}
@@ -0,0 +1,136 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbFetchScheduler.
+ */
+public class MovieDbFetchSchedulerTest {
+
+    private ThreadPoolExecutor mFetchExecutor;
+
+    private MovieDbFetchScheduler mScheduler;
+
+    private final List<String> mResults = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch mDelivered = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        mFetchExecutor = new ThreadPoolExecutor(2, 2, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(2));
+        // Deliver on the pool thread instead of the main thread.
+        Executor directExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        mScheduler = new MovieDbFetchScheduler(mFetchExecutor, directExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        mFetchExecutor.shutdownNow();
+    }
+
+    private MovieDbFetchScheduler.MovieDbFetchCallback<String> newCallback() {
+        return new MovieDbFetchScheduler.MovieDbFetchCallback<String>() {
+            @Override
+            public void onFetchComplete(String result) {
+                mResults.add(result);
+                mDelivered.countDown();
+            }
+
+            @Override
+            public void onFetchFailed(Exception e) {
+                mResults.add("failed");
+                mDelivered.countDown();
+            }
+        };
+    }
+
+    private static Callable<String> blockingFetch(final CountDownLatch release,
+                                                  final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return result;
+            }
+        };
+    }
+
+    @Test
+    public void submit_latestRequestWins() throws Exception {
+        CountDownLatch releaseOld = new CountDownLatch(1);
+        MovieDbFetchScheduler.FetchToken oldToken = mScheduler.submit("popular", "1",
+                blockingFetch(releaseOld, "old"), newCallback());
+        mScheduler.submit("popular", "1", blockingFetch(new CountDownLatch(0), "new"),
+                newCallback());
+
+        assertTrue(mDelivered.await(5, TimeUnit.SECONDS));
+        releaseOld.countDown();
+        mFetchExecutor.shutdown();
+        assertTrue(mFetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(oldToken.isCancelled());
+        assertEquals(1, mResults.size());
+        assertEquals("new", mResults.get(0));
+        assertEquals(0, mScheduler.getFetchesInFlightCount());
+    }
+
+    @Test
+    public void cancelGroup_callbackNotCalled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        mScheduler.submit("popular", "1", blockingFetch(release, "popular"), newCallback());
+        mScheduler.submit("top_rated", "1", blockingFetch(release, "top_rated"), newCallback());
+
+        mScheduler.cancelGroup("popular");
+        release.countDown();
+
+        assertTrue(mDelivered.await(5, TimeUnit.SECONDS));
+        mFetchExecutor.shutdown();
+        assertTrue(mFetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, mResults.size());
+        assertEquals("top_rated", mResults.get(0));
+    }
+
+    @Test
+    public void submit_queueFull_failed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // Two running and two queued fill the pool.
+        for (int page = 1; page <= 4; page++) {
+            mScheduler.submit("popular", String.valueOf(page), blockingFetch(release, "ok"),
+                    new MovieDbFetchScheduler.MovieDbFetchCallback<String>() {
+                        @Override
+                        public void onFetchComplete(String result) {
+                        }
+
+                        @Override
+                        public void onFetchFailed(Exception e) {
+                            fail();
+                        }
+                    });
+        }
+        mScheduler.submit("popular", "5", blockingFetch(release, "ok"), newCallback());
+        release.countDown();
+
+        assertTrue(mDelivered.await(5, TimeUnit.SECONDS));
+        assertEquals("failed", mResults.get(0));
+    }
+}
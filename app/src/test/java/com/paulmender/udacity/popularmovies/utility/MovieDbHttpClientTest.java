@@ -0,0 +1,146 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbHttpClient against a local TLS server.
+ */
+public class MovieDbHttpClientTest {
+
+    private static final char[] sKeyStorePassword = "password".toCharArray();
+
+    private static final String sBody = "{\"page\":1,\"results\":[]}";
+
+    private HttpsServer mServer;
+
+    private SSLContext mSslContext;
+
+    /** The client addresses of the requests, one per connection. */
+    private final Set<SocketAddress> mClientAddresses =
+            Collections.synchronizedSet(new HashSet<SocketAddress>());
+
+    private volatile long mResponseDelayMillis;
+
+    @Before
+    public void setUp() throws Exception {
+        // A self-signed certificate for localhost, trusted by the client.
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = getClass().getClassLoader().getResourceAsStream("localhost.jks");
+        try {
+            keyStore.load(in, sKeyStorePassword);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagers =
+                KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, sKeyStorePassword);
+        TrustManagerFactory trustManagers =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        mSslContext = SSLContext.getInstance("TLS");
+        mSslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+        mServer = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        mServer.setHttpsConfigurator(new HttpsConfigurator(mSslContext));
+        mServer.createContext("/3/movie/popular", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mClientAddresses.add(exchange.getRemoteAddress());
+                if (mResponseDelayMillis > 0) {
+                    try {
+                        Thread.sleep(mResponseDelayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = sBody.getBytes("UTF-8");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    private URL getUrl(int page) throws Exception {
+        return new URL("https://localhost:" + mServer.getAddress().getPort()
+                + "/3/movie/popular?page=" + page);
+    }
+
+    private static final MovieDbHttpClient.ResponseHandler<String> sReadBody =
+            new MovieDbHttpClient.ResponseHandler<String>() {
+        @Override
+        public String handleResponse(HttpURLConnection connection) throws IOException {
+            return MovieDbResponseReader.readResponse(connection);
+        }
+    };
+
+    @Test
+    public void execute_reusesConnectionForConsecutivePages() throws Exception {
+        MovieDbHttpClient client =
+                new MovieDbHttpClient(5000, 5000, mSslContext.getSocketFactory());
+
+        for (int page = 1; page <= 3; page++) {
+            assertEquals(sBody, client.execute(getUrl(page), sReadBody));
+        }
+        assertEquals(1, mClientAddresses.size());
+    }
+
+    @Test
+    public void execute_reusesConnectionWhenBodyIsNotRead() throws Exception {
+        MovieDbHttpClient client =
+                new MovieDbHttpClient(5000, 5000, mSslContext.getSocketFactory());
+        MovieDbHttpClient.ResponseHandler<Integer> readCode =
+                new MovieDbHttpClient.ResponseHandler<Integer>() {
+            @Override
+            public Integer handleResponse(HttpURLConnection connection) throws IOException {
+                return connection.getResponseCode();
+            }
+        };
+
+        assertEquals(HttpURLConnection.HTTP_OK, (int) client.execute(getUrl(1), readCode));
+        assertEquals(sBody, client.execute(getUrl(2), sReadBody));
+        assertEquals(1, mClientAddresses.size());
+    }
+
+    @Test(expected = SocketTimeoutException.class)
+    public void execute_readTimeout() throws Exception {
+        MovieDbHttpClient client =
+                new MovieDbHttpClient(5000, 200, mSslContext.getSocketFactory());
+        mResponseDelayMillis = 1000;
+
+        client.execute(getUrl(1), sReadBody);
+    }
+}
@@ -0,0 +1,123 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.squareup.picasso.Downloader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbImageDownloader disk cache against a local HTTP server.
+ */
+public class MovieDbImageDownloaderTest {
+
+    /** The value of NetworkPolicy.OFFLINE as passed to Downloader.load. */
+    private static final int sNetworkPolicyOffline = 1 << 2;
+
+    private static final byte[] sImage = {(byte) 0xff, (byte) 0xd8, 1, 2, 3, 4, 5, 6};
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+
+    private final AtomicInteger mDownloads = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mDownloads.incrementAndGet();
+                exchange.sendResponseHeaders(200, sImage.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(sImage);
+                out.close();
+                exchange.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    private String getUrl(String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+
+    private static byte[] read(Downloader.Response response) throws IOException {
+        InputStream in = response.getInputStream();
+        byte[] body = new byte[(int) response.getContentLength()];
+        int length = 0;
+        int read;
+        while (length < body.length && (read = in.read(body, length, body.length - length)) > 0) {
+            length += read;
+        }
+        in.close();
+        return body;
+    }
+
+    @Test
+    public void cachedImage_isNotDownloadedAgain() throws Exception {
+        MovieDbImageDownloader downloader =
+                new MovieDbImageDownloader(mFolder.getRoot(), 1024 * 1024);
+
+        assertArrayEquals(sImage, read(downloader.load(getUrl("/w185/a.jpg"), 0)));
+        assertArrayEquals(sImage, read(downloader.load(getUrl("/w185/a.jpg"), 0)));
+
+        assertEquals(1, mDownloads.get());
+        assertEquals(1, downloader.getNetworkCount());
+        assertEquals(1, downloader.getDiskHitCount());
+
+        // The disk cache survives a restart.
+        MovieDbImageDownloader restarted =
+                new MovieDbImageDownloader(mFolder.getRoot(), 1024 * 1024);
+        assertArrayEquals(sImage, read(restarted.load(getUrl("/w185/a.jpg"), 0)));
+        assertEquals(1, mDownloads.get());
+    }
+
+    @Test
+    public void counts_doNotCreateTheCache() throws Exception {
+        File directory = new File(mFolder.getRoot(), "posters");
+        MovieDbImageDownloader downloader = new MovieDbImageDownloader(directory, 1024 * 1024);
+
+        assertEquals(0, downloader.getDiskHitCount());
+        assertEquals(0, downloader.getNetworkCount());
+        assertEquals(0, downloader.getDiskCacheSize());
+        assertFalse(directory.exists());
+
+        downloader.load(getUrl("/w185/c.jpg"), 0);
+        assertEquals(1, downloader.getNetworkCount());
+        assertTrue(downloader.getDiskCacheSize() >= sImage.length);
+    }
+
+    @Test
+    public void offlineOnly_missFails() throws Exception {
+        MovieDbImageDownloader downloader =
+                new MovieDbImageDownloader(mFolder.getRoot(), 1024 * 1024);
+        try {
+            downloader.load(getUrl("/w185/b.jpg"), sNetworkPolicyOffline);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertEquals(0, mDownloads.get());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import android.view.Choreographer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbJankMonitor with a simulated choreographer.
+ */
+public class MovieDbJankMonitorTest {
+
+    private static final long sFrameNanos = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    /**
+     * Runs the posted frame callback when a frame is simulated.
+     */
+    private static class SimulatedChoreographer implements MovieDbJankMonitor.FrameScheduler {
+        private Choreographer.FrameCallback mCallback;
+        private long mFrameTimeNanos = 1000;
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            mCallback = callback;
+        }
+
+        @Override
+        public void removeFrameCallback(Choreographer.FrameCallback callback) {
+            if (mCallback == callback) {
+                mCallback = null;
+            }
+        }
+
+        /** Simulate a frame after the time since the previous frame. */
+        void frame(long elapsedNanos) {
+            mFrameTimeNanos += elapsedNanos;
+            Choreographer.FrameCallback callback = mCallback;
+            mCallback = null;
+            if (callback != null) {
+                callback.doFrame(mFrameTimeNanos);
+            }
+        }
+    }
+
+    private final SimulatedChoreographer mChoreographer = new SimulatedChoreographer();
+
+    private final MovieDbJankMonitor mMonitor = new MovieDbJankMonitor(mChoreographer, 60);
+
+    @After
+    public void tearDown() {
+        mMonitor.stop();
+    }
+
+    @Test
+    public void smoothFrames_areNotSlow() throws Exception {
+        mMonitor.start();
+        for (int i = 0; i < 11; i++) {
+            mChoreographer.frame(sFrameNanos);
+        }
+        // The first frame only starts the measurement.
+        assertEquals(10, mMonitor.getFrameCount());
+        assertEquals(0, mMonitor.getSlowFrameCount());
+        assertEquals(0, mMonitor.getDroppedFrameCount());
+    }
+
+    @Test
+    public void slowFrame_attributedToLargestWork() throws Exception {
+        mMonitor.start();
+        mChoreographer.frame(sFrameNanos);
+
+        mMonitor.onSpan(MovieDbMetrics.Stage.BIND, 5 * sFrameNanos / 10);
+        mMonitor.onSpan(MovieDbMetrics.Stage.LAYOUT, 30 * sFrameNanos / 10);
+        mMonitor.onSpan(MovieDbMetrics.Stage.IMAGE_DISPLAY, 2 * sFrameNanos / 10);
+        mChoreographer.frame(4 * sFrameNanos);
+
+        assertEquals(1, mMonitor.getSlowFrameCount());
+        assertEquals(3, mMonitor.getDroppedFrameCount());
+        assertEquals(1, mMonitor.getSlowFrameCount(MovieDbJankMonitor.Cause.LAYOUT));
+
+        // The work is cleared every frame.
+        mChoreographer.frame(2 * sFrameNanos);
+        assertEquals(1, mMonitor.getSlowFrameCount(MovieDbJankMonitor.Cause.OTHER));
+    }
+
+    @Test
+    public void backgroundWork_isIgnored() throws Exception {
+        mMonitor.start();
+        mChoreographer.frame(sFrameNanos);
+
+        Thread background = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mMonitor.onSpan(MovieDbMetrics.Stage.BIND, 10 * sFrameNanos);
+            }
+        });
+        background.start();
+        background.join();
+        mMonitor.onSpan(MovieDbMetrics.Stage.FETCH, 10 * sFrameNanos);
+        mChoreographer.frame(3 * sFrameNanos);
+
+        assertEquals(1, mMonitor.getSlowFrameCount(MovieDbJankMonitor.Cause.OTHER));
+    }
+
+    @Test
+    public void stopped_measuresNothing() throws Exception {
+        mMonitor.start();
+        mChoreographer.frame(sFrameNanos);
+        mMonitor.stop();
+        mChoreographer.frame(10 * sFrameNanos);
+        assertEquals(0, mMonitor.getFrameCount());
+
+        // Restarting does not count the idle time as a frame.
+        mMonitor.start();
+        mChoreographer.frame(sFrameNanos);
+        mChoreographer.frame(sFrameNanos);
+        assertEquals(1, mMonitor.getFrameCount());
+        assertEquals(0, mMonitor.getSlowFrameCount());
+    }
+}
@@ -0,0 +1,27 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the typed field parsing of MovieDbJsonUtility. The stream parsing needs
+ * android.util.JsonReader, so it is tested on a device (see MovieDbJsonStreamTest).
+ */
+public class MovieDbJsonUtilityTest {
+
+    @Test
+    public void parseReleaseDate_packsDate() throws Exception {
+        assertEquals(20170826, MovieDbJsonUtility.parseReleaseDate("2017-08-26"));
+        assertEquals(19991231, MovieDbJsonUtility.parseReleaseDate("1999-12-31"));
+    }
+
+    @Test
+    public void parseReleaseDate_missingOrInvalidIsZero() throws Exception {
+        assertEquals(0, MovieDbJsonUtility.parseReleaseDate(null));
+        assertEquals(0, MovieDbJsonUtility.parseReleaseDate(""));
+        assertEquals(0, MovieDbJsonUtility.parseReleaseDate("2017"));
+        assertEquals(0, MovieDbJsonUtility.parseReleaseDate("2017/08/26"));
+        assertEquals(0, MovieDbJsonUtility.parseReleaseDate("2017-0a-26"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbResponseCache against a local HTTP server.
+ */
+public class MovieDbResponseCacheTest {
+
+    private static final String sBody = "{\"page\":1,\"results\":[]}";
+    private static final String sETag = "\"v1\"";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+
+    private final AtomicInteger mFullResponses = new AtomicInteger();
+    private final AtomicInteger mNotModifiedResponses = new AtomicInteger();
+
+    private volatile String mCacheControl;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("ETag", sETag);
+                if (mCacheControl != null) {
+                    exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                }
+                if (sETag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    mNotModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    mFullResponses.incrementAndGet();
+                    byte[] body = sBody.getBytes("UTF-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        MovieDbResponseCache.uninstall();
+        mServer.stop(0);
+    }
+
+    private URL getUrl(String path) throws Exception {
+        return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + path);
+    }
+
+    @Test
+    public void freshResponse_servedLocally() throws Exception {
+        mCacheControl = "public, max-age=600";
+        MovieDbResponseCache cache = MovieDbResponseCache.install(mFolder.getRoot(), 1024 * 1024);
+
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular")));
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular")));
+
+        assertEquals(1, mFullResponses.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void staleResponse_revalidated() throws Exception {
+        mCacheControl = "max-age=0";
+        MovieDbResponseCache cache = MovieDbResponseCache.install(mFolder.getRoot(), 1024 * 1024);
+
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/top_rated")));
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/top_rated")));
+
+        assertEquals(1, mFullResponses.get());
+        assertEquals(1, mNotModifiedResponses.get());
+        assertEquals(1, cache.getConditionalHitCount());
+    }
+
+    @Test
+    public void noStore_notCached() throws Exception {
+        mCacheControl = "no-store";
+        MovieDbResponseCache cache = MovieDbResponseCache.install(mFolder.getRoot(), 1024 * 1024);
+
+        MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular"));
+        MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular"));
+
+        assertEquals(2, mFullResponses.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void entries_persistAcrossInstances() throws Exception {
+        mCacheControl = "max-age=600";
+        MovieDbResponseCache.install(mFolder.getRoot(), 1024 * 1024);
+        MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular"));
+
+        MovieDbResponseCache.uninstall();
+        MovieDbResponseCache cache = MovieDbResponseCache.install(mFolder.getRoot(), 1024 * 1024);
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(getUrl("/movie/popular")));
+
+        assertEquals(1, mFullResponses.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        byte[] body = new byte[400];
+        MovieDbResponseCache cache = new MovieDbResponseCache(mFolder.getRoot(), 1500);
+        long expires = System.currentTimeMillis() + 60000;
+
+        cache.put(new MovieDbResponseCache.Entry("a", null, null, expires, body));
+        cache.put(new MovieDbResponseCache.Entry("b", null, null, expires, body));
+        cache.put(new MovieDbResponseCache.Entry("c", null, null, expires, body));
+        assertNotNull(cache.get("a"));
+        cache.put(new MovieDbResponseCache.Entry("d", null, null, expires, body));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertTrue(cache.size() <= cache.maxSize());
+    }
+}
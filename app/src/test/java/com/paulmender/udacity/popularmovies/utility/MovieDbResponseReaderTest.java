@@ -0,0 +1,78 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the MovieDbResponseReader.
+ */
+public class MovieDbResponseReaderTest {
+
+    private static final String sBody =
+            "{\"page\":1,\"results\":[{\"id\":1,\"title\":\"Amélie\"}],\"total_results\":1}";
+
+    private static InputStream toStream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Test
+    public void readBody_exactContentLength() throws Exception {
+        byte[] bytes = sBody.getBytes("UTF-8");
+        assertEquals(sBody, MovieDbResponseReader.readBody(toStream(bytes), bytes.length, null));
+    }
+
+    @Test
+    public void readBody_unknownContentLength() throws Exception {
+        byte[] bytes = sBody.getBytes("UTF-8");
+        assertEquals(sBody, MovieDbResponseReader.readBody(toStream(bytes), -1, null));
+    }
+
+    @Test
+    public void readBody_contentLengthTooShort() throws Exception {
+        // A wrong Content-Length must not truncate the body.
+        byte[] bytes = sBody.getBytes("UTF-8");
+        assertEquals(sBody, MovieDbResponseReader.readBody(toStream(bytes), 4, null));
+    }
+
+    @Test
+    public void readBody_contentLengthTooLong() throws Exception {
+        // A bogus Content-Length must not allocate its size up front.
+        byte[] bytes = sBody.getBytes("UTF-8");
+        assertEquals(sBody,
+                MovieDbResponseReader.readBody(toStream(bytes), Integer.MAX_VALUE, null));
+        assertArrayEquals(bytes,
+                MovieDbResponseReader.readBodyBytes(toStream(bytes), Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    public void readBody_largerThanDefaultBuffer() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 100 * 1024) {
+            builder.append(sBody);
+        }
+        String body = builder.toString();
+        byte[] bytes = body.getBytes("UTF-8");
+        assertEquals(body, MovieDbResponseReader.readBody(toStream(bytes), -1, null));
+    }
+
+    @Test
+    public void readBody_gzip() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(sBody.getBytes("UTF-8"));
+        gzip.close();
+        byte[] bytes = compressed.toByteArray();
+        assertEquals(sBody, MovieDbResponseReader.readBody(toStream(bytes), bytes.length, "gzip"));
+    }
+
+    @Test
+    public void readBody_empty() throws Exception {
+        assertNull(MovieDbResponseReader.readBody(toStream(new byte[0]), 0, null));
+    }
+}
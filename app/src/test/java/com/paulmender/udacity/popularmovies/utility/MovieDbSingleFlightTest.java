@@ -0,0 +1,167 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Concurrency tests of the request coalescing in MovieDbUtility against a local HTTP server.
+ */
+public class MovieDbSingleFlightTest {
+
+    private static final int sCallers = 16;
+    private static final String sBody = "{\"page\":1,\"results\":[]}";
+
+    private HttpServer mServer;
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    private final CountDownLatch mReleaseResponse = new CountDownLatch(1);
+
+    private ExecutorService mCallers;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests.incrementAndGet();
+                try {
+                    // Hold the response until all callers have asked for it.
+                    mReleaseResponse.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = sBody.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+                exchange.close();
+            }
+        });
+        mServer.start();
+        mCallers = Executors.newFixedThreadPool(sCallers);
+    }
+
+    @After
+    public void tearDown() {
+        mCallers.shutdownNow();
+        mServer.stop(0);
+    }
+
+    @Test
+    public void parallelIdenticalRequests_oneRequestOnTheWire() throws Exception {
+        final URL url = new URL("http://127.0.0.1:" + mServer.getAddress().getPort()
+                + "/movie/popular?page=1");
+        final CountDownLatch started = new CountDownLatch(sCallers);
+        MovieDbSingleFlight<String> singleFlight = MovieDbUtility.getResponseSingleFlight();
+        int joinedBefore = singleFlight.getJoinedCount();
+
+        List<Future<String>> responses = new ArrayList<>();
+        for (int i = 0; i < sCallers; i++) {
+            responses.add(mCallers.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    started.countDown();
+                    return MovieDbUtility.getResponseFromHttpUrl(url);
+                }
+            }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Wait until all other callers joined the first request, which the server holds.
+        awaitJoined(singleFlight, joinedBefore + sCallers - 1);
+        mReleaseResponse.countDown();
+
+        for (Future<String> response : responses) {
+            assertEquals(sBody, response.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, mRequests.get());
+
+        // Once completed, the next call issues a new request.
+        assertEquals(sBody, MovieDbUtility.getResponseFromHttpUrl(url));
+        assertEquals(2, mRequests.get());
+    }
+
+    @Test
+    public void execute_failureSharedByJoinedCallers() throws Exception {
+        final MovieDbSingleFlight<String> singleFlight = new MovieDbSingleFlight<>();
+        final CountDownLatch inFlight = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> owner = mCallers.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return singleFlight.execute("key", new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        inFlight.countDown();
+                        release.await(5, TimeUnit.SECONDS);
+                        throw new IOException("failed");
+                    }
+                });
+            }
+        });
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+        Future<String> joined = mCallers.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return singleFlight.execute("key", new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return "not coalesced";
+                    }
+                });
+            }
+        });
+        awaitJoined(singleFlight, 1);
+        release.countDown();
+
+        assertFailed(owner);
+        assertFailed(joined);
+        assertEquals(0, singleFlight.getRequestsInFlightCount());
+    }
+
+    /**
+     * Wait until the given number of calls joined a request in flight.
+     */
+    private static void awaitJoined(MovieDbSingleFlight<String> singleFlight, int joinedCount)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getJoinedCount() < joinedCount) {
+            assertTrue("Callers did not join", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertFailed(Future<String> response) throws Exception {
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.paulmender.udacity.popularmovies.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the poster size selection of MovieDbUtility.
+ */
+public class MovieDbUtilityTest {
+
+    @Test
+    public void imageSize_isSmallestCoveringWidth() throws Exception {
+        assertEquals("w92", MovieDbUtility.getImageSize(1));
+        assertEquals("w92", MovieDbUtility.getImageSize(92));
+        assertEquals("w154", MovieDbUtility.getImageSize(93));
+        assertEquals("w185", MovieDbUtility.getImageSize(180));
+        assertEquals("w342", MovieDbUtility.getImageSize(270));
+        assertEquals("w780", MovieDbUtility.getImageSize(780));
+        assertEquals("original", MovieDbUtility.getImageSize(1080));
+    }
+
+    @Test
+    public void imageUrl_unknownWidthIsDefaultSize() throws Exception {
+        assertEquals(MovieDbUtility.getImageUrlString("/poster.jpg"),
+                MovieDbUtility.getImageUrlString("/poster.jpg", 0));
+        assertTrue(MovieDbUtility.getImageUrlString("/poster.jpg", 300)
+                .endsWith("/w342/poster.jpg"));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbContract;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+import com.paulmender.udacity.popularmovies.utility.MovieDbJsonUtility;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a MovieDB response into movies: the JSONObject tree parser and the streaming parser.
+ * Both parse the same response bytes into the same fields of a MovieDbPage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieDbJsonParseBenchmark {
+
+    @Param({"20", "1000", "10000"})
+    public int movieCount;
+
+    /** The response body as received, parsed by both benchmarks. */
+    private byte[] mJsonBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJsonBytes = MovieDbPayloads.buildPage(1, movieCount).getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public MovieDbPage jsonObjectParse() throws IOException, JSONException {
+        // The JSONObject parser needs the body decoded into a String first.
+        return parseJsonObjectPage(new String(mJsonBytes, "UTF-8"));
+    }
+
+    @Benchmark
+    public MovieDbPage streamingParse() throws IOException {
+        return MovieDbJsonUtility.getMovieDbPageFromJsonStream(
+                new ByteArrayInputStream(mJsonBytes));
+    }
+
+    /**
+     * The JSONObject parser of MovieDbJsonUtility.getMovieDbStringsFromJson, extracting the same
+     * fields as the streaming parser: the paging attributes and the overviews too.
+     */
+    private static MovieDbPage parseJsonObjectPage(String json) throws JSONException {
+        MovieDbPage moviePage = new MovieDbPage();
+        JSONObject pageJson = new JSONObject(json);
+        moviePage.page = pageJson.optInt(MovieDbContract.MOVIE_DB_PAGE);
+        moviePage.totalPages = pageJson.optInt(MovieDbContract.MOVIE_DB_TOTAL_PAGES);
+        moviePage.totalResults = pageJson.optInt(MovieDbContract.MOVIE_DB_TOTAL_RESULTS);
+
+        JSONArray movieJsonArray = pageJson.getJSONArray("results");
+        for (int i = 0; i < movieJsonArray.length(); i++) {
+            JSONObject movieJson = movieJsonArray.getJSONObject(i);
+
+            MovieParcelable movie = new MovieParcelable();
+            movie.movieId = movieJson.getInt(MovieDbContract.MOVIE_DB_ID);
+            movie.posterPath = movieJson.optString(MovieDbContract.MOVIE_DB_POSTER_PATH, null);
+            movie.releaseDate = MovieDbJsonUtility.parseReleaseDate(
+                    movieJson.optString(MovieDbContract.MOVIE_DB_RELEASE_DATE, null));
+            movie.title = movieJson.optString(MovieDbContract.MOVIE_DB_TITLE, null);
+            movie.voteAverage =
+                    (float) movieJson.optDouble(MovieDbContract.MOVIE_DB_VOTE_AVERAGE, 0);
+            movie.voteCount = movieJson.optInt(MovieDbContract.MOVIE_DB_VOTE_COUNT, 0);
+            movie.popularity = movieJson.optDouble(MovieDbContract.MOVIE_DB_POPULARITY, 0);
+            moviePage.movies.add(movie);
+
+            String overview = movieJson.optString(MovieDbContract.MOVIE_DB_OVERVIEW, null);
+            if (overview != null) {
+                moviePage.overviews.put(movie.movieId, overview);
+            }
+        }
+        return moviePage;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic MovieDB responses, shaped like /discover/movie results.
+ */
+final class MovieDbPayloads {
+
+    // The constructor.
+    private MovieDbPayloads(){
+    }
+
+    /**
+     * @param page The page number.
+     * @param movieCount The number of movies in the results.
+     * @return The response JSON.
+     */
+    static String buildPage(int page, int movieCount) {
+        StringBuilder builder = new StringBuilder(movieCount * 700)
+                .append("{\"page\":").append(page).append(",\"results\":[");
+        for (int i = 0; i < movieCount; i++) {
+            int id = page * 100000 + i;
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"vote_count\":").append(1000 + i)
+                    .append(",\"id\":").append(id)
+                    .append(",\"video\":false,\"vote_average\":7.").append(i % 10)
+                    .append(",\"title\":\"Movie ").append(id)
+                    .append("\",\"popularity\":").append(500 + i % 500).append(".25")
+                    .append(",\"poster_path\":\"/poster").append(id).append(".jpg\"")
+                    .append(",\"original_language\":\"en\",\"original_title\":\"Movie ").append(id)
+                    .append("\",\"genre_ids\":[28,12,878],\"backdrop_path\":\"/backdrop").append(id)
+                    .append(".jpg\",\"adult\":false,\"overview\":\"")
+                    .append("A synthetic plot synopsis that is roughly as long as the ones returned ")
+                    .append("by the MovieDB, long enough to dominate the size of each record in ")
+                    .append("the results array of the response.\",\"release_date\":\"2017-0")
+                    .append(1 + i % 9).append("-1").append(i % 10).append("\"}");
+        }
+        return builder.append("],\"total_results\":").append(movieCount)
+                .append(",\"total_pages\":1}").toString();
+    }
+
+    /**
+     * @param movieCount The number of movies.
+     * @return Movies with random, often tied, ratings, release years and vote counts.
+     */
+    static List<MovieParcelable> buildMovies(int movieCount) {
+        Random random = new Random(42);
+        List<MovieParcelable> movies = new ArrayList<>(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            MovieParcelable movie = new MovieParcelable();
+            movie.movieId = 100000 + i;
+            movie.title = "Movie " + random.nextInt(movieCount);
+            movie.releaseDate = (1950 + random.nextInt(70)) * 10000 + 101;
+            movie.voteAverage = random.nextInt(101) / 10f;
+            movie.voteCount = random.nextInt(20000);
+            movie.popularity = random.nextDouble() * 1000;
+            movies.add(movie);
+        }
+        return movies;
+    }
+}
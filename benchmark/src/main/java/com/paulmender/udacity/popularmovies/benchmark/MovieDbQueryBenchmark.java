@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbQueryEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-sorting the cached movies locally: the query engine against sorting the movie list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieDbQueryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int movieCount;
+
+    private List<MovieParcelable> mMovies;
+
+    private MovieDbQueryEngine mEngine;
+
+    private static final Comparator<MovieParcelable> sRatingThenYear =
+            new Comparator<MovieParcelable>() {
+        @Override
+        public int compare(MovieParcelable left, MovieParcelable right) {
+            int comparison = Float.compare(right.voteAverage, left.voteAverage);
+            return comparison != 0 ? comparison : right.getReleaseYear() - left.getReleaseYear();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mMovies = MovieDbPayloads.buildMovies(movieCount);
+        mEngine = new MovieDbQueryEngine(mMovies);
+    }
+
+    private static MovieDbQueryEngine.Query createQuery() {
+        return new MovieDbQueryEngine.Query()
+                .sortBy(MovieDbQueryEngine.SortKey.RATING, true)
+                .sortBy(MovieDbQueryEngine.SortKey.RELEASE_YEAR, true);
+    }
+
+    @Benchmark
+    public MovieDbQueryEngine buildEngine() {
+        return new MovieDbQueryEngine(mMovies);
+    }
+
+    @Benchmark
+    public int[] engineSort() {
+        return mEngine.queryIndexes(createQuery());
+    }
+
+    @Benchmark
+    public int[] engineTop20Filtered() {
+        return mEngine.queryIndexes(createQuery().filterVoteCount(1000, Integer.MAX_VALUE)
+                .limit(20));
+    }
+
+    @Benchmark
+    public List<MovieParcelable> listSort() {
+        List<MovieParcelable> movies = new ArrayList<>(mMovies);
+        Collections.sort(movies, sRatingThenYear);
+        return movies;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.utility.MovieDbResponseReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a response body into a String: MovieDbResponseReader and the Scanner("\\A") read
+ * it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieDbResponseReadBenchmark {
+
+    private byte[] mBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBody = MovieDbPayloads.buildPage(1, 20).getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public String scannerRead() {
+        Scanner scanner = new Scanner(new ByteArrayInputStream(mBody));
+        scanner.useDelimiter("\\A");
+        return scanner.hasNext() ? scanner.next() : null;
+    }
+
+    @Benchmark
+    public String responseReaderRead() throws IOException {
+        return MovieDbResponseReader.readBody(new ByteArrayInputStream(mBody), mBody.length, null);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbTitleIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching the movie titles as the user types: the title index against scanning the titles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieDbTitleSearchBenchmark {
+
+    private static final String[] sTitleWords = { "The", "Star", "Dark", "Night", "Return",
+            "of", "Love", "War", "Last", "King", "Lost", "City", "Man", "Story", "Blue", "Day",
+            "Ghost", "House", "Secret", "World", "Life", "Red", "Road", "Home", "Island" };
+
+    private static final int sResultLimit = 60;
+
+    @Param({"50000"})
+    public int movieCount;
+
+    /** A one character, a common word, a two word and a missing query. */
+    @Param({"s", "star", "night of", "qz"})
+    public String query;
+
+    private List<MovieParcelable> mMovies;
+
+    private MovieDbTitleIndex mTitleIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mMovies = MovieDbPayloads.buildMovies(movieCount);
+        for (MovieParcelable movie : mMovies) {
+            StringBuilder title = new StringBuilder();
+            for (int word = random.nextInt(4); word >= 0; word--) {
+                title.append(sTitleWords[random.nextInt(sTitleWords.length)]).append(' ');
+            }
+            movie.title = title.append(random.nextInt(1000)).toString();
+        }
+        mTitleIndex = new MovieDbTitleIndex();
+        mTitleIndex.addAll(mMovies);
+    }
+
+    @Benchmark
+    public MovieDbTitleIndex buildIndex() {
+        MovieDbTitleIndex titleIndex = new MovieDbTitleIndex();
+        titleIndex.addAll(mMovies);
+        return titleIndex;
+    }
+
+    @Benchmark
+    public List<MovieParcelable> indexSearch() {
+        return mTitleIndex.search(query, sResultLimit);
+    }
+
+    @Benchmark
+    public List<MovieParcelable> scanSearch() {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        List<MovieParcelable> movies = new ArrayList<>();
+        for (MovieParcelable movie : mMovies) {
+            if (movie.title.toLowerCase(Locale.ROOT).contains(lowerCaseQuery)) {
+                movies.add(movie);
+                if (movies.size() == sResultLimit) {
+                    break;
+                }
+            }
+        }
+        return movies;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.paulmender.udacity.popularmovies.benchmark;
+
+import com.paulmender.udacity.popularmovies.MovieParcelable;
+import com.paulmender.udacity.popularmovies.data.MovieDbPage;
+import com.paulmender.udacity.popularmovies.data.MovieListSnapshot;
+import com.paulmender.udacity.popularmovies.utility.MovieDbJsonUtility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Restoring the movie list at launch: decoding its snapshot (the first screen, or every movie)
+ * against parsing the MovieDB response again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieListSnapshotBenchmark {
+
+    /** The posters on a first screen of the grid. */
+    private static final int sFirstScreenMovies = 12;
+
+    @Param({"20", "60"})
+    public int movieCount;
+
+    private byte[] mJsonBytes;
+
+    private List<MovieParcelable> mMovies;
+
+    private byte[] mSnapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJsonBytes = MovieDbPayloads.buildPage(1, movieCount).getBytes("UTF-8");
+        mMovies = MovieDbJsonUtility.getMovieDbPageFromJsonStream(
+                new ByteArrayInputStream(mJsonBytes)).movies;
+        mSnapshot = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return MovieListSnapshot.encode("popular", 1, 1, 0L, mMovies);
+    }
+
+    @Benchmark
+    public MovieParcelable restoreFirstScreen() {
+        List<MovieParcelable> movies = MovieListSnapshot.decode(mSnapshot).getMovies();
+        MovieParcelable movie = null;
+        for (int i = 0; i < Math.min(sFirstScreenMovies, movies.size()); i++) {
+            movie = movies.get(i);
+        }
+        return movie;
+    }
+
+    @Benchmark
+    public MovieParcelable restoreAll() {
+        List<MovieParcelable> movies = MovieListSnapshot.decode(mSnapshot).getMovies();
+        MovieParcelable movie = null;
+        for (int i = 0; i < movies.size(); i++) {
+            movie = movies.get(i);
+        }
+        return movie;
+    }
+
+    @Benchmark
+    public MovieDbPage streamingParse() throws IOException {
+        return MovieDbJsonUtility.getMovieDbPageFromJsonStream(
+                new ByteArrayInputStream(mJsonBytes));
+    }
+}